@@ -29,6 +29,7 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         mWaterView = findViewById(R.id.wv_water);
+        mWaterView.bindLifecycle(this);
         mWaterView.setWaters(mWaters);
 
         mWaterView.setCallBack(new WaterClickListener() {
@@ -42,10 +43,4 @@ public class MainActivity extends AppCompatActivity {
 
     public void onRest(View view) {
     }
-
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        mWaterView.stopAnim();
-    }
 }
@@ -0,0 +1,157 @@
+package com.ltb.laer.waterview.engine;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 描述: WaterView水滴的运动(匀速上下往返)
+ * ->速度、初始位置、当前位置、运动方向分别保存在基本类型数组中
+ * ->到达最高点时重新随机速度，达到时而快时而慢的效果
+ * ->每帧的step只读写数组，不创建任何对象
+ */
+public final class BounceMotion implements DropMotion {
+    /**
+     * view变化的y抖动范围
+     */
+    public static final int CHANGE_RANGE = 10;
+    /**
+     * 单帧最大时间差，防止卡顿或暂停恢复后水滴跳动
+     */
+    private static final long MAX_STEP_NANOS = 100_000_000L;
+
+    private final float[] mSpdChoices;
+    private final float mSpdPeriodMillis;
+    private final Random mRandom;
+
+    private float[] y = new float[16];//当前位置
+    private float[] originY = new float[16];//初始位置
+    private float[] spd = new float[16];//当前速度
+    private boolean[] isUp = new boolean[16];//是否向上运动
+    private int count;
+
+    /**
+     * @param spdChoices      可选的速度，每spdPeriodMillis移动的像素
+     * @param spdPeriodMillis 速度的参考时间
+     * @param random
+     */
+    public BounceMotion(float[] spdChoices, int spdPeriodMillis, Random random) {
+        this.mSpdChoices = spdChoices;
+        this.mSpdPeriodMillis = spdPeriodMillis;
+        this.mRandom = random;
+    }
+
+    @Override
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * 添加一个水滴，并随机设置速度
+     */
+    @Override
+    public int add(float baseY, boolean isUp) {
+        ensureCapacity(count + 1);
+        int i = count++;
+        this.y[i] = baseY;
+        this.originY[i] = baseY;
+        this.isUp[i] = isUp;
+        setSpd(i);
+        return i;
+    }
+
+    @Override
+    public void remove(int index) {
+        int moved = count - index - 1;
+        if (moved > 0) {
+            System.arraycopy(y, index + 1, y, index, moved);
+            System.arraycopy(originY, index + 1, originY, index, moved);
+            System.arraycopy(spd, index + 1, spd, index, moved);
+            System.arraycopy(isUp, index + 1, isUp, index, moved);
+        }
+        count--;
+    }
+
+    @Override
+    public float getY(int index) {
+        return y[index];
+    }
+
+    @Override
+    public float getBaseY(int index) {
+        return originY[index];
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public int getStateSize() {
+        return 4;
+    }
+
+    @Override
+    public void save(int index, float[] out, int start) {
+        out[start] = y[index];
+        out[start + 1] = originY[index];
+        out[start + 2] = spd[index];
+        out[start + 3] = isUp[index] ? 1 : 0;
+    }
+
+    @Override
+    public int restore(float[] in, int start) {
+        ensureCapacity(count + 1);
+        int i = count++;
+        this.y[i] = in[start];
+        this.originY[i] = in[start + 1];
+        this.spd[i] = in[start + 2];
+        this.isUp[i] = in[start + 3] != 0;
+        return i;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= y.length) {
+            return;
+        }
+        int size = Math.max(capacity, y.length * 2);
+        y = Arrays.copyOf(y, size);
+        originY = Arrays.copyOf(originY, size);
+        spd = Arrays.copyOf(spd, size);
+        isUp = Arrays.copyOf(isUp, size);
+    }
+
+    private void setSpd(int i) {
+        spd[i] = mSpdChoices[mRandom.nextInt(mSpdChoices.length)];
+    }
+
+    @Override
+    public void step(long dtNanos) {
+        if (dtNanos <= 0) {
+            return;
+        }
+        //本帧经过了多少个速度参考时间
+        float step = Math.min(dtNanos, MAX_STEP_NANOS) / 1000000f / mSpdPeriodMillis;
+        for (int i = 0; i < count; i++) {
+            float origin = originY[i];
+            float translationY;
+            //根据上下移动标识移动
+            if (isUp[i]) {
+                translationY = y[i] - spd[i] * step;
+            } else {
+                translationY = y[i] + spd[i] * step;
+            }
+            //对水滴位移范围的控制
+            if (translationY - origin > CHANGE_RANGE) {
+                translationY = origin + CHANGE_RANGE;
+                isUp[i] = true;
+            } else if (translationY - origin < -CHANGE_RANGE) {
+                translationY = origin - CHANGE_RANGE;
+                // 每次当水滴到最高点时再一次设置水滴的移动因子，从而达到时而快时而慢
+                setSpd(i);
+                isUp[i] = false;
+            }
+            y[i] = translationY;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.ltb.laer.waterview.engine;
+
+/**
+ * 描述: 水滴浮动的模拟
+ * ->只保存每个水滴的纵坐标等基本类型数据，不依赖Android，可以在JVM中直接推进任意帧
+ * ->下标与控件中水滴的顺序一致，移除时后面的水滴下标前移一位(与ArrayList.remove保持一致)
+ * ->控件每帧调用step推进，再按getY设置view位置或绘制
+ * ->每个水滴的状态可以按getStateSize个float保存，之后restore回到相同的位置、相位和方向(用于onSaveInstanceState)
+ */
+public interface DropMotion {
+
+    /**
+     * 添加一个水滴
+     *
+     * @param baseY 初始位置
+     * @param isUp  初始是否向上运动
+     * @return 水滴的下标
+     */
+    int add(float baseY, boolean isUp);
+
+    /**
+     * 移除水滴
+     */
+    void remove(int index);
+
+    void clear();
+
+    /**
+     * 推进一帧
+     *
+     * @param dtNanos 距上一帧的时间，小于等于0时不移动
+     */
+    void step(long dtNanos);
+
+    /**
+     * 当前位置
+     */
+    float getY(int index);
+
+    /**
+     * 初始位置(浮动的中心)
+     */
+    float getBaseY(int index);
+
+    int size();
+
+    /**
+     * 每个水滴的状态占用的float数
+     */
+    int getStateSize();
+
+    /**
+     * 保存水滴的状态(包括初始位置)
+     *
+     * @param out 写入out[start]到out[start + getStateSize() - 1]
+     */
+    void save(int index, float[] out, int start);
+
+    /**
+     * 按save保存的状态添加一个水滴，不使用随机数
+     *
+     * @return 水滴的下标
+     */
+    int restore(float[] in, int start);
+}
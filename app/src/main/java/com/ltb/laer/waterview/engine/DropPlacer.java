@@ -0,0 +1,246 @@
+package com.ltb.laer.waterview.engine;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 描述: 水滴位置分配
+ * ->在区域内为水滴(圆)随机选取圆心，保证与已有水滴及禁止区域(树干、头像等)不重合
+ * ->先随机尝试若干次，都失败时按六边形排列逐个检查空位，区域放满时返回-1
+ * ->已有水滴保存在SpatialGrid中，每次检查只与附近的水滴比较
+ * ->同一个网格也用于点击命中判断(见findAt)
+ * ->copy得到的副本可以在其他线程上分配，再用occupy登记回原来的实例(见getModCount)
+ */
+public class DropPlacer {
+    /**
+     * 随机尝试的次数
+     */
+    private static final int RANDOM_TRIES = 24;
+
+    private final SpatialGrid mGrid = new SpatialGrid();
+    private Random mRandom;
+    private float left, top, right, bottom;
+    /**
+     * 禁止区域，矩形每4个数为left,top,right,bottom，圆每3个数为cx,cy,r
+     */
+    private float[] mRects = new float[0];
+    private float[] mCircles = new float[0];
+    private int[] mHitIds = new int[8];//点击时的候选水滴
+    private final float[] mHitCenter = new float[2];
+    private int mModCount;//添加水滴、修改禁止区域或重置的次数
+
+    /**
+     * 获取水滴当前的圆心，用于点击命中判断
+     */
+    public interface Locator {
+        /**
+         * @param id     水滴id
+         * @param center 输出水滴当前的圆心
+         * @return 水滴不能点击时返回false
+         */
+        boolean locate(int id, float[] center);
+    }
+
+    public DropPlacer(Random random) {
+        this.mRandom = random;
+    }
+
+    /**
+     * 替换随机选取位置时使用的Random，已分配的水滴不变
+     */
+    public void setRandom(Random random) {
+        this.mRandom = random;
+    }
+
+    /**
+     * 重置区域并清空已分配的水滴(不清空禁止区域)
+     *
+     * @param cellSize 网格边长，一般取水滴直径
+     */
+    public void reset(float left, float top, float right, float bottom, float cellSize) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        mGrid.reset(left, top, right, bottom, cellSize);
+        mModCount++;
+    }
+
+    /**
+     * 复制区域、禁止区域和已分配的水滴，副本使用自己的Random，可以在其他线程上使用
+     */
+    public DropPlacer copy(Random random) {
+        DropPlacer copy = new DropPlacer(random);
+        copy.left = left;
+        copy.top = top;
+        copy.right = right;
+        copy.bottom = bottom;
+        copy.mRects = mRects;
+        copy.mCircles = mCircles;
+        copy.mGrid.copyFrom(mGrid);
+        return copy;
+    }
+
+    /**
+     * 添加水滴、添加或清除禁止区域、重置时改变，移除水滴时不变
+     * ->在副本上分配的位置，只要原实例的getModCount与复制时相同，就不会与原实例中的水滴重合
+     */
+    public int getModCount() {
+        return mModCount;
+    }
+
+    public void addExclusionRect(float left, float top, float right, float bottom) {
+        mModCount++;
+        int n = mRects.length;
+        mRects = Arrays.copyOf(mRects, n + 4);
+        mRects[n] = left;
+        mRects[n + 1] = top;
+        mRects[n + 2] = right;
+        mRects[n + 3] = bottom;
+    }
+
+    public void addExclusionCircle(float cx, float cy, float r) {
+        mModCount++;
+        int n = mCircles.length;
+        mCircles = Arrays.copyOf(mCircles, n + 3);
+        mCircles[n] = cx;
+        mCircles[n + 1] = cy;
+        mCircles[n + 2] = r;
+    }
+
+    public void clearExclusions() {
+        mModCount++;
+        mRects = new float[0];
+        mCircles = new float[0];
+    }
+
+    /**
+     * 为一个水滴分配位置
+     *
+     * @param radius 水滴半径
+     * @return 水滴id，通过getX、getY获取圆心；没有空位时返回-1
+     */
+    public int place(float radius) {
+        float minX = left + radius, maxX = right - radius;
+        float minY = top + radius, maxY = bottom - radius;
+        if (minX > maxX || minY > maxY) {
+            return -1;
+        }
+        for (int i = 0; i < RANDOM_TRIES; i++) {
+            float cx = minX + mRandom.nextFloat() * (maxX - minX);
+            float cy = minY + mRandom.nextFloat() * (maxY - minY);
+            if (isFree(cx, cy, radius)) {
+                return insert(cx, cy, radius);
+            }
+        }
+        //六边形排列扫描，行间距为sqrt(3)*r，奇数行错开半个直径
+        float dx = radius * 2;
+        float dy = radius * 1.7320508f;
+        int row = 0;
+        for (float cy = minY; cy <= maxY; cy += dy, row++) {
+            for (float cx = minX + ((row & 1) == 0 ? 0 : radius); cx <= maxX; cx += dx) {
+                if (isFree(cx, cy, radius)) {
+                    return insert(cx, cy, radius);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 登记一个指定位置的水滴(如locationXY中的固定位置)，不检查是否重合
+     *
+     * @return 水滴id
+     */
+    public int occupy(float cx, float cy, float radius) {
+        return insert(cx, cy, radius);
+    }
+
+    /**
+     * 释放水滴占用的位置
+     */
+    public void remove(int id) {
+        mGrid.remove(id);
+    }
+
+    /**
+     * 查找与矩形相交的水滴，用于只处理可见区域内的水滴
+     *
+     * @param out 输出水滴id
+     * @return 相交的水滴数量
+     * @see SpatialGrid#query(float, float, float, float, int[])
+     */
+    public int query(float left, float top, float right, float bottom, int[] out) {
+        return mGrid.query(left, top, right, bottom, out);
+    }
+
+    /**
+     * 查找点击位置的水滴
+     * ->占用区域(包含浮动范围)覆盖该点的水滴作为候选，只检查附近的格子
+     * ->再按候选水滴当前的圆心和实际半径判断，多个水滴都包含该点时取圆心最近的
+     *
+     * @param radius  水滴实际半径，不包含浮动范围
+     * @param locator 获取水滴当前的圆心
+     * @return 水滴id，没有命中时返回-1
+     */
+    public int findAt(float px, float py, float radius, Locator locator) {
+        int count = mGrid.query(px, py, px, py, mHitIds);
+        if (count > mHitIds.length) {
+            mHitIds = new int[count * 2];
+            count = mGrid.query(px, py, px, py, mHitIds);
+        }
+        int found = -1;
+        float best = radius * radius;
+        for (int i = 0; i < count; i++) {
+            int id = mHitIds[i];
+            if (!locator.locate(id, mHitCenter)) {
+                continue;
+            }
+            float dx = mHitCenter[0] - px;
+            float dy = mHitCenter[1] - py;
+            float distance = dx * dx + dy * dy;
+            if (distance <= best) {
+                best = distance;
+                found = id;
+            }
+        }
+        return found;
+    }
+
+    public float getX(int id) {
+        return mGrid.getX(id);
+    }
+
+    public float getY(int id) {
+        return mGrid.getY(id);
+    }
+
+    public int size() {
+        return mGrid.size();
+    }
+
+    private int insert(float cx, float cy, float radius) {
+        mModCount++;
+        return mGrid.insert(cx, cy, radius);
+    }
+
+    private boolean isFree(float cx, float cy, float r) {
+        for (int i = 0; i < mRects.length; i += 4) {
+            //圆与矩形的最近点
+            float nx = Math.max(mRects[i], Math.min(cx, mRects[i + 2]));
+            float ny = Math.max(mRects[i + 1], Math.min(cy, mRects[i + 3]));
+            float ddx = cx - nx, ddy = cy - ny;
+            if (ddx * ddx + ddy * ddy < r * r) {
+                return false;
+            }
+        }
+        for (int i = 0; i < mCircles.length; i += 3) {
+            float ddx = cx - mCircles[i], ddy = cy - mCircles[i + 1];
+            float min = r + mCircles[i + 2];
+            if (ddx * ddx + ddy * ddy < min * min) {
+                return false;
+            }
+        }
+        return !mGrid.overlaps(cx, cy, r);
+    }
+}
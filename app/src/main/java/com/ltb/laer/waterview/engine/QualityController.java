@@ -0,0 +1,149 @@
+package com.ltb.laer.waterview.engine;
+
+/**
+ * 描述: 根据帧间隔自适应调整动画质量
+ * ->控件每帧传入帧时间，每windowFrames帧计算一次平均帧间隔
+ * ->平均间隔超过目标间隔的downRatio倍时降一级，连续upWindows个窗口都低于upRatio倍时升一级
+ * ->单帧间隔最多按4个目标间隔计算，一次长时间卡顿不会直接降到最低
+ * ->暂停动画后需要reset，避免暂停的时间被算作卡顿
+ */
+public class QualityController {
+    /**
+     * 全部效果
+     */
+    public static final int LEVEL_FULL = 0;
+    /**
+     * 不显示收取时的飘字，消失动画只保留透明度
+     */
+    public static final int LEVEL_REDUCED = 1;
+    /**
+     * 在LEVEL_REDUCED基础上，远离视口中心的水滴降低位置更新频率(见shouldUpdate)
+     */
+    public static final int LEVEL_LOW = 2;
+    /**
+     * 水滴停止浮动
+     */
+    public static final int LEVEL_FROZEN = 3;
+
+    private long mTargetIntervalNanos = 16_666_667L;
+    private float mDownRatio = 1.5f;
+    private float mUpRatio = 1.15f;
+    private int mWindowFrames = 30;
+    private int mUpWindows = 3;
+    private int mMaxLevel = LEVEL_FROZEN;
+
+    private int mLevel = LEVEL_FULL;
+    private long mLastFrameTimeNanos;
+    private long mWindowSum;
+    private int mWindowCount;
+    private int mGoodWindows;
+    private int mFrameCount;
+
+    /**
+     * 设置目标帧间隔，默认60fps
+     */
+    public QualityController setTargetInterval(long intervalNanos) {
+        this.mTargetIntervalNanos = intervalNanos;
+        return this;
+    }
+
+    /**
+     * 设置升降级的阈值
+     *
+     * @param downRatio 平均帧间隔超过目标间隔的多少倍时降级
+     * @param upRatio   平均帧间隔低于目标间隔的多少倍时才可能升级，需要小于downRatio
+     */
+    public QualityController setThresholds(float downRatio, float upRatio) {
+        this.mDownRatio = downRatio;
+        this.mUpRatio = upRatio;
+        return this;
+    }
+
+    /**
+     * 设置评估窗口
+     *
+     * @param windowFrames 每多少帧评估一次
+     * @param upWindows    连续多少个流畅的窗口才升一级
+     */
+    public QualityController setWindow(int windowFrames, int upWindows) {
+        this.mWindowFrames = Math.max(1, windowFrames);
+        this.mUpWindows = Math.max(1, upWindows);
+        return this;
+    }
+
+    /**
+     * 设置最多降到哪一级，如LEVEL_LOW表示水滴不会停止浮动
+     */
+    public QualityController setMaxLevel(int maxLevel) {
+        this.mMaxLevel = Math.max(LEVEL_FULL, Math.min(maxLevel, LEVEL_FROZEN));
+        mLevel = Math.min(mLevel, mMaxLevel);
+        return this;
+    }
+
+    /**
+     * 每帧调用
+     *
+     * @param frameTimeNanos 本帧时间
+     * @return 当前的质量等级
+     */
+    public int onFrame(long frameTimeNanos) {
+        mFrameCount++;
+        long interval = mLastFrameTimeNanos == 0 ? 0 : frameTimeNanos - mLastFrameTimeNanos;
+        mLastFrameTimeNanos = frameTimeNanos;
+        if (interval <= 0) {
+            return mLevel;
+        }
+        mWindowSum += Math.min(interval, mTargetIntervalNanos * 4);
+        if (++mWindowCount < mWindowFrames) {
+            return mLevel;
+        }
+        float average = (float) mWindowSum / mWindowCount;
+        mWindowSum = 0;
+        mWindowCount = 0;
+        if (average > mTargetIntervalNanos * mDownRatio) {
+            mGoodWindows = 0;
+            mLevel = Math.min(mLevel + 1, mMaxLevel);
+        } else if (average < mTargetIntervalNanos * mUpRatio) {
+            if (mLevel > LEVEL_FULL && ++mGoodWindows >= mUpWindows) {
+                mGoodWindows = 0;
+                mLevel--;
+            }
+        } else {
+            mGoodWindows = 0;
+        }
+        return mLevel;
+    }
+
+    /**
+     * 本帧是否需要更新该水滴的位置
+     * ->LEVEL_LOW时按到视口中心的距离分级：视口半径一半以内每帧更新，视口内隔帧更新，视口外每4帧更新一次
+     * ->距离按水滴边缘计算，同一位置的大水滴比小水滴更新更频繁；同一级的水滴按下标错开更新的帧
+     *
+     * @param index          水滴下标
+     * @param distance       水滴边缘到视口中心的距离
+     * @param viewportRadius 视口对角线的一半
+     */
+    public boolean shouldUpdate(int index, float distance, float viewportRadius) {
+        if (mLevel >= LEVEL_FROZEN) {
+            return false;
+        }
+        if (mLevel < LEVEL_LOW || distance <= viewportRadius / 2) {
+            return true;
+        }
+        int interval = distance <= viewportRadius ? 2 : 4;
+        return (index + mFrameCount) % interval == 0;
+    }
+
+    public int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * 动画暂停后调用，重新开始计算帧间隔(保留当前等级)
+     */
+    public void reset() {
+        mLastFrameTimeNanos = 0;
+        mWindowSum = 0;
+        mWindowCount = 0;
+    }
+}
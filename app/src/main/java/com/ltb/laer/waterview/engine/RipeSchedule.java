@@ -0,0 +1,129 @@
+package com.ltb.laer.waterview.engine;
+
+import java.util.Arrays;
+
+/**
+ * 描述: 水滴成熟的时间表，所有水滴共用一个定时唤醒，不为每个水滴设置定时器
+ * ->未成熟水滴的成熟时间保存在最小堆(long数组)中，只需要取出最早的一个，唤醒时弹出所有已到期的时间
+ * ->倒计时按整秒显示(见countdownSeconds)，所有水滴的倒计时在同一个整秒时刻变化，
+ * 有未成熟的水滴时唤醒时间取下一次成熟和下一个整秒中较早的一个，两次唤醒之间不需要重绘
+ * ->堆中只有时间，不对应具体的水滴；水滴新增、移除或变化后由控件clear再重新add
+ * ->时间与Water.ripeTime相同(System.currentTimeMillis)
+ */
+public class RipeSchedule {
+    /**
+     * 没有需要唤醒的时间
+     */
+    public static final long NEVER = Long.MAX_VALUE;
+    private static final long SECOND_MILLIS = 1000;
+
+    private long[] mHeap = new long[16];
+    private int mSize;
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * 登记一个成熟时间，已经成熟的不需要登记
+     */
+    public void add(long ripeTime) {
+        if (mSize == mHeap.length) {
+            mHeap = Arrays.copyOf(mHeap, mSize * 2);
+        }
+        int i = mSize++;
+        //上浮
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (mHeap[parent] <= ripeTime) {
+                break;
+            }
+            mHeap[i] = mHeap[parent];
+            i = parent;
+        }
+        mHeap[i] = ripeTime;
+    }
+
+    /**
+     * 弹出所有不晚于now的成熟时间
+     *
+     * @return 弹出的数量，即这段时间内成熟的水滴数
+     */
+    public int advance(long now) {
+        int count = 0;
+        while (mSize > 0 && mHeap[0] <= now) {
+            removeFirst();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 下一个需要唤醒的时间：下一次成熟，或者倒计时变化的下一个整秒
+     *
+     * @return 没有未成熟的水滴时返回NEVER
+     */
+    public long nextWakeTime(long now) {
+        if (mSize == 0) {
+            return NEVER;
+        }
+        long nextSecond = (floorSeconds(now) + 1) * SECOND_MILLIS;
+        return Math.min(mHeap[0], nextSecond);
+    }
+
+    /**
+     * 最早的成熟时间
+     *
+     * @return 没有未成熟的水滴时返回NEVER
+     */
+    public long peek() {
+        return mSize == 0 ? NEVER : mHeap[0];
+    }
+
+    /**
+     * 还未成熟的水滴数
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 倒计时显示的秒数：成熟时间与当前时间各自按整秒取整后相减，只在整秒时刻变化，与实际剩余时间相差不到1秒
+     *
+     * @return 已经成熟时返回0，未成熟时至少为1
+     */
+    public static long countdownSeconds(long ripeTime, long now) {
+        if (ripeTime <= now) {
+            return 0;
+        }
+        return Math.max(1, floorSeconds(ripeTime) - floorSeconds(now));
+    }
+
+    private static long floorSeconds(long millis) {
+        long seconds = millis / SECOND_MILLIS;
+        return millis < 0 && seconds * SECOND_MILLIS != millis ? seconds - 1 : seconds;
+    }
+
+    private void removeFirst() {
+        long last = mHeap[--mSize];
+        int i = 0;
+        //下沉
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= mSize) {
+                break;
+            }
+            if (child + 1 < mSize && mHeap[child + 1] < mHeap[child]) {
+                child++;
+            }
+            if (mHeap[child] >= last) {
+                break;
+            }
+            mHeap[i] = mHeap[child];
+            i = child;
+        }
+        if (mSize > 0) {
+            mHeap[i] = last;
+        }
+    }
+}
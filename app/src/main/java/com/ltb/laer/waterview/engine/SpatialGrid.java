@@ -0,0 +1,220 @@
+package com.ltb.laer.waterview.engine;
+
+import java.util.Arrays;
+
+/**
+ * 描述: 圆形水滴的均匀网格索引
+ * ->平面按cellSize划分网格，每个圆按圆心放入一个格子，格子内用数组链表串联
+ * ->查询时只检查周围可能相交的格子，插入、删除O(1)，查询与总数无关
+ * ->所有数据保存在基本类型数组中，不依赖Android
+ */
+public class SpatialGrid {
+    private static final int NONE = -1;
+
+    private float left, top;
+    private float cellSize;
+    private int columns, rows;
+    private int[] cellHead = new int[0];
+
+    private float[] x = new float[16];
+    private float[] y = new float[16];
+    private float[] radius = new float[16];
+    private int[] cell = new int[16];//所在格子，NONE表示id空闲
+    private int[] next = new int[16];//同一格子的下一个，空闲时为下一个空闲id
+    private int[] prev = new int[16];
+    private int freeHead = NONE;
+    private int capacityUsed;//已分配过的最大id+1
+    private int size;
+    private float maxRadius;
+
+    /**
+     * 重置网格并清空所有圆
+     *
+     * @param left     区域左边界
+     * @param top      区域上边界
+     * @param right    区域右边界
+     * @param bottom   区域下边界
+     * @param cellSize 格子边长，一般取水滴直径
+     */
+    public void reset(float left, float top, float right, float bottom, float cellSize) {
+        this.left = left;
+        this.top = top;
+        this.cellSize = Math.max(1f, cellSize);
+        columns = Math.max(1, (int) Math.ceil((right - left) / this.cellSize));
+        rows = Math.max(1, (int) Math.ceil((bottom - top) / this.cellSize));
+        if (cellHead.length < columns * rows) {
+            cellHead = new int[columns * rows];
+        }
+        Arrays.fill(cellHead, 0, columns * rows, NONE);
+        freeHead = NONE;
+        capacityUsed = 0;
+        size = 0;
+        maxRadius = 0;
+    }
+
+    /**
+     * 添加一个圆
+     *
+     * @return 圆的id
+     */
+    public int insert(float cx, float cy, float r) {
+        int id;
+        if (freeHead != NONE) {
+            id = freeHead;
+            freeHead = next[id];
+        } else {
+            ensureCapacity(capacityUsed + 1);
+            id = capacityUsed++;
+        }
+        x[id] = cx;
+        y[id] = cy;
+        radius[id] = r;
+        maxRadius = Math.max(maxRadius, r);
+        int c = cellOf(cx, cy);
+        cell[id] = c;
+        prev[id] = NONE;
+        next[id] = cellHead[c];
+        if (cellHead[c] != NONE) {
+            prev[cellHead[c]] = id;
+        }
+        cellHead[c] = id;
+        size++;
+        return id;
+    }
+
+    /**
+     * 移除一个圆
+     */
+    public void remove(int id) {
+        if (id < 0 || id >= capacityUsed || cell[id] == NONE) {
+            return;
+        }
+        int c = cell[id];
+        if (prev[id] != NONE) {
+            next[prev[id]] = next[id];
+        } else {
+            cellHead[c] = next[id];
+        }
+        if (next[id] != NONE) {
+            prev[next[id]] = prev[id];
+        }
+        cell[id] = NONE;
+        next[id] = freeHead;
+        freeHead = id;
+        size--;
+    }
+
+    /**
+     * 是否与已有的圆相交
+     */
+    public boolean overlaps(float cx, float cy, float r) {
+        float range = r + maxRadius;
+        int c0 = column(cx - range), c1 = column(cx + range);
+        int r0 = row(cy - range), r1 = row(cy + range);
+        for (int row = r0; row <= r1; row++) {
+            for (int col = c0; col <= c1; col++) {
+                for (int id = cellHead[row * columns + col]; id != NONE; id = next[id]) {
+                    float dx = x[id] - cx;
+                    float dy = y[id] - cy;
+                    float min = radius[id] + r;
+                    if (dx * dx + dy * dy < min * min) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 查找与矩形相交的圆(按外接正方形判断)
+     *
+     * @param out 输出圆的id，长度不足时只输出前out.length个
+     * @return 相交的圆的数量
+     */
+    public int query(float left, float top, float right, float bottom, int[] out) {
+        int c0 = column(left - maxRadius), c1 = column(right + maxRadius);
+        int r0 = row(top - maxRadius), r1 = row(bottom + maxRadius);
+        int found = 0;
+        for (int row = r0; row <= r1; row++) {
+            for (int col = c0; col <= c1; col++) {
+                for (int id = cellHead[row * columns + col]; id != NONE; id = next[id]) {
+                    float r = radius[id];
+                    if (x[id] + r < left || x[id] - r > right || y[id] + r < top || y[id] - r > bottom) {
+                        continue;
+                    }
+                    if (found < out.length) {
+                        out[found] = id;
+                    }
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 复制另一个网格的全部内容，id保持不变
+     */
+    public void copyFrom(SpatialGrid other) {
+        left = other.left;
+        top = other.top;
+        cellSize = other.cellSize;
+        columns = other.columns;
+        rows = other.rows;
+        cellHead = Arrays.copyOf(other.cellHead, other.cellHead.length);
+        x = Arrays.copyOf(other.x, other.x.length);
+        y = Arrays.copyOf(other.y, other.y.length);
+        radius = Arrays.copyOf(other.radius, other.radius.length);
+        cell = Arrays.copyOf(other.cell, other.cell.length);
+        next = Arrays.copyOf(other.next, other.next.length);
+        prev = Arrays.copyOf(other.prev, other.prev.length);
+        freeHead = other.freeHead;
+        capacityUsed = other.capacityUsed;
+        size = other.size;
+        maxRadius = other.maxRadius;
+    }
+
+    public float getX(int id) {
+        return x[id];
+    }
+
+    public float getY(int id) {
+        return y[id];
+    }
+
+    public float getRadius(int id) {
+        return radius[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int cellOf(float cx, float cy) {
+        return row(cy) * columns + column(cx);
+    }
+
+    private int column(float px) {
+        int col = (int) ((px - left) / cellSize);
+        return col < 0 ? 0 : (col >= columns ? columns - 1 : col);
+    }
+
+    private int row(float py) {
+        int row = (int) ((py - top) / cellSize);
+        return row < 0 ? 0 : (row >= rows ? rows - 1 : row);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= x.length) {
+            return;
+        }
+        int length = Math.max(capacity, x.length * 2);
+        x = Arrays.copyOf(x, length);
+        y = Arrays.copyOf(y, length);
+        radius = Arrays.copyOf(radius, length);
+        cell = Arrays.copyOf(cell, length);
+        next = Arrays.copyOf(next, length);
+        prev = Arrays.copyOf(prev, length);
+    }
+}
@@ -0,0 +1,229 @@
+package com.ltb.laer.waterview.engine;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 描述: 弹簧+随机目标的水滴浮动，可代替BounceMotion、WaveMotion
+ * ->每个水滴挂在一个弹簧上，弹簧的目标点每隔一段随机时间在浮动范围内重新随机，得到不规则但平滑的浮动
+ * ->按固定步长(FIXED_STEP_NANOS)积分，帧间隔的余数累积到下一帧，运动轨迹与帧率无关，每帧耗时只与水滴数和帧间隔有关
+ * ->绘制位置在上一步与当前步之间按余数插值，帧率与步长不一致时也不会抖动
+ * ->积分按属性分成几个只读写基本类型数组的循环，循环内没有分支，方便JIT向量化
+ * ->位置限制在浮动范围内，放置水滴时按浮动范围预留的空间不会被超出
+ */
+public final class SpringMotion implements DropMotion {
+    /**
+     * 积分的固定步长(120Hz)
+     */
+    public static final long FIXED_STEP_NANOS = 8_333_333L;
+    /**
+     * 单帧最多积分的时间，防止卡顿或暂停恢复后一次积分太多步
+     */
+    private static final long MAX_FRAME_NANOS = 100_000_000L;
+    private static final float STEP_SECONDS = FIXED_STEP_NANOS / 1e9f;
+    /**
+     * 目标点保持的最短、最长步数
+     */
+    private static final int MIN_HOLD_STEPS = 72;//0.6s
+    private static final int MAX_HOLD_STEPS = 180;//1.5s
+    /**
+     * 目标点占浮动范围的比例，留出弹簧过冲的余量
+     */
+    private static final float TARGET_RATIO = 0.8f;
+    /**
+     * 默认的弹簧参数，约0.6s跟上新的目标点，过冲约25%
+     */
+    public static final float DEFAULT_FREQUENCY_HZ = 1.2f;
+    public static final float DEFAULT_DAMPING_RATIO = 0.4f;
+
+    private final float mRange;
+    private final float mStiffness;
+    private final float mDamping;
+    private final Random mRandom;
+
+    private float[] baseY = new float[16];//初始位置
+    private float[] offset = new float[16];//当前步的偏移
+    private float[] prevOffset = new float[16];//上一步的偏移，用于插值
+    private float[] velocity = new float[16];
+    private float[] target = new float[16];//弹簧的目标偏移
+    private int[] hold = new int[16];//目标点剩余的步数
+    private float[] y = new float[16];//插值后的位置
+    private int count;
+    private long mAccumulatorNanos;//不足一步的剩余时间
+
+    public SpringMotion(float range, Random random) {
+        this(range, DEFAULT_FREQUENCY_HZ, DEFAULT_DAMPING_RATIO, random);
+    }
+
+    /**
+     * @param range        浮动范围
+     * @param frequencyHz  弹簧的固有频率，越大跟随目标越快
+     * @param dampingRatio 阻尼比，小于1时会略微过冲
+     * @param random
+     */
+    public SpringMotion(float range, float frequencyHz, float dampingRatio, Random random) {
+        this.mRange = range;
+        float omega = (float) (2 * Math.PI * frequencyHz);
+        this.mStiffness = omega * omega;
+        this.mDamping = 2 * dampingRatio * omega;
+        this.mRandom = random;
+    }
+
+    @Override
+    public void clear() {
+        count = 0;
+        mAccumulatorNanos = 0;
+    }
+
+    /**
+     * 添加一个水滴，第一个目标点在初始方向上
+     */
+    @Override
+    public int add(float baseY, boolean isUp) {
+        ensureCapacity(count + 1);
+        int i = count++;
+        this.baseY[i] = baseY;
+        this.y[i] = baseY;
+        this.offset[i] = 0;
+        this.prevOffset[i] = 0;
+        this.velocity[i] = 0;
+        float first = mRange * TARGET_RATIO * (0.5f + mRandom.nextFloat() * 0.5f);
+        this.target[i] = isUp ? first : -first;
+        this.hold[i] = randomHold();
+        return i;
+    }
+
+    @Override
+    public void remove(int index) {
+        int moved = count - index - 1;
+        if (moved > 0) {
+            System.arraycopy(baseY, index + 1, baseY, index, moved);
+            System.arraycopy(offset, index + 1, offset, index, moved);
+            System.arraycopy(prevOffset, index + 1, prevOffset, index, moved);
+            System.arraycopy(velocity, index + 1, velocity, index, moved);
+            System.arraycopy(target, index + 1, target, index, moved);
+            System.arraycopy(hold, index + 1, hold, index, moved);
+            System.arraycopy(y, index + 1, y, index, moved);
+        }
+        count--;
+    }
+
+    @Override
+    public void step(long dtNanos) {
+        if (dtNanos <= 0) {
+            return;
+        }
+        mAccumulatorNanos += Math.min(dtNanos, MAX_FRAME_NANOS);
+        while (mAccumulatorNanos >= FIXED_STEP_NANOS) {
+            integrate();
+            mAccumulatorNanos -= FIXED_STEP_NANOS;
+        }
+        interpolate(mAccumulatorNanos / (float) FIXED_STEP_NANOS);
+    }
+
+    /**
+     * 半隐式欧拉积分一个固定步长
+     */
+    private void integrate() {
+        final int n = count;
+        final float[] offset = this.offset, prevOffset = this.prevOffset, velocity = this.velocity, target = this.target;
+        final float k = mStiffness * STEP_SECONDS, c = mDamping * STEP_SECONDS, dt = STEP_SECONDS, range = mRange;
+        System.arraycopy(offset, 0, prevOffset, 0, n);
+        for (int i = 0; i < n; i++) {
+            velocity[i] += k * (target[i] - offset[i]) - c * velocity[i];
+        }
+        for (int i = 0; i < n; i++) {
+            offset[i] = Math.max(-range, Math.min(range, offset[i] + velocity[i] * dt));
+        }
+        //目标点到期的水滴很少，单独处理
+        final int[] hold = this.hold;
+        for (int i = 0; i < n; i++) {
+            if (--hold[i] <= 0) {
+                retarget(i);
+            }
+        }
+    }
+
+    private void interpolate(float alpha) {
+        final int n = count;
+        final float[] y = this.y, baseY = this.baseY, offset = this.offset, prevOffset = this.prevOffset;
+        for (int i = 0; i < n; i++) {
+            y[i] = baseY[i] + prevOffset[i] + (offset[i] - prevOffset[i]) * alpha;
+        }
+    }
+
+    /**
+     * 目标点换到当前位置的另一侧，保证持续上下浮动
+     */
+    private void retarget(int i) {
+        float next = mRange * TARGET_RATIO * (0.3f + mRandom.nextFloat() * 0.7f);
+        target[i] = offset[i] > 0 ? -next : next;
+        hold[i] = randomHold();
+    }
+
+    private int randomHold() {
+        return MIN_HOLD_STEPS + mRandom.nextInt(MAX_HOLD_STEPS - MIN_HOLD_STEPS + 1);
+    }
+
+    @Override
+    public float getY(int index) {
+        return y[index];
+    }
+
+    @Override
+    public float getBaseY(int index) {
+        return baseY[index];
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 不足一步的剩余时间不保存，恢复后最多相差一个固定步长
+     */
+    @Override
+    public int getStateSize() {
+        return 7;
+    }
+
+    @Override
+    public void save(int index, float[] out, int start) {
+        out[start] = baseY[index];
+        out[start + 1] = this.offset[index];
+        out[start + 2] = prevOffset[index];
+        out[start + 3] = velocity[index];
+        out[start + 4] = target[index];
+        out[start + 5] = hold[index];
+        out[start + 6] = y[index];
+    }
+
+    @Override
+    public int restore(float[] in, int start) {
+        ensureCapacity(count + 1);
+        int i = count++;
+        this.baseY[i] = in[start];
+        this.offset[i] = in[start + 1];
+        this.prevOffset[i] = in[start + 2];
+        this.velocity[i] = in[start + 3];
+        this.target[i] = in[start + 4];
+        this.hold[i] = (int) in[start + 5];
+        this.y[i] = in[start + 6];
+        return i;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= y.length) {
+            return;
+        }
+        int size = Math.max(capacity, y.length * 2);
+        baseY = Arrays.copyOf(baseY, size);
+        offset = Arrays.copyOf(offset, size);
+        prevOffset = Arrays.copyOf(prevOffset, size);
+        velocity = Arrays.copyOf(velocity, size);
+        target = Arrays.copyOf(target, size);
+        hold = Arrays.copyOf(hold, size);
+        y = Arrays.copyOf(y, size);
+    }
+}
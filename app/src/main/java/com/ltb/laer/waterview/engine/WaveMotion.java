@@ -0,0 +1,152 @@
+package com.ltb.laer.waterview.engine;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 描述: AntForestView水滴的运动(按关键帧往返浮动)
+ * ->每个水滴随机一个浮动一次的时长，利用时长不同来让水滴运动速度不同
+ * ->每帧按时间推进相位[0,1)，位置为初始位置加上相位对应的偏移
+ * ->每帧的step只读写数组，不创建任何对象
+ */
+public final class WaveMotion implements DropMotion {
+
+    private final int[] mDurationChoices;
+    private final float mRange;
+    private final Random mRandom;
+
+    private float[] y = new float[16];//当前位置
+    private float[] baseY = new float[16];//初始位置
+    private float[] phase = new float[16];//当前相位[0,1)
+    private float[] range = new float[16];//浮动范围，正负代表初始方向
+    private int[] duration = new int[16];//浮动一次的时长
+    private int count;
+
+    /**
+     * @param durationChoices 可选的浮动一次的时长(毫秒)
+     * @param range           浮动范围
+     * @param random
+     */
+    public WaveMotion(int[] durationChoices, float range, Random random) {
+        this.mDurationChoices = durationChoices;
+        this.mRange = range;
+        this.mRandom = random;
+    }
+
+    @Override
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * 添加一个水滴，并随机设置浮动时长
+     */
+    @Override
+    public int add(float baseY, boolean isUp) {
+        ensureCapacity(count + 1);
+        int i = count++;
+        this.y[i] = baseY;
+        this.baseY[i] = baseY;
+        this.phase[i] = 0;
+        this.range[i] = isUp ? mRange : -mRange;
+        this.duration[i] = mDurationChoices[mRandom.nextInt(mDurationChoices.length)];
+        return i;
+    }
+
+    @Override
+    public void remove(int index) {
+        int moved = count - index - 1;
+        if (moved > 0) {
+            System.arraycopy(y, index + 1, y, index, moved);
+            System.arraycopy(baseY, index + 1, baseY, index, moved);
+            System.arraycopy(phase, index + 1, phase, index, moved);
+            System.arraycopy(range, index + 1, range, index, moved);
+            System.arraycopy(duration, index + 1, duration, index, moved);
+        }
+        count--;
+    }
+
+    @Override
+    public float getY(int index) {
+        return y[index];
+    }
+
+    @Override
+    public float getBaseY(int index) {
+        return baseY[index];
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public int getStateSize() {
+        return 5;
+    }
+
+    @Override
+    public void save(int index, float[] out, int start) {
+        out[start] = y[index];
+        out[start + 1] = baseY[index];
+        out[start + 2] = phase[index];
+        out[start + 3] = range[index];
+        out[start + 4] = duration[index];
+    }
+
+    @Override
+    public int restore(float[] in, int start) {
+        ensureCapacity(count + 1);
+        int i = count++;
+        this.y[i] = in[start];
+        this.baseY[i] = in[start + 1];
+        this.phase[i] = in[start + 2];
+        this.range[i] = in[start + 3];
+        this.duration[i] = (int) in[start + 4];
+        return i;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= y.length) {
+            return;
+        }
+        int size = Math.max(capacity, y.length * 2);
+        y = Arrays.copyOf(y, size);
+        baseY = Arrays.copyOf(baseY, size);
+        phase = Arrays.copyOf(phase, size);
+        range = Arrays.copyOf(range, size);
+        duration = Arrays.copyOf(duration, size);
+    }
+
+    @Override
+    public void step(long dtNanos) {
+        if (dtNanos <= 0) {
+            return;
+        }
+        float deltaMillis = dtNanos / 1000000f;
+        for (int i = 0; i < count; i++) {
+            float p = phase[i] + deltaMillis / duration[i];
+            if (p >= 1) {
+                p -= (int) p;
+            }
+            phase[i] = p;
+            y[i] = baseY[i] + waveOffset(p, range[i]);
+        }
+    }
+
+    /**
+     * 浮动的线性关键帧：0 -> range -> 0 -> -range -> 0
+     *
+     * @param t     相位[0,1)
+     * @param range 浮动范围
+     */
+    public static float waveOffset(float t, float range) {
+        if (t < 0.25f) {
+            return 4 * t * range;
+        } else if (t < 0.75f) {
+            return (2 - 4 * t) * range;
+        }
+        return (4 * t - 4) * range;
+    }
+}
@@ -0,0 +1,14 @@
+package com.ltb.laer.waterview.listener;
+
+import com.ltb.laer.waterview.view.ForestFrameMetrics;
+
+/**
+ * 描述: 水滴控件的帧耗时监听，每帧回调一次
+ */
+public interface FrameMetricsListener {
+
+    /**
+     * @param metrics 本帧的数据，对象会在下一帧复用，需要保存时请复制其中的数值
+     */
+    void onFrameMetrics(ForestFrameMetrics metrics);
+}
@@ -0,0 +1,17 @@
+package com.ltb.laer.waterview.listener;
+
+import com.ltb.laer.waterview.model.Water;
+
+import java.util.List;
+
+/**
+ * 描述: 批量收取水滴的监听，一次收取只回调一次
+ */
+public interface WaterCollectListener {
+
+    /**
+     * @param total  本次收取的水滴总数值
+     * @param waters 本次收取的水滴
+     */
+    void onWatersCollected(int total, List<Water> waters);
+}
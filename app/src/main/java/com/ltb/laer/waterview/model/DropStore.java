@@ -0,0 +1,344 @@
+package com.ltb.laer.waterview.model;
+
+import java.util.Arrays;
+
+/**
+ * 描述: 大量水滴的紧凑存储，每个属性一个基本类型数组(struct-of-arrays)
+ * ->水滴按下标连续存放，removeAt用最后一个水滴填补空位；下标需要与DropMotion一致时用removeAtOrdered，后面的水滴前移一位
+ * ->按id查找使用开放寻址的哈希表(只存下标，id从ids数组读取)，按slot(如DropPlacer中的id)查找使用int数组，查找不产生对象
+ * ->name只保存引用，Water对象只在需要时(绑定view、回调监听)由get(index)临时创建
+ * ->同一个id只保存一份，add时id已存在则不添加
+ * ->AntForestView的虚拟模式和画布模式使用；普通view模式下每个水滴本身就是一个view，数据仍保存在view的tag中
+ */
+public final class DropStore {
+    /**
+     * 初始浮动方向向上
+     */
+    public static final int FLAG_UP = 1;
+    /**
+     * 已经播放过显示动画
+     */
+    public static final int FLAG_SHOWN = 1 << 1;
+
+    private static final int NONE = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] ids;
+    private int[] numbers;
+    private int[] types;
+    private long[] ripeTimes;
+    private String[] names;
+    private float[] x;
+    private float[] y;
+    private byte[] flags;
+    private int[] slots;
+    private int size;
+
+    //id -> 下标，线性探测，表长为2的幂且最多用一半；表中只存下标，id从ids中读取
+    private int[] mTable;//NONE表示空位
+    private int mMask;
+
+    private int[] mSlotIndex = new int[0];//slot -> 下标
+
+    public DropStore() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param capacity 预计的水滴数量
+     */
+    public DropStore(int capacity) {
+        capacity = Math.max(capacity, MIN_CAPACITY);
+        ids = new long[capacity];
+        numbers = new int[capacity];
+        types = new int[capacity];
+        ripeTimes = new long[capacity];
+        names = new String[capacity];
+        x = new float[capacity];
+        y = new float[capacity];
+        flags = new byte[capacity];
+        slots = new int[capacity];
+        resizeTable(capacity);
+    }
+
+    /**
+     * 添加一个水滴，位置、标记为0，没有slot
+     *
+     * @return 下标，id已存在时返回-1
+     */
+    public int add(Water water) {
+        if (indexOf(water.getId()) >= 0) {
+            return NONE;
+        }
+        ensureCapacity(size + 1);
+        int index = size++;
+        ids[index] = water.getId();
+        set(index, water);
+        x[index] = 0;
+        y[index] = 0;
+        flags[index] = 0;
+        slots[index] = NONE;
+        putIndex(water.getId(), index);
+        return index;
+    }
+
+    /**
+     * 更新数值、名字、类型和成熟时间，id需要相同
+     */
+    public void set(int index, Water water) {
+        numbers[index] = water.getNumber();
+        names[index] = water.getName();
+        types[index] = water.getType();
+        ripeTimes[index] = water.getRipeTime();
+    }
+
+    /**
+     * 移除一个水滴，最后一个水滴移到该下标
+     */
+    public void removeAt(int index) {
+        removeIndex(ids[index]);
+        setSlot(index, NONE);
+        int last = --size;
+        if (index != last) {
+            ids[index] = ids[last];
+            numbers[index] = numbers[last];
+            types[index] = types[last];
+            ripeTimes[index] = ripeTimes[last];
+            names[index] = names[last];
+            x[index] = x[last];
+            y[index] = y[last];
+            flags[index] = flags[last];
+            slots[index] = slots[last];
+            putIndex(ids[index], index);
+            if (slots[index] != NONE) {
+                mSlotIndex[slots[index]] = index;
+            }
+        }
+        names[last] = null;
+    }
+
+    /**
+     * 移除一个水滴，后面的水滴下标前移一位(与DropMotion.remove一致)，需要重建id表
+     */
+    public void removeAtOrdered(int index) {
+        setSlot(index, NONE);
+        int last = --size;
+        int moved = last - index;
+        System.arraycopy(ids, index + 1, ids, index, moved);
+        System.arraycopy(numbers, index + 1, numbers, index, moved);
+        System.arraycopy(types, index + 1, types, index, moved);
+        System.arraycopy(ripeTimes, index + 1, ripeTimes, index, moved);
+        System.arraycopy(names, index + 1, names, index, moved);
+        System.arraycopy(x, index + 1, x, index, moved);
+        System.arraycopy(y, index + 1, y, index, moved);
+        System.arraycopy(flags, index + 1, flags, index, moved);
+        System.arraycopy(slots, index + 1, slots, index, moved);
+        names[last] = null;
+        //表中的下标都可能变化，直接重建
+        Arrays.fill(mTable, NONE);
+        for (int i = 0; i < size; i++) {
+            putIndex(ids[i], i);
+        }
+        for (int i = index; i < size; i++) {
+            if (slots[i] != NONE) {
+                mSlotIndex[slots[i]] = i;
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(mTable, NONE);
+        Arrays.fill(mSlotIndex, NONE);
+        size = 0;
+    }
+
+    /**
+     * @return 下标，没有时返回-1
+     */
+    public int indexOf(long id) {
+        for (int i = hash(id) & mMask; ; i = (i + 1) & mMask) {
+            int index = mTable[i];
+            if (index == NONE || ids[index] == id) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * @return 下标，没有时返回-1
+     */
+    public int indexOfSlot(int slot) {
+        return slot >= 0 && slot < mSlotIndex.length ? mSlotIndex[slot] : NONE;
+    }
+
+    /**
+     * @param slot 非负数，-1表示没有
+     */
+    public void setSlot(int index, int slot) {
+        int old = slots[index];
+        if (old != NONE && mSlotIndex[old] == index) {
+            mSlotIndex[old] = NONE;
+        }
+        slots[index] = slot;
+        if (slot == NONE) {
+            return;
+        }
+        if (slot >= mSlotIndex.length) {
+            int length = mSlotIndex.length;
+            mSlotIndex = Arrays.copyOf(mSlotIndex, Math.max(slot + 1, Math.max(MIN_CAPACITY, length * 2)));
+            Arrays.fill(mSlotIndex, length, mSlotIndex.length, NONE);
+        }
+        mSlotIndex[slot] = index;
+    }
+
+    /**
+     * 清空所有水滴的slot，用于重新分配
+     */
+    public void clearSlots() {
+        Arrays.fill(slots, 0, size, NONE);
+        Arrays.fill(mSlotIndex, NONE);
+    }
+
+    public int getSlot(int index) {
+        return slots[index];
+    }
+
+    /**
+     * 创建该下标水滴的Water对象
+     */
+    public Water get(int index) {
+        return new Water(ids[index], numbers[index], names[index], types[index], ripeTimes[index]);
+    }
+
+    public long getId(int index) {
+        return ids[index];
+    }
+
+    public int getNumber(int index) {
+        return numbers[index];
+    }
+
+    public int getType(int index) {
+        return types[index];
+    }
+
+    public long getRipeTime(int index) {
+        return ripeTimes[index];
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public float getX(int index) {
+        return x[index];
+    }
+
+    public float getY(int index) {
+        return y[index];
+    }
+
+    public void setPosition(int index, float x, float y) {
+        this.x[index] = x;
+        this.y[index] = y;
+    }
+
+    public boolean hasFlag(int index, int flag) {
+        return (flags[index] & flag) != 0;
+    }
+
+    public void setFlag(int index, int flag, boolean value) {
+        flags[index] = (byte) (value ? flags[index] | flag : flags[index] & ~flag);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 每个属性数组的长度
+     */
+    int capacity() {
+        return ids.length;
+    }
+
+    /**
+     * id哈希表的长度
+     */
+    int tableLength() {
+        return mTable.length;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int length = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, length);
+        numbers = Arrays.copyOf(numbers, length);
+        types = Arrays.copyOf(types, length);
+        ripeTimes = Arrays.copyOf(ripeTimes, length);
+        names = Arrays.copyOf(names, length);
+        x = Arrays.copyOf(x, length);
+        y = Arrays.copyOf(y, length);
+        flags = Arrays.copyOf(flags, length);
+        slots = Arrays.copyOf(slots, length);
+        resizeTable(length);
+    }
+
+    /**
+     * 按水滴容量重建哈希表，表长为容量的2倍以上
+     */
+    private void resizeTable(int capacity) {
+        int length = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        if (mTable != null && mTable.length >= length) {
+            return;
+        }
+        mTable = new int[length];
+        mMask = length - 1;
+        Arrays.fill(mTable, NONE);
+        for (int i = 0; i < size; i++) {
+            putIndex(ids[i], i);
+        }
+    }
+
+    /**
+     * 添加id，或把已有id指向新的下标
+     */
+    private void putIndex(long id, int index) {
+        int i = hash(id) & mMask;
+        while (mTable[i] != NONE && ids[mTable[i]] != id) {
+            i = (i + 1) & mMask;
+        }
+        mTable[i] = index;
+    }
+
+    /**
+     * 删除后把同一探测链上的后续元素前移，不使用删除标记
+     */
+    private void removeIndex(long id) {
+        int i = hash(id) & mMask;
+        while (mTable[i] != NONE && ids[mTable[i]] != id) {
+            i = (i + 1) & mMask;
+        }
+        if (mTable[i] == NONE) {
+            return;
+        }
+        mTable[i] = NONE;
+        for (int j = (i + 1) & mMask; mTable[j] != NONE; j = (j + 1) & mMask) {
+            int home = hash(ids[mTable[j]]) & mMask;
+            //home不在(i, j]之间时，j可以移到i
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                mTable[i] = mTable[j];
+                mTable[j] = NONE;
+                i = j;
+            }
+        }
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
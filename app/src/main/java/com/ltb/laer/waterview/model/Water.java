@@ -3,16 +3,68 @@ package com.ltb.laer.waterview.model;
 /**
  * 创建时间: 2018/1/9
  * 创建人:  赖天兵
- * 描述:
+ * 描述: 水滴数据，创建后不可修改
+ * ->id是水滴的唯一标识(见WaterDiff)，没有指定时由name生成，name相同的水滴id相同
+ * ->ripeTime为成熟时间(System.currentTimeMillis)，0表示已经成熟
  */
 
-public class Water {
-    private int number;
-    private String name;
+public final class Water {
+    /**
+     * 默认类型，没有为其设置DropStyle时使用水滴布局本身的样式
+     */
+    public static final int TYPE_DEFAULT = 0;
+    /**
+     * 已经成熟
+     */
+    public static final long RIPE = 0;
+
+    private final long id;
+    private final int number;
+    private final String name;
+    private final int type;
+    private final long ripeTime;
 
     public Water(int number, String name) {
+        this(number, name, TYPE_DEFAULT);
+    }
+
+    /**
+     * @param type 水滴类型，控件按类型选择DropStyle
+     */
+    public Water(int number, String name, int type) {
+        this(idOf(name), number, name, type, RIPE);
+    }
+
+    /**
+     * @param id       唯一标识
+     * @param type     水滴类型，控件按类型选择DropStyle
+     * @param ripeTime 成熟时间(System.currentTimeMillis)，RIPE表示已经成熟
+     */
+    public Water(long id, int number, String name, int type, long ripeTime) {
+        this.id = id;
         this.number = number;
         this.name = name;
+        this.type = type;
+        this.ripeTime = ripeTime;
+    }
+
+    /**
+     * 由name生成id(64位FNV-1a)
+     */
+    public static long idOf(String name) {
+        if (name == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public long getId() {
+        return id;
     }
 
     public int getNumber() {
@@ -22,4 +74,19 @@ public class Water {
     public String getName() {
         return name;
     }
+
+    public int getType() {
+        return type;
+    }
+
+    public long getRipeTime() {
+        return ripeTime;
+    }
+
+    /**
+     * @param now System.currentTimeMillis
+     */
+    public boolean isRipe(long now) {
+        return ripeTime <= now;
+    }
 }
@@ -0,0 +1,103 @@
+package com.ltb.laer.waterview.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 描述: 两组水滴之间的差异
+ * ->以水滴的id作为唯一标识(默认由name生成)，同一组内id需要唯一，重复的只取第一个
+ * ->inserted: 只在新数据中存在的水滴
+ * ->removed: 只在旧数据中存在的水滴
+ * ->changed: 两边都存在但数值、类型或成熟时间不同的水滴(新数据)
+ */
+public final class WaterDiff {
+    private final List<Water> inserted;
+    private final List<Water> removed;
+    private final List<Water> changed;
+
+    private WaterDiff(List<Water> inserted, List<Water> removed, List<Water> changed) {
+        this.inserted = inserted;
+        this.removed = removed;
+        this.changed = changed;
+    }
+
+    /**
+     * 计算差异
+     *
+     * @param oldWaters 当前显示的水滴
+     * @param newWaters 新的水滴
+     * @return
+     */
+    public static WaterDiff calculate(List<Water> oldWaters, List<Water> newWaters) {
+        if (oldWaters == null) {
+            oldWaters = Collections.emptyList();
+        }
+        if (newWaters == null) {
+            newWaters = Collections.emptyList();
+        }
+        Map<Long, Water> oldMap = new LinkedHashMap<>();
+        for (Water water : oldWaters) {
+            if (!oldMap.containsKey(keyOf(water))) {
+                oldMap.put(keyOf(water), water);
+            }
+        }
+        List<Water> inserted = new ArrayList<>();
+        List<Water> changed = new ArrayList<>();
+        Map<Long, Water> newMap = new HashMap<>();
+        for (Water water : newWaters) {
+            long key = keyOf(water);
+            if (newMap.containsKey(key)) {
+                continue;
+            }
+            newMap.put(key, water);
+            Water old = oldMap.get(key);
+            if (old == null) {
+                inserted.add(water);
+            } else if (isChanged(old, water)) {
+                changed.add(water);
+            }
+        }
+        List<Water> removed = new ArrayList<>();
+        for (Water water : oldMap.values()) {
+            if (!newMap.containsKey(keyOf(water))) {
+                removed.add(water);
+            }
+        }
+        return new WaterDiff(inserted, removed, changed);
+    }
+
+    /**
+     * 水滴的唯一标识
+     */
+    public static long keyOf(Water water) {
+        return water.getId();
+    }
+
+    /**
+     * 同一个水滴的显示内容是否变化
+     */
+    public static boolean isChanged(Water old, Water water) {
+        return old.getNumber() != water.getNumber() || old.getType() != water.getType()
+                || old.getRipeTime() != water.getRipeTime();
+    }
+
+    public List<Water> getInserted() {
+        return inserted;
+    }
+
+    public List<Water> getRemoved() {
+        return removed;
+    }
+
+    public List<Water> getChanged() {
+        return changed;
+    }
+
+    public boolean isEmpty() {
+        return inserted.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+}
@@ -1,79 +1,274 @@
 package com.ltb.laer.waterview.view;
 
 import android.animation.Animator;
-import android.animation.ObjectAnimator;
+import android.animation.AnimatorListenerAdapter;
 import android.animation.ValueAnimator;
+import android.arch.lifecycle.LifecycleOwner;
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Parcelable;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.RequiresApi;
+import android.support.annotation.VisibleForTesting;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.animation.Animation;
-import android.view.animation.LinearInterpolator;
+import android.view.animation.AnimationUtils;
 import android.widget.FrameLayout;
 import android.widget.TextView;
 
 import com.ltb.laer.waterview.R;
+import com.ltb.laer.waterview.engine.DropMotion;
+import com.ltb.laer.waterview.engine.DropPlacer;
+import com.ltb.laer.waterview.engine.QualityController;
+import com.ltb.laer.waterview.engine.RipeSchedule;
+import com.ltb.laer.waterview.engine.SpringMotion;
+import com.ltb.laer.waterview.engine.WaveMotion;
+import com.ltb.laer.waterview.listener.FrameMetricsListener;
 import com.ltb.laer.waterview.listener.WaterClickListener;
+import com.ltb.laer.waterview.listener.WaterCollectListener;
+import com.ltb.laer.waterview.model.DropStore;
 import com.ltb.laer.waterview.model.Water;
+import com.ltb.laer.waterview.model.WaterDiff;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Random;
-
-import static android.animation.ValueAnimator.INFINITE;
-
+import java.util.concurrent.Executor;
 
 /**
  * 描述:  蚂蚁森林模拟
  * 处理思路：
  * ->将森林水滴作为一个总体而不是单个的view，自定义一个ViewGroup容器
+ * ->setWaters时在后台线程(WaterPreparer)计算位置、文字和画布模式下的文字测量，UI线程只创建view/水滴并登记计算好的位置；新的setWaters/updateWaters会取消未完成的计算
  * ->循环创建view
- * ->为view设置位置(在一些固定的集合中随机选取，尽量保证水滴不重合)
+ * ->为view设置位置(前面的水滴使用locationXY中的固定位置，超出的水滴由DropPlacer选取不重合的位置)
  * ->为view设置一个初始的运动方向
  * ->添加view到容器中，并缩放伴随透明度显示
- * ->利用属性动画达到view上下位移动画
- * ->点击view后，缩放、透明度移除水滴,可自定义动画
- * ->界面销毁时停止动画避免内存泄漏，空指针等异常
+ * ->所有水滴共用一个帧回调，浮动由engine中的WaveMotion模拟，每帧按各自的时长推进浮动相位，达到view上下位移动画
+ * ->setSpringMotion(true)后改用SpringMotion，按固定步长积分的弹簧浮动，轨迹与帧率无关
+ * ->点击由容器统一处理(三种模式相同)：在DropPlacer的网格中取出附近的候选水滴，再按水滴当前的圆心和圆形半径判断，水滴挨得很近时取圆心最近的
+ * ->点击view后，缩放、透明度移除水滴,可自定义动画，默认动画结束后从容器中移除并放回DropViewPool
+ * ->控件不可见、窗口失去焦点、从窗口移除或宿主onPause时停止帧回调，并结束所有进行中的显示、消失动画，条件恢复后从原位置继续
+ * ->界面销毁(bindLifecycle绑定的宿主onDestroy)时停止动画避免内存泄漏，空指针等异常
+ * ->位置分配、浮动方向和时长共用一个Random，setSeed后相同的输入和帧时间得到相同的布局和浮动轨迹
+ * ->设置QualityController后按帧间隔自适应降级：简化消失动画、远处水滴降低更新频率、停止浮动，流畅后再恢复
+ * ->updateWaters只处理新增、移除、数值变化的水滴，其余水滴保持位置和浮动相位
+ * ->submitWaters可以在任意线程调用，一帧内的多次提交只保留最新的一份(WaterInbox)，下一帧按updateWaters的方式应用
+ * ->collect/collectAll批量收取水滴，所有水滴共用一个消失动画，只回调一次WaterCollectListener
+ * ->按水滴类型设置DropStyle，所有水滴共用一个布局，绑定数据时只设置预先解析好的背景、文字、图标
+ * ->设置了id时保存水滴、位置、浮动相位和收取总数(ForestSavedState)，旋转屏幕或重新进入时直接恢复，
+ * 不重新分配位置、不播放显示动画；恢复后的setWaters按updateWaters的方式应用
+ * ->未成熟的水滴(Water.ripeTime)显示倒计时，不能点击或收取；所有水滴共用一个RipeSchedule定时唤醒，
+ * 只在下一次成熟或倒计时变化的整秒时刷新文字，不可见时停止
+ * 画布模式(RENDER_MODE_CANVAS)：
+ * ->水滴只作为数据保存，不再创建子view
+ * ->水滴背景(每种DropStyle一个)只绘制一次到bitmap中复用，文字宽度和基线在setWaters时算好
+ * ->所有水滴在一次onDraw中绘制，按最近一次绘制的位置判断点击命中
+ * ->浮动同样由WaveMotion模拟，下标与未被收取的水滴顺序一致，每次绘制时按时间推进
+ * 虚拟模式(RENDER_MODE_VIRTUAL)，用于数百到数千个水滴：
+ * ->森林可以比控件大(见setContentSize)，所有水滴由DropPlacer放置在整个森林中，只作为数据保存在DropStore的基本类型数组中，没有每个水滴的对象
+ * ->只有与可见区域相交的水滴才从DropViewPool取出view并参与浮动，滚出后放回，内存与每帧耗时只与可见水滴数有关
+ * ->可见区域由DropPlacer的网格查询得到，拖动平移时按scroll更新
  */
 public class AntForestView extends FrameLayout {
+    /**
+     * 每个水滴一个子view(默认)
+     */
+    public static final int RENDER_MODE_VIEW = 0;
+    /**
+     * 所有水滴在onDraw中一次绘制
+     */
+    public static final int RENDER_MODE_CANVAS = 1;
+    /**
+     * 只为可见区域内的水滴创建子view，可拖动平移
+     */
+    public static final int RENDER_MODE_VIRTUAL = 2;
+    /**
+     * 水滴上下浮动的范围
+     */
+    private static final int CHANGE_RANGE = 10;
+    private static final int SHOW_DURATION = 500;
+    private static final int DISAPPEAR_DURATION = 1000;
 
     private Random mRandom = new Random();
     private LayoutInflater mInflater;
     private int mChildViewRes = R.layout.water_item;
     private List<Integer> mChildViewResList = new ArrayList<>();
-    private List<Animator> mViewAnimatorList = new ArrayList<>();
+    private DropViewPool mDropViewPool = new DropViewPool();
+    private SparseArray<DropStyle> mDropStyles = new SparseArray<>();//按水滴类型设置的样式
+    private WaterPreparer mPreparer = new WaterPreparer();
+    private WaterInbox mInbox = new WaterInbox();
+    private Runnable mApplyInbox = new Runnable() {
+        @Override
+        public void run() {
+            List<Water> waters = mInbox.take();
+            if (waters != null) {
+                applyWaters(waters);
+            }
+        }
+    };
+    private DropLayerCache mLayerCache;//为null时不缓存
+    private ForestSavedState mPendingState;//已经恢复但还没有应用的水滴
+    private boolean isRestored;//水滴来自恢复的状态，之后第一次setWaters只更新变化的水滴
+    private Runnable mApplyPendingState = new Runnable() {
+        @Override
+        public void run() {
+            restoreDates();
+        }
+    };
+    private RipeSchedule mRipeSchedule = new RipeSchedule();
+    private long mLabelTime = System.currentTimeMillis();//上次刷新文字的时间，成熟时间晚于它的水滴文字需要刷新
+    private Runnable mRipeTick = new Runnable() {
+        @Override
+        public void run() {
+            updateRipening();
+        }
+    };
+    private List<View> mViews = new ArrayList<>();//当前显示且未被点击的水滴
+    private int[] durations = {1500, 1600, 1800, 2000, 2300, 2500}; //利用动画执行时间不同来让水滴运动速度不同
+    /**
+     * 水滴浮动，下标与mViews(画布模式下与mCanvasDrops)一致
+     */
+    private DropMotion mMotion = new WaveMotion(durations, CHANGE_RANGE, mRandom);
+    private long mLastFrameTimeNanos;
+    private FrameMetricsRecorder mMetricsRecorder;//为null时不采集帧数据
+    private QualityController mQualityController;//为null时始终使用全部效果
+    private List<Animator> mRemoveAnimators = new ArrayList<>();//进行中的批量消失动画
+    private boolean isStoppedByUser;//是否调用了stopAnim
+    private boolean isHostPaused;//宿主是否处于onPause之后
+    private boolean wasActive;//上次检查时是否可以播放动画
+    private HostLifecycle mHostLifecycle = new HostLifecycle(new HostLifecycle.Callback() {
+        @Override
+        public void onHostResume() {
+            isHostPaused = false;
+            updateAnimState();
+        }
+
+        @Override
+        public void onHostPause() {
+            isHostPaused = true;
+            updateAnimState();
+        }
+
+        @Override
+        public void onHostDestroy() {
+            mPreparer.cancel();
+            mPendingState = null;
+            mInbox.take();
+            stopAnim();
+        }
+    });
+    private FrameScheduler mBobScheduler = new FrameScheduler(new FrameScheduler.Callback() {
+        @Override
+        public void onFrame(long frameTimeNanos) {
+            stepBob(frameTimeNanos);
+        }
+    });
     private int maxX, maxY;//子view的x坐标和y坐标的最大取值
+    private DropPlacer mDropPlacer = new DropPlacer(mRandom);
     private Object[][] locationXY = new Object[][]{{0.41f, 0.01f}, {0.1f, 0.11f}, {0.21f, 0.01f}, {0.31f, 0.01f}, {0.51f, 0.01f}, {0.61f, 0.01f}, {0.71f, 0.01f}, {0.81f, 0.01f}, {0.81f, 0.11f}, {0.41f, 0.41f}};
-    private List<Integer> durationList = Arrays.asList(1500, 1600, 1800, 2000, 2300, 2500); //利用动画执行时间不同来让水滴运动速度不同
     private WaterClickListener mWaterClickListener = null;//水滴点击监听
+    private WaterCollectListener mWaterCollectListener = null;//批量收取监听
+    private int mTotalConsumeWater;//总的已经收取的水滴
     private Animation animationDis = null;
     private boolean palyAcq; //是否播放消失默认动画
-    private boolean isUp = mRandom.nextBoolean();
     private float viewDisappearY = 0;
     private float viewDisappearX = 0;
 
+    private int mRenderMode = RENDER_MODE_VIEW;
+    private CanvasDrops mCanvasDrops = new CanvasDrops();//画布模式下未被收取的水滴，slot为DropPlacer中的id
+    private CanvasDrops mCollectedDrops = new CanvasDrops();//画布模式下正在播放消失动画的水滴
+    private int mTouchDropId = -1;//按下时命中的水滴，DropPlacer中的id
+    private SparseArray<View> mPlacedViews = new SparseArray<>();//以DropPlacer中的id为key的水滴view，用于点击命中
+    private DropPlacer.Locator mDropLocator = new DropPlacer.Locator() {
+        @Override
+        public boolean locate(int id, float[] center) {
+            float half = mDropSize / 2;
+            if (mRenderMode == RENDER_MODE_CANVAS) {
+                int index = mCanvasDrops.store.indexOfSlot(id);
+                if (index < 0) {
+                    return false;
+                }
+                center[0] = mCanvasDrops.store.getX(index) + half;
+                center[1] = mCanvasDrops.drawY[index] + half;
+                return true;
+            }
+            View view = mPlacedViews.get(id);
+            if (view == null) {
+                return false;
+            }
+            //getY已包含浮动的位移
+            center[0] = view.getX() + half;
+            center[1] = view.getY() + mDropTop + half;
+            return true;
+        }
+    };
+    private boolean mCanvasAnimating = true;
+    private Bitmap mDropBitmap;//水滴背景缓存
+    private Paint mBitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private float mDropSize;//水滴圆形区域的边长，对应water_item中的tv_water
+    private float mDropTop;//水滴圆形区域距离顶部的距离，对应water_item中的id_ll_add_assets_anim
+
+    private DropStore mVirtualDrops = new DropStore();//虚拟模式下的全部水滴，slot为DropPlacer中的id
+    private int[] mVisibleIds = new int[16];//可见区域查询结果
+    private int mContentWidth, mContentHeight;//指定的森林大小，0表示自动
+    private int mWorldWidth, mWorldHeight;//实际的森林大小
+    private boolean mPanEnabled = true;
+    private boolean mPanning;
+    private float mLastTouchX, mLastTouchY;
+    private int mTouchSlop;
+
     public AntForestView(@NonNull Context context) {
         super(context);
+        init();
     }
 
     public AntForestView(@NonNull Context context, @Nullable AttributeSet attrs) {
         super(context, attrs);
-        mInflater = LayoutInflater.from(getContext());
+        init();
     }
 
     public AntForestView(@NonNull Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
-
+        init();
     }
 
     @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
     public AntForestView(@NonNull Context context, @Nullable AttributeSet attrs, int defStyleAttr, int defStyleRes) {
         super(context, attrs, defStyleAttr, defStyleRes);
+        init();
+    }
+
+    private void init() {
+        mInflater = LayoutInflater.from(getContext());
+        float density = getResources().getDisplayMetrics().density;
+        mDropSize = 50 * density;
+        mDropTop = 20 * density;
+        mTextPaint.setColor(Color.WHITE);
+        mTextPaint.setTextSize(38);
+        mTouchSlop = ViewConfiguration.get(getContext()).getScaledTouchSlop();
     }
 
     @Override
@@ -81,33 +276,379 @@ public class AntForestView extends FrameLayout {
         super.onSizeChanged(w, h, oldw, oldh);
         maxX = w;
         maxY = h;
+        if (mRenderMode == RENDER_MODE_VIRTUAL) {
+            resetVirtualWorld(mVirtualDrops.size());
+            return;
+        }
+        //区域变化后重新登记已有水滴的位置
+        mDropPlacer.reset(0, mDropTop, maxX, maxY, getPlaceRadius() * 2);
+        mPlacedViews.clear();
+        for (View view : mViews) {
+            setPlacement(view, occupyLocation(view.getX(), view.getY()));
+        }
+        DropStore store = mCanvasDrops.store;
+        store.clearSlots();
+        for (int i = 0; i < store.size(); i++) {
+            store.setSlot(i, occupyLocation(store.getX(i), store.getY(i)));
+        }
+    }
+
+    /**
+     * 放置水滴时的半径，浮动范围也计算在内
+     */
+    private float getPlaceRadius() {
+        return mDropSize / 2 + CHANGE_RANGE;
+    }
+
+    /**
+     * 登记一个固定位置的水滴
+     *
+     * @param x 水滴左上角
+     * @param y 水滴左上角
+     * @return DropPlacer中的id
+     */
+    private int occupyLocation(float x, float y) {
+        float half = mDropSize / 2;
+        return mDropPlacer.occupy(x + half, y + mDropTop + half, getPlaceRadius());
+    }
+
+    /**
+     * 为固定位置之外的水滴选取位置
+     *
+     * @param out 水滴左上角
+     * @return DropPlacer中的id，区域已放满时随机放置，位置仍然登记到网格中用于点击命中
+     */
+    private int placeLocation(float[] out) {
+        float half = mDropSize / 2;
+        int id = mDropPlacer.place(getPlaceRadius());
+        if (id < 0) {
+            out[0] = mRandom.nextFloat() * Math.max(0, maxX - mDropSize);
+            out[1] = mRandom.nextFloat() * Math.max(0, maxY - mDropSize - mDropTop);
+            id = occupyLocation(out[0], out[1]);
+        } else {
+            out[0] = mDropPlacer.getX(id) - half;
+            out[1] = mDropPlacer.getY(id) - half - mDropTop;
+        }
+        return id;
+    }
+
+    /**
+     * 记录水滴view占用的位置
+     */
+    private void setPlacement(View view, int id) {
+        view.setTag(R.string.placement_id, id);
+        mPlacedViews.put(id, view);
+    }
+
+    /**
+     * 保存水滴、位置、浮动相位和收取总数，需要为控件设置id
+     * ->虚拟模式下保存全部水滴的数据、标记和平移位置，不保存可见水滴的浮动相位
+     */
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        Parcelable superState = super.onSaveInstanceState();
+        if (mPendingState != null) {
+            //恢复后还没有应用
+            return mPendingState;
+        }
+        ForestSavedState state = new ForestSavedState(superState);
+        state.renderMode = mRenderMode;
+        state.totalConsumeWater = mTotalConsumeWater;
+        state.width = maxX;
+        state.height = maxY;
+        if (mRenderMode == RENDER_MODE_CANVAS) {
+            DropStore store = mCanvasDrops.store;
+            state.allocate(store.size());
+            for (int i = 0; i < store.size(); i++) {
+                state.setWater(i, store.get(i));
+                state.x[i] = store.getX(i);
+                state.y[i] = store.getY(i);
+                state.slots[i] = mCanvasDrops.locations[i];
+            }
+            state.saveMotion(mMotion);
+        } else if (mRenderMode == RENDER_MODE_VIRTUAL) {
+            state.width = mWorldWidth;
+            state.height = mWorldHeight;
+            state.scrollX = getScrollX();
+            state.scrollY = getScrollY();
+            state.allocate(mVirtualDrops.size());
+            for (int i = 0; i < mVirtualDrops.size(); i++) {
+                state.setWater(i, mVirtualDrops.get(i));
+                state.x[i] = mVirtualDrops.getX(i);
+                state.y[i] = mVirtualDrops.getY(i);
+                state.flags[i] = (byte) ((mVirtualDrops.hasFlag(i, DropStore.FLAG_UP) ? DropStore.FLAG_UP : 0)
+                        | (mVirtualDrops.hasFlag(i, DropStore.FLAG_SHOWN) ? DropStore.FLAG_SHOWN : 0));
+            }
+        } else {
+            state.allocate(mViews.size());
+            for (int i = 0; i < mViews.size(); i++) {
+                View view = mViews.get(i);
+                state.setWater(i, (Water) view.getTag());
+                state.x[i] = view.getX();
+                state.y[i] = mMotion.getBaseY(i);
+                state.slots[i] = (Integer) view.getTag(R.string.location_index);
+            }
+            state.saveMotion(mMotion);
+        }
+        return state;
+    }
+
+    /**
+     * 恢复收取总数，水滴在布局完成后应用(setWaters时或之后的第一个post)
+     */
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof ForestSavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        ForestSavedState saved = (ForestSavedState) state;
+        super.onRestoreInstanceState(saved.getSuperState());
+        mTotalConsumeWater = saved.totalConsumeWater;
+        if (saved.size() > 0) {
+            mPendingState = saved;
+            post(mApplyPendingState);
+        }
+    }
+
+    /**
+     * 应用onRestoreInstanceState恢复的水滴：直接使用保存的位置和浮动相位，不播放显示动画
+     *
+     * @return 是否有恢复的水滴，保存时的模式不同时不恢复
+     */
+    private boolean restoreDates() {
+        ForestSavedState state = mPendingState;
+        mPendingState = null;
+        if (state == null || state.renderMode != mRenderMode) {
+            return false;
+        }
+        mPreparer.cancel();
+        if (mRenderMode == RENDER_MODE_CANVAS) {
+            restoreCanvasDrops(state);
+        } else if (mRenderMode == RENDER_MODE_VIRTUAL) {
+            restoreVirtualDrops(state);
+        } else {
+            restoreWaterViews(state);
+        }
+        isRestored = true;
+        rescheduleRipening();
+        return true;
+    }
+
+    private void restoreWaterViews(ForestSavedState state) {
+        boolean restoreMotion = state.canRestoreMotion(mMotion, maxX, maxY);
+        float scaleX = state.width == 0 ? 1 : maxX / (float) state.width;
+        float scaleY = state.height == 0 ? 1 : maxY / (float) state.height;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < state.size(); i++) {
+            Water water = state.getWater(i);
+            View view = createWaterView(water, state.slots[i], PreparedWaters.labelOf(water, now));
+            float x = state.x[i] * scaleX;
+            float y = state.y[i] * scaleY;
+            int index = restoreMotion ? state.restoreMotion(mMotion, i) : mMotion.add(y, mRandom.nextBoolean());
+            view.setX(x);
+            view.setY(mMotion.getY(index));
+            setPlacement(view, occupyLocation(x, y));
+            mViews.add(view);
+            addView(view);
+        }
+        startBob();
+    }
+
+    private void restoreCanvasDrops(ForestSavedState state) {
+        ensureDropBitmap();
+        boolean restoreMotion = state.canRestoreMotion(mMotion, maxX, maxY);
+        float scaleX = state.width == 0 ? 1 : maxX / (float) state.width;
+        float scaleY = state.height == 0 ? 1 : maxY / (float) state.height;
+        DropStore store = mCanvasDrops.store;
+        for (int i = 0; i < state.size(); i++) {
+            //showStartTime为0，不播放显示动画
+            int index = mCanvasDrops.add(state.getWater(i));
+            if (index < 0) {
+                continue;
+            }
+            float x = state.x[i] * scaleX;
+            float y = state.y[i] * scaleY;
+            store.setPosition(index, x, y);
+            store.setSlot(index, occupyLocation(x, y));
+            mCanvasDrops.locations[index] = state.slots[i];
+            mCanvasDrops.drawY[index] = y + mDropTop;
+            bindCanvasLabel(index);
+            if (restoreMotion) {
+                state.restoreMotion(mMotion, i);
+            } else {
+                mMotion.add(y, mRandom.nextBoolean());
+            }
+        }
+        invalidate();
+    }
+
+    /**
+     * 森林宽度变化时横向按比例缩放，高度不小于保存时的高度
+     */
+    private void restoreVirtualDrops(ForestSavedState state) {
+        mWorldWidth = Math.max(maxX, mContentWidth);
+        float scaleX = state.width == 0 ? 1 : mWorldWidth / (float) state.width;
+        for (int i = 0; i < state.size(); i++) {
+            int index = mVirtualDrops.add(state.getWater(i));
+            if (index < 0) {
+                continue;
+            }
+            mVirtualDrops.setPosition(index, state.x[i] * scaleX, state.y[i]);
+            mVirtualDrops.setFlag(index, DropStore.FLAG_UP, (state.flags[i] & DropStore.FLAG_UP) != 0);
+            mVirtualDrops.setFlag(index, DropStore.FLAG_SHOWN, (state.flags[i] & DropStore.FLAG_SHOWN) != 0);
+        }
+        mWorldHeight = Math.max(computeWorldHeight(mVirtualDrops.size()), state.height);
+        replaceVirtualDrops();
+        scrollTo((int) (state.scrollX * scaleX), state.scrollY);
     }
 
     /**
-     * 界面销毁时回调
+     * 从窗口移除时暂停，重新添加后恢复
      */
     @Override
     protected void onDetachedFromWindow() {
-        stopAnim();
+        wasActive = false;
+        pauseFrames();
+        releaseAnimations();
         super.onDetachedFromWindow();
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateAnimState();
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateAnimState();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateAnimState();
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasWindowFocus) {
+        super.onWindowFocusChanged(hasWindowFocus);
+        updateAnimState();
+    }
+
     /**
      * 重新开始动画
      */
     public void restartAnim() {
-        for (Animator animator : mViewAnimatorList) {
-            animator.start();
-        }
+        isStoppedByUser = false;
+        updateAnimState();
     }
 
     /**
-     * 停止动画
+     * 停止动画，并结束所有进行中的显示、消失动画
      */
     public void stopAnim() {
-        for (Animator animator : mViewAnimatorList) {
-            animator.cancel();
+        isStoppedByUser = true;
+        wasActive = false;
+        pauseFrames();
+        releaseAnimations();
+    }
+
+    /**
+     * 控件当前是否可以播放动画
+     */
+    private boolean isActive() {
+        return !isStoppedByUser && !isHostPaused && isShown() && getWindowVisibility() == VISIBLE && hasWindowFocus();
+    }
+
+    /**
+     * 根据当前状态恢复或暂停动画，从可以播放变为不能播放时同时结束进行中的动画
+     */
+    private void updateAnimState() {
+        boolean active = isActive();
+        if (wasActive && !active) {
+            releaseAnimations();
+        }
+        wasActive = active;
+        if (!active) {
+            pauseFrames();
+            return;
+        }
+        updateRipening();
+        if (mRenderMode != RENDER_MODE_CANVAS && mMotion.size() > 0) {
+            mBobScheduler.start();
+        }
+        if (!mCanvasAnimating) {
+            mCanvasAnimating = true;
+            invalidate();
+        }
+    }
+
+    /**
+     * 有浮动的水滴且可以播放动画时开始帧回调
+     */
+    private void startBob() {
+        if (isActive()) {
+            mBobScheduler.start();
+        }
+    }
+
+    /**
+     * 帧回调是否在运行
+     */
+    @VisibleForTesting
+    boolean isFrameScheduled() {
+        return mBobScheduler.isRunning() || (mRenderMode == RENDER_MODE_CANVAS && mCanvasAnimating);
+    }
+
+    /**
+     * 结束所有进行中的动画：显示、数值变化的动画直接到结束状态，消失中的水滴立即移除并回收
+     */
+    private void releaseAnimations() {
+        for (int i = mRemoveAnimators.size() - 1; i >= 0; i--) {
+            //结束监听中回收view并从列表中移除
+            mRemoveAnimators.get(i).end();
+        }
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            View child = getChildAt(i);
+            if (!(child.getTag(R.string.drop_layout_res) instanceof Integer)) {
+                //不是水滴view
+                continue;
+            }
+            child.animate().cancel();
+            child.clearAnimation();
+            if (mViews.contains(child)) {
+                child.setAlpha(1);
+                child.setScaleX(1);
+                child.setScaleY(1);
+            } else {
+                recycleView(child);
+            }
+        }
+        mCollectedDrops.clear();
+        Arrays.fill(mCanvasDrops.showStartTimes, 0, mCanvasDrops.size(), 0);
+        Arrays.fill(mCanvasDrops.pulseStartTimes, 0, mCanvasDrops.size(), CanvasDrops.NONE);
+        if (!mCanvasDrops.isEmpty()) {
+            invalidate();
+        }
+    }
+
+    /**
+     * 停止帧回调
+     */
+    private void pauseFrames() {
+        mBobScheduler.stop();
+        removeCallbacks(mRipeTick);
+        mLastFrameTimeNanos = 0;
+        if (mMetricsRecorder != null) {
+            mMetricsRecorder.resetFrameTime();
         }
+        if (mQualityController != null) {
+            mQualityController.reset();
+        }
+        mCanvasAnimating = false;
     }
 
     /**
@@ -115,156 +656,1623 @@ public class AntForestView extends FrameLayout {
      *
      * @param waters
      */
-    public AntForestView setWaters(final List<Water> waters) {
+    public AntForestView setWaters(List<Water> waters) {
         if (waters == null || waters.isEmpty()) {
             return this;
         }
+        //复制一份，后台计算期间调用方修改列表不受影响
+        final List<Water> copy = new ArrayList<>(waters);
         //确保初始化完成
         post(new Runnable() {
             @Override
             public void run() {
-                setDates(waters);
+                //有恢复的水滴时保持原位置，只更新变化的水滴(恢复可能已经由post执行)
+                boolean restored = restoreDates() || isRestored;
+                isRestored = false;
+                if (restored) {
+                    applyWaters(copy);
+                } else {
+                    prepareDates(copy);
+                }
             }
         });
         return this;
     }
 
-    private void setDates(List<Water> waters) {
-        addWaterView(waters);
-    }
-
     /**
-     * 添加水滴view
+     * 在后台线程计算位置和文字，完成后在UI线程提交，之前未提交的setWaters被取消
      */
-    private void addWaterView(List<Water> waters) {
-        for (int i = 0; i < waters.size(); i++) {
-            final Water water = waters.get(i);
-            View view;
-            if (null == mChildViewResList || 0 == mChildViewResList.size()) {
-                view = mInflater.inflate(mChildViewRes, this, false);
-            } else {
-                view = mInflater.inflate(i < mChildViewResList.size() ? mChildViewResList.get(i) : mChildViewRes, this, false);
-            }
-            TextView tvWater = view.findViewById(R.id.tv_water);
-            view.setTag(water);
-            tvWater.setText(water.getNumber() + "g");
-            view.setOnClickListener(new OnClickListener() {
-                @Override
-                public void onClick(View view) {
-                    handViewClick(view);
+    private void prepareDates(final List<Water> waters) {
+        final int renderMode = mRenderMode;
+        final PreparedWaters prepared = createPrepared(waters);
+        mPreparer.submit(new WaterPreparer.Work<PreparedWaters>() {
+            @Override
+            public PreparedWaters prepare(WaterPreparer.Token token) {
+                return prepared.prepare(token) ? prepared : null;
+            }
+        }, new WaterPreparer.Commit<PreparedWaters>() {
+            @Override
+            public void commit(PreparedWaters result) {
+                if (mRenderMode == renderMode && isPreparedValid(result)) {
+                    commitDates(result);
+                } else {
+                    //计算期间有新的水滴、控件大小或模式变化，在UI线程重新计算
+                    setDates(waters);
                 }
-            });
-            //随机设置view动画的方向
-            view.setTag(R.string.isUp, mRandom.nextBoolean());
-            setChildViewLocation(view, i);
+            }
+        });
+    }
 
-            addShowViewAnimation(view);
+    /**
+     * 在UI线程复制当前的放置状态，之后可以在任意线程计算
+     */
+    private PreparedWaters createPrepared(List<Water> waters) {
+        if (mRenderMode == RENDER_MODE_VIRTUAL) {
+            ensureWorldCapacity(mVirtualDrops.size() + waters.size());
+            return new PreparedWaters(waters, mDropPlacer, mRandom, mDropSize, mDropTop, getPlaceRadius(),
+                    mWorldWidth, mWorldHeight);
+        }
+        PreparedWaters prepared = new PreparedWaters(waters, mDropPlacer, mRandom, mDropSize, mDropTop, getPlaceRadius(),
+                maxX, maxY).setFixedLocations(locationXY, usedSlots());
+        if (mRenderMode == RENDER_MODE_CANVAS) {
+            prepared.measureText(mTextPaint, mDropStyles);
         }
+        return prepared;
     }
 
-    private void addShowViewAnimation(View view) {
-        addView(view);
-        view.setAlpha(0);
-        view.setScaleX(0);
-        view.setScaleY(0);
-        view.animate().alpha(1).scaleX(1).scaleY(1).setDuration(500).start();
+    private boolean isPreparedValid(PreparedWaters prepared) {
+        if (mRenderMode == RENDER_MODE_VIRTUAL) {
+            return prepared.isValid(mDropPlacer, mWorldWidth, mWorldHeight);
+        }
+        return prepared.isValid(mDropPlacer, maxX, maxY);
+    }
 
-        startAnimate(view);
+    /**
+     * 增量更新水滴，以水滴id作为唯一标识(见WaterDiff)
+     * ->新增的水滴放在空闲的位置并显示动画，移除的水滴消失动画(不回调点击监听)，数值变化的水滴更新文字并缩放提示
+     * ->未变化的水滴保持当前位置和浮动相位
+     *
+     * @param waters 更新后的全部水滴
+     * @return
+     */
+    public AntForestView updateWaters(List<Water> waters) {
+        final List<Water> copy = waters == null ? null : new ArrayList<>(waters);
+        post(new Runnable() {
+            @Override
+            public void run() {
+                applyWaters(copy);
+            }
+        });
+        return this;
     }
 
-    private void startAnimate(View view) {
-        if (view.getAnimation() != null) {
-            return;
+    /**
+     * 提交最新的全部水滴，可以在任意线程调用(网络、推送回调等)
+     * ->提交时复制列表，之后修改原列表不受影响
+     * ->下一帧之前的多次提交只应用最后一次，应用方式与updateWaters相同
+     *
+     * @param waters 最新的全部水滴，为null时按没有水滴处理
+     * @return
+     */
+    public AntForestView submitWaters(@Nullable List<Water> waters) {
+        if (mInbox.offer(waters == null ? Collections.<Water>emptyList() : waters)) {
+            ViewCompat.postOnAnimation(this, mApplyInbox);
         }
-        ObjectAnimator animator = ObjectAnimator.ofFloat(view, "translationY", view.getY(), isUp ? view.getY() + 10 : view.getY() - 10, view.getY(), isUp ? view.getY() - 10 : view.getY() + 10, view.getY());
-        animator.setDuration(durationList.get(mRandom.nextInt(durationList.size())));
-        animator.setInterpolator(new LinearInterpolator());
-        // 设置插值器
-        animator.setRepeatMode(ValueAnimator.RESTART);
-        animator.setRepeatCount(INFINITE);
-        animator.start();
-        mViewAnimatorList.add(animator);
+        return this;
     }
 
-    private void setChildViewLocation(View view, int i) {
-        if (i > 9) {
-            return;
+    private void applyWaters(List<Water> waters) {
+        //以更新后的数据为准
+        mPreparer.cancel();
+        if (mRenderMode == RENDER_MODE_CANVAS) {
+            applyCanvasDrops(waters);
+        } else if (mRenderMode == RENDER_MODE_VIRTUAL) {
+            applyVirtualDrops(waters);
+        } else {
+            applyWaterViews(waters);
         }
-        view.setX((maxX * (float) locationXY[i][0]));
-        view.setY((maxY * (float) locationXY[i][1]));
+        rescheduleRipening();
     }
 
-    private void handViewClick(View view) {
-        Object tag = view.getTag();
-        if (tag instanceof Water && null != mWaterClickListener) {
-            Water waterTag = (Water) tag;
-            mWaterClickListener.onWaterClick(waterTag);
+    private void applyWaterViews(List<Water> waters) {
+        List<Water> current = new ArrayList<>(mViews.size());
+        Map<Long, View> viewMap = new HashMap<>();
+        for (View view : mViews) {
+            Water water = (Water) view.getTag();
+            current.add(water);
+            viewMap.put(WaterDiff.keyOf(water), view);
         }
-        if (animationDis == null) {
+        WaterDiff diff = WaterDiff.calculate(current, waters);
+        for (Water water : diff.getRemoved()) {
+            View view = viewMap.get(WaterDiff.keyOf(water));
+            removeLiveView(view);
             disAnimate(view);
-        } else {
-            view.setAnimation(animationDis);
-            if (palyAcq) {
-                disAnimate(view);
-            }
         }
-    }
-
-    private void disAnimate(View view) {
-        if (0 == viewDisappearX && 0 == viewDisappearY) {
-            view.animate()
-                    .alpha(0).scaleX(0).scaleY(0).setDuration(1000).start();
-        } else {
-            view.animate()
-                    .translationY(viewDisappearY).translationX(viewDisappearX)
-                    .alpha(0).scaleX(0).scaleY(0).setDuration(1000).start();
+        for (Water water : diff.getChanged()) {
+            View view = viewMap.get(WaterDiff.keyOf(water));
+            bindWater(view, water);
+            pulseView(view);
+        }
+        List<Water> inserted = diff.getInserted();
+        boolean[] used = usedSlots();
+        for (int i = 0; i < inserted.size(); i++) {
+            addWaterView(inserted.get(i), PreparedWaters.nextFreeSlot(used));
         }
     }
 
     /**
-     * 设置自定义水滴布局 必须含有id为tv_water的TextView
-     *
-     * @param childViewLayout
-     * @return
+     * 直接与DropStore比较，不为已有水滴创建Water对象
      */
-    public AntForestView setChildView(int childViewLayout) {
-        this.mChildViewRes = childViewLayout;
-        return this;
+    private void applyCanvasDrops(List<Water> waters) {
+        if (waters == null) {
+            waters = Collections.emptyList();
+        }
+        DropStore store = mCanvasDrops.store;
+        long now = AnimationUtils.currentAnimationTimeMillis();
+        boolean[] kept = new boolean[store.size()];
+        List<Water> inserted = new ArrayList<>();
+        Set<Long> insertedIds = new HashSet<>();
+        for (Water water : waters) {
+            int index = store.indexOf(water.getId());
+            if (index < 0) {
+                if (insertedIds.add(water.getId())) {
+                    inserted.add(water);
+                }
+                continue;
+            }
+            if (kept[index]) {
+                continue;
+            }
+            kept[index] = true;
+            if (store.getNumber(index) == water.getNumber() && store.getType(index) == water.getType()
+                    && store.getRipeTime(index) == water.getRipeTime()) {
+                continue;
+            }
+            store.set(index, water);
+            bindCanvasLabel(index);
+            mCanvasDrops.pulseStartTimes[index] = now;
+        }
+        //倒序收取，mMotion中前面水滴的下标不受影响
+        for (int i = kept.length - 1; i >= 0; i--) {
+            if (!kept[i]) {
+                collectCanvasDrop(i, now);
+            }
+        }
+        boolean[] used = usedSlots();
+        for (int i = 0; i < inserted.size(); i++) {
+            addCanvasDrop(inserted.get(i), PreparedWaters.nextFreeSlot(used), now);
+        }
+        invalidate();
     }
 
     /**
-     * 设置自定义水滴布局list 必须含有id为tv_water的TextView
-     *
-     * @param childViewLayout
-     * @return
+     * 未被收取的水滴占用的固定位置(locationXY的下标)
      */
-    public AntForestView setChildView(List<Integer> childViewLayout) {
-        this.mChildViewResList = childViewLayout;
-        return this;
+    private boolean[] usedSlots() {
+        boolean[] used = new boolean[locationXY.length];
+        if (mRenderMode == RENDER_MODE_CANVAS) {
+            for (int i = 0; i < mCanvasDrops.size(); i++) {
+                int location = mCanvasDrops.locations[i];
+                if (location >= 0 && location < used.length) {
+                    used[location] = true;
+                }
+            }
+            return used;
+        }
+        for (View view : mViews) {
+            Object slot = view.getTag(R.string.location_index);
+            if (slot instanceof Integer && (Integer) slot < used.length) {
+                used[(Integer) slot] = true;
+            }
+        }
+        return used;
+    }
+
+    private void setDates(List<Water> waters) {
+        PreparedWaters prepared = createPrepared(waters);
+        prepared.prepare(null);
+        commitDates(prepared);
     }
 
     /**
-     * 设置水滴监听
-     *
-     * @param waterClickListener
+     * 提交计算好的水滴：只创建view/水滴并登记位置
      */
-    public AntForestView setCallBack(WaterClickListener waterClickListener) {
-        mWaterClickListener = waterClickListener;
-        return this;
+    private void commitDates(PreparedWaters prepared) {
+        if (mRenderMode == RENDER_MODE_CANVAS) {
+            addCanvasDrops(prepared);
+        } else if (mRenderMode == RENDER_MODE_VIRTUAL) {
+            addVirtualDrops(prepared);
+        } else {
+            addWaterView(prepared);
+        }
+        //文字是后台计算时的倒计时
+        mLabelTime = Math.min(mLabelTime, prepared.labelTime);
+        rescheduleRipening();
     }
 
     /**
-     * 设置水滴消失动画
-     *
-     * @param animate
-     * @return
+     * 虚拟模式下添加水滴数据，只为可见区域内的水滴创建view
      */
-    public AntForestView setWaterDisAnimate(Animation animate, boolean playAcq) {
-        this.animationDis = animate;
+    private void addVirtualDrops(PreparedWaters prepared) {
+        for (int i = 0; i < prepared.waters.size(); i++) {
+            int index = mVirtualDrops.add(prepared.waters.get(i));
+            if (index < 0) {
+                //id重复
+                continue;
+            }
+            mVirtualDrops.setPosition(index, prepared.x[i], prepared.y[i]);
+            mVirtualDrops.setFlag(index, DropStore.FLAG_UP, mRandom.nextBoolean());
+            mVirtualDrops.setSlot(index, prepared.occupy(i, mDropPlacer));
+        }
+        updateViewport();
+    }
+
+    private void addVirtualDrop(Water water) {
+        int index = mVirtualDrops.add(water);
+        if (index < 0) {
+            return;
+        }
+        mVirtualDrops.setFlag(index, DropStore.FLAG_UP, mRandom.nextBoolean());
+        int id = mDropPlacer.place(getPlaceRadius());
+        if (id < 0) {
+            //森林已放满(指定了森林大小时)，只能随机放置
+            float x = mRandom.nextFloat() * Math.max(0, mWorldWidth - mDropSize);
+            float y = mRandom.nextFloat() * Math.max(0, mWorldHeight - mDropSize - mDropTop);
+            mVirtualDrops.setPosition(index, x, y);
+            id = occupyLocation(x, y);
+        } else {
+            mVirtualDrops.setPosition(index, mDropPlacer.getX(id) - mDropSize / 2, mDropPlacer.getY(id) - mDropSize / 2 - mDropTop);
+        }
+        mVirtualDrops.setSlot(index, id);
+    }
+
+    /**
+     * 直接与DropStore比较，不为已有水滴创建Water对象
+     */
+    private void applyVirtualDrops(List<Water> waters) {
+        if (waters == null) {
+            waters = Collections.emptyList();
+        }
+        boolean[] kept = new boolean[mVirtualDrops.size()];
+        List<Water> inserted = new ArrayList<>();
+        Set<Long> insertedIds = new HashSet<>();
+        for (Water water : waters) {
+            int index = mVirtualDrops.indexOf(water.getId());
+            if (index < 0) {
+                if (insertedIds.add(water.getId())) {
+                    inserted.add(water);
+                }
+                continue;
+            }
+            if (kept[index]) {
+                continue;
+            }
+            kept[index] = true;
+            if (mVirtualDrops.getNumber(index) == water.getNumber() && mVirtualDrops.getType(index) == water.getType()
+                    && mVirtualDrops.getRipeTime(index) == water.getRipeTime()) {
+                continue;
+            }
+            mVirtualDrops.set(index, water);
+            View view = mPlacedViews.get(mVirtualDrops.getSlot(index));
+            if (view != null) {
+                bindWater(view, water);
+                pulseView(view);
+            }
+        }
+        //倒序移除，填补空位的是已经检查过的水滴
+        for (int i = kept.length - 1; i >= 0; i--) {
+            if (!kept[i]) {
+                View view = mPlacedViews.get(mVirtualDrops.getSlot(i));
+                removeVirtualDrop(i);
+                if (view != null) {
+                    disAnimate(view);
+                }
+            }
+        }
+        ensureWorldCapacity(mVirtualDrops.size() + inserted.size());
+        for (int i = 0; i < inserted.size(); i++) {
+            addVirtualDrop(inserted.get(i));
+        }
+        updateViewport();
+    }
+
+    /**
+     * 移除水滴数据，已绑定的view停止浮动但不回收(由调用者播放消失动画)
+     *
+     * @param index 在mVirtualDrops中的下标，之后最后一个水滴移到该下标
+     */
+    private void removeVirtualDrop(int index) {
+        int slot = mVirtualDrops.getSlot(index);
+        View view = mPlacedViews.get(slot);
+        mVirtualDrops.removeAt(index);
+        if (view != null) {
+            removeLiveView(view);
+        } else {
+            mDropPlacer.remove(slot);
+        }
+    }
+
+    /**
+     * 自动大小时，保证森林能放下count个水滴，不够时加高森林
+     */
+    private void ensureWorldCapacity(int count) {
+        if (mWorldWidth == 0 || computeWorldHeight(count) > mWorldHeight) {
+            resetVirtualWorld(count);
+        }
+    }
+
+    /**
+     * 按水滴数量计算森林大小，并重新登记已有水滴的位置
+     */
+    private void resetVirtualWorld(int count) {
+        mWorldWidth = Math.max(maxX, mContentWidth);
+        mWorldHeight = computeWorldHeight(count);
+        replaceVirtualDrops();
+    }
+
+    /**
+     * 森林大小变化后重新登记所有水滴的位置
+     */
+    private void replaceVirtualDrops() {
+        mDropPlacer.reset(0, mDropTop, mWorldWidth, mWorldHeight, getPlaceRadius() * 2);
+        SparseArray<View> views = mPlacedViews;
+        mPlacedViews = new SparseArray<>(views.size());
+        int[] oldSlots = new int[mVirtualDrops.size()];
+        for (int i = 0; i < oldSlots.length; i++) {
+            oldSlots[i] = mVirtualDrops.getSlot(i);
+        }
+        mVirtualDrops.clearSlots();
+        for (int i = 0; i < oldSlots.length; i++) {
+            int slot = occupyLocation(mVirtualDrops.getX(i), mVirtualDrops.getY(i));
+            mVirtualDrops.setSlot(i, slot);
+            View view = views.get(oldSlots[i]);
+            if (view != null) {
+                setPlacement(view, slot);
+            }
+        }
+        scrollTo(getScrollX(), getScrollY());
+        updateViewport();
+    }
+
+    private int computeWorldHeight(int count) {
+        if (mContentHeight > 0) {
+            return Math.max(maxY, mContentHeight);
+        }
+        //随机放置比紧密排列稀疏，按1.5倍估算需要的行数
+        float cell = getPlaceRadius() * 2;
+        int perRow = Math.max(1, (int) (Math.max(maxX, mContentWidth) / cell));
+        int rows = (int) Math.ceil(count * 1.5f / perRow);
+        return Math.max(maxY, (int) (rows * cell + mDropTop));
+    }
+
+    /**
+     * 根据当前scroll更新可见的水滴：滚出可见区域的view回收，滚入的水滴绑定view
+     */
+    private void updateViewport() {
+        if (mRenderMode != RENDER_MODE_VIRTUAL || maxX == 0) {
+            return;
+        }
+        float left = getScrollX();
+        float top = getScrollY() - mDropTop;
+        float right = left + maxX;
+        float bottom = getScrollY() + maxY;
+        float radius = getPlaceRadius();
+        for (int i = mViews.size() - 1; i >= 0; i--) {
+            View view = mViews.get(i);
+            int id = (Integer) view.getTag(R.string.placement_id);
+            float cx = mDropPlacer.getX(id), cy = mDropPlacer.getY(id);
+            if (cx + radius < left || cx - radius > right || cy + radius < top || cy - radius > bottom) {
+                releaseVirtualView(i);
+            }
+        }
+        if (mVisibleIds.length < mDropPlacer.size()) {
+            mVisibleIds = new int[Math.max(mDropPlacer.size(), mVisibleIds.length * 2)];
+        }
+        int count = mDropPlacer.query(left, top, right, bottom, mVisibleIds);
+        for (int i = 0; i < count; i++) {
+            int index = mVirtualDrops.indexOfSlot(mVisibleIds[i]);
+            if (index >= 0 && mPlacedViews.get(mVisibleIds[i]) == null) {
+                bindVirtualView(index);
+            }
+        }
+        if (!mViews.isEmpty()) {
+            startBob();
+        }
+    }
+
+    /**
+     * 为进入可见区域的水滴绑定view
+     */
+    private void bindVirtualView(int index) {
+        //只为可见的水滴创建Water对象，作为view的tag供点击回调使用
+        Water water = mVirtualDrops.get(index);
+        View view = obtainWaterView(mChildViewRes, water, PreparedWaters.labelOf(water, System.currentTimeMillis()));
+        setPlacement(view, mVirtualDrops.getSlot(index));
+        view.setX(mVirtualDrops.getX(index));
+        view.setY(mVirtualDrops.getY(index));
+        mViews.add(view);
+        mMotion.add(view.getTranslationY(), mVirtualDrops.hasFlag(index, DropStore.FLAG_UP));
+        if (mVirtualDrops.hasFlag(index, DropStore.FLAG_SHOWN)) {
+            addView(view);
+            return;
+        }
+        mVirtualDrops.setFlag(index, DropStore.FLAG_SHOWN, true);
+        addShowViewAnimation(view);
+    }
+
+    /**
+     * 回收滚出可见区域的水滴view，水滴位置保持占用
+     *
+     * @param index 在mViews中的下标
+     */
+    private void releaseVirtualView(int index) {
+        View view = mViews.remove(index);
+        mMotion.remove(index);
+        int id = (Integer) view.getTag(R.string.placement_id);
+        mPlacedViews.remove(id);
+        recycleView(view);
+    }
+
+    @Override
+    protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+        super.onScrollChanged(l, t, oldl, oldt);
+        updateViewport();
+    }
+
+    @Override
+    public void scrollTo(int x, int y) {
+        if (mRenderMode == RENDER_MODE_VIRTUAL) {
+            //只能在森林范围内平移
+            x = Math.max(0, Math.min(x, mWorldWidth - maxX));
+            y = Math.max(0, Math.min(y, mWorldHeight - maxY));
+        }
+        super.scrollTo(x, y);
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent event) {
+        //水滴view本身不处理点击，按下时命中水滴就由容器接管
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN && findDropAt(event) >= 0) {
+            return true;
+        }
+        if (mRenderMode != RENDER_MODE_VIRTUAL || !mPanEnabled) {
+            return super.onInterceptTouchEvent(event);
+        }
+        //移动超过touchSlop时由容器接管为平移
+        return handPanTouch(event);
+    }
+
+    /**
+     * 处理平移手势
+     *
+     * @return 是否正在平移
+     */
+    private boolean handPanTouch(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mLastTouchX = event.getX();
+                mLastTouchY = event.getY();
+                mPanning = false;
+                break;
+            case MotionEvent.ACTION_MOVE:
+                float dx = event.getX() - mLastTouchX;
+                float dy = event.getY() - mLastTouchY;
+                if (!mPanning && (Math.abs(dx) > mTouchSlop || Math.abs(dy) > mTouchSlop)) {
+                    mPanning = true;
+                    if (getParent() != null) {
+                        getParent().requestDisallowInterceptTouchEvent(true);
+                    }
+                }
+                if (mPanning) {
+                    scrollBy(-(int) dx, -(int) dy);
+                    mLastTouchX = event.getX();
+                    mLastTouchY = event.getY();
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                mPanning = false;
+                break;
+            default:
+                break;
+        }
+        return mPanning;
+    }
+
+    /**
+     * 画布模式下添加水滴数据
+     */
+    private void addCanvasDrops(PreparedWaters prepared) {
+        ensureDropBitmap();
+        long now = AnimationUtils.currentAnimationTimeMillis();
+        for (int i = 0; i < prepared.waters.size(); i++) {
+            int index = mCanvasDrops.add(prepared.waters.get(i));
+            if (index < 0) {
+                //id重复
+                continue;
+            }
+            mCanvasDrops.store.setPosition(index, prepared.x[i], prepared.y[i]);
+            mCanvasDrops.store.setSlot(index, prepared.occupy(i, mDropPlacer));
+            mCanvasDrops.locations[index] = prepared.slots[i];
+            mCanvasDrops.showStartTimes[index] = now;
+            bindCanvasLabel(index, prepared, i);
+            showCanvasDrop(index);
+        }
+        invalidate();
+    }
+
+    private void addCanvasDrop(Water water, int slot, long now) {
+        ensureDropBitmap();
+        int index = mCanvasDrops.add(water);
+        if (index < 0) {
+            return;
+        }
+        DropStore store = mCanvasDrops.store;
+        if (slot < locationXY.length) {
+            float x = maxX * (float) locationXY[slot][0];
+            float y = maxY * (float) locationXY[slot][1];
+            store.setPosition(index, x, y);
+            store.setSlot(index, occupyLocation(x, y));
+        } else {
+            float[] location = new float[2];
+            store.setSlot(index, placeLocation(location));
+            store.setPosition(index, location[0], location[1]);
+        }
+        mCanvasDrops.locations[index] = slot;
+        mCanvasDrops.showStartTimes[index] = now;
+        bindCanvasLabel(index);
+        showCanvasDrop(index);
+    }
+
+    private void showCanvasDrop(int index) {
+        float y = mCanvasDrops.store.getY(index);
+        mCanvasDrops.drawY[index] = y + mDropTop;
+        mMotion.add(y, mRandom.nextBoolean());
+    }
+
+    /**
+     * 画布模式下开始收取水滴：停止浮动，释放位置，移到消失中的水滴并开始消失动画
+     *
+     * @param index 在mCanvasDrops中的下标，即在mMotion中的下标
+     */
+    private void collectCanvasDrop(int index, long now) {
+        mMotion.remove(index);
+        mDropPlacer.remove(mCanvasDrops.store.getSlot(index));
+        int collected = mCanvasDrops.moveTo(index, mCollectedDrops);
+        mCollectedDrops.disStartTimes[collected] = now;
+    }
+
+    /**
+     * 预先计算水滴文字及其位置
+     */
+    private void bindCanvasLabel(int index) {
+        long now = System.currentTimeMillis();
+        DropStore store = mCanvasDrops.store;
+        DropStyle style = mDropStyles.get(store.getType(index));
+        Paint paint = style == null ? mTextPaint : style.getTextPaint();
+        float iconHeight = style == null ? 0 : style.getIconHeight();
+        Paint.FontMetrics fm = paint.getFontMetrics();
+        String label = PreparedWaters.labelOf(store.getNumber(index), store.getRipeTime(index), now);
+        mCanvasDrops.styles[index] = style;
+        mCanvasDrops.labels[index] = label;
+        mCanvasDrops.labelX[index] = (mDropSize - paint.measureText(label)) / 2;
+        //有图标时图标和文字作为整体居中
+        mCanvasDrops.labelBaseline[index] = (mDropSize + iconHeight - fm.bottom - fm.top) / 2;
+        mCanvasDrops.cacheKeys[index] = cacheKeyOf(index, now);
+    }
+
+    /**
+     * 使用后台测量好的文字位置，测量后该类型的样式有变化时重新测量
+     */
+    private void bindCanvasLabel(int index, PreparedWaters prepared, int i) {
+        DropStyle style = mDropStyles.get(mCanvasDrops.store.getType(index));
+        if (prepared.labelX == null || style != prepared.getStyle(i)) {
+            bindCanvasLabel(index);
+            return;
+        }
+        mCanvasDrops.styles[index] = style;
+        mCanvasDrops.labels[index] = prepared.labels[i];
+        mCanvasDrops.labelX[index] = prepared.labelX[i];
+        mCanvasDrops.labelBaseline[index] = prepared.labelBaseline[i];
+        mCanvasDrops.cacheKeys[index] = cacheKeyOf(index, prepared.labelTime);
+    }
+
+    /**
+     * 样式和文字都相同的水滴共用合成bitmap，倒计时每秒变化，不缓存
+     */
+    private String cacheKeyOf(int index, long labelTime) {
+        DropStore store = mCanvasDrops.store;
+        if (store.getRipeTime(index) > labelTime) {
+            return null;
+        }
+        String label = mCanvasDrops.labels[index];
+        return mCanvasDrops.styles[index] == null ? label : store.getType(index) + "/" + label;
+    }
+
+    /**
+     * 将水滴背景绘制到bitmap中，之后每帧只绘制bitmap
+     */
+    private void ensureDropBitmap() {
+        if (mDropBitmap != null) {
+            return;
+        }
+        int size = Math.round(mDropSize);
+        mDropBitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Drawable drawable = ContextCompat.getDrawable(getContext(), R.drawable.tv_water_bg);
+        if (drawable != null) {
+            drawable.setBounds(0, 0, size, size);
+            drawable.draw(new Canvas(mDropBitmap));
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mRenderMode != RENDER_MODE_CANVAS || mCanvasDrops.isEmpty() && mCollectedDrops.isEmpty()) {
+            return;
+        }
+        if (mMetricsRecorder != null) {
+            //画布模式下位置在绘制时计算，以绘制作为一帧
+            mMetricsRecorder.beginUpdate(System.nanoTime());
+        }
+        long now = AnimationUtils.currentAnimationTimeMillis();
+        int level = QualityController.LEVEL_FULL;
+        if (mCanvasAnimating) {
+            long frameTimeNanos = now * 1000000L;
+            if (mQualityController != null) {
+                level = mQualityController.onFrame(frameTimeNanos);
+            }
+            //停止浮动时不推进运动，恢复后从当前位置继续
+            if (level < QualityController.LEVEL_FROZEN) {
+                mMotion.step(mLastFrameTimeNanos == 0 ? 0 : frameTimeNanos - mLastFrameTimeNanos);
+            }
+            mLastFrameTimeNanos = frameTimeNanos;
+        }
+        //降级时消失动画只保留透明度
+        boolean fullDisappear = level < QualityController.LEVEL_REDUCED;
+        boolean animating = false;
+        DropStore store = mCanvasDrops.store;
+        for (int i = store.size() - 1; i >= 0; i--) {
+            float x = store.getX(i);
+            float y = store.getY(i) + mDropTop;
+            float progress = Math.min(1f, (now - mCanvasDrops.showStartTimes[i]) / (float) SHOW_DURATION);
+            if (progress < 1f) {
+                animating = true;
+            }
+            if (mCanvasAnimating) {
+                y = mMotion.getY(i) + mDropTop;
+                animating = true;
+            }
+            mCanvasDrops.drawY[i] = y;
+            float scale = progress * pulseScale(mCanvasDrops, i, now);
+            if (mCanvasDrops.pulseStartTimes[i] >= 0) {
+                animating = true;
+            }
+            drawCanvasDrop(canvas, mCanvasDrops, i, x, y, progress, scale);
+        }
+        //消失中的水滴画在最上层
+        DropStore collected = mCollectedDrops.store;
+        for (int i = collected.size() - 1; i >= 0; i--) {
+            float dis = Math.min(1f, (now - mCollectedDrops.disStartTimes[i]) / (float) DISAPPEAR_DURATION);
+            if (dis >= 1f) {
+                mCollectedDrops.removeAt(i);
+                continue;
+            }
+            float x = collected.getX(i);
+            float y = collected.getY(i) + mDropTop;
+            if (fullDisappear && (0 != viewDisappearX || 0 != viewDisappearY)) {
+                x += (viewDisappearX - collected.getX(i)) * dis;
+                y += (viewDisappearY - collected.getY(i)) * dis;
+            }
+            float progress = 1f - dis;
+            float scale = (fullDisappear ? progress : 1f) * pulseScale(mCollectedDrops, i, now);
+            drawCanvasDrop(canvas, mCollectedDrops, i, x, y, progress, scale);
+            animating = true;
+        }
+        if (animating) {
+            ViewCompat.postInvalidateOnAnimation(this);
+        }
+        if (mMetricsRecorder != null) {
+            mMetricsRecorder.endUpdate(store.size() + collected.size(), mCanvasAnimating ? mMotion.size() : 0, level);
+        }
+    }
+
+    /**
+     * 数值变化提示动画的缩放，结束后清除开始时间
+     */
+    private float pulseScale(CanvasDrops drops, int index, long now) {
+        long start = drops.pulseStartTimes[index];
+        if (start < 0) {
+            return 1f;
+        }
+        float pulse = Math.min(1f, (now - start) / (float) SHOW_DURATION);
+        if (pulse >= 1f) {
+            drops.pulseStartTimes[index] = CanvasDrops.NONE;
+            return 1f;
+        }
+        return 1.2f - 0.2f * pulse;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        if (mMetricsRecorder == null) {
+            super.draw(canvas);
+            return;
+        }
+        mMetricsRecorder.beginDraw();
+        super.draw(canvas);
+        mMetricsRecorder.endDraw();
+    }
+
+    private void drawCanvasDrop(Canvas canvas, CanvasDrops drops, int index, float x, float y, float progress, float scale) {
+        int alpha = (int) (255 * progress);
+        float half = mDropSize / 2;
+        canvas.save();
+        canvas.translate(x, y);
+        canvas.scale(scale, scale, half, half);
+        mBitmapPaint.setAlpha(alpha);
+        Bitmap cached = mLayerCache == null || drops.cacheKeys[index] == null ? null : getCachedDropBitmap(drops, index);
+        if (cached != null) {
+            canvas.drawBitmap(cached, 0, 0, mBitmapPaint);
+        } else {
+            Paint paint = getLabelPaint(drops.styles[index]);
+            paint.setAlpha(alpha);
+            canvas.drawBitmap(getBackgroundBitmap(drops.styles[index]), 0, 0, mBitmapPaint);
+            canvas.drawText(drops.labels[index], drops.labelX[index], drops.labelBaseline[index], paint);
+        }
+        canvas.restore();
+    }
+
+    private Paint getLabelPaint(DropStyle style) {
+        return style == null ? mTextPaint : style.getTextPaint();
+    }
+
+    private Bitmap getBackgroundBitmap(DropStyle style) {
+        return style == null ? mDropBitmap : style.getBitmap(getResources());
+    }
+
+    /**
+     * 获取背景与文字合成后的水滴bitmap，样式和数值相同的水滴共用
+     *
+     * @return 超出缓存上限时返回null
+     */
+    private Bitmap getCachedDropBitmap(CanvasDrops drops, int index) {
+        String key = drops.cacheKeys[index];
+        Bitmap bitmap = mLayerCache.getBitmap(key);
+        if (bitmap != null || !mLayerCache.canPutBitmap(mDropBitmap.getByteCount())) {
+            return bitmap;
+        }
+        bitmap = Bitmap.createBitmap(mDropBitmap.getWidth(), mDropBitmap.getHeight(), Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        DropStyle style = drops.styles[index];
+        Paint paint = getLabelPaint(style);
+        paint.setAlpha(255);
+        canvas.drawBitmap(getBackgroundBitmap(style), 0, 0, null);
+        canvas.drawText(drops.labels[index], drops.labelX[index], drops.labelBaseline[index], paint);
+        mLayerCache.putBitmap(key, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * 查找点击位置的水滴，坐标加上scroll后与水滴位置一致
+     *
+     * @return DropPlacer中的id，没有命中时返回-1
+     */
+    private int findDropAt(MotionEvent event) {
+        return mDropPlacer.findAt(event.getX() + getScrollX(), event.getY() + getScrollY(), mDropSize / 2, mDropLocator);
+    }
+
+    /**
+     * 按下和抬起命中同一个水滴时收取，虚拟模式下开始平移后不再作为点击
+     */
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        boolean pan = mRenderMode == RENDER_MODE_VIRTUAL && mPanEnabled;
+        if (pan && handPanTouch(event)) {
+            mTouchDropId = -1;
+            return true;
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mTouchDropId = findDropAt(event);
+                return mTouchDropId >= 0 || pan || super.onTouchEvent(event);
+            case MotionEvent.ACTION_UP:
+                int id = mTouchDropId;
+                mTouchDropId = -1;
+                if (id >= 0 && id == findDropAt(event)) {
+                    performDropClick(id);
+                    return true;
+                }
+                return id >= 0 || pan || super.onTouchEvent(event);
+            case MotionEvent.ACTION_CANCEL:
+                boolean touching = mTouchDropId >= 0;
+                mTouchDropId = -1;
+                return touching || pan || super.onTouchEvent(event);
+            default:
+                return mTouchDropId >= 0 || pan || super.onTouchEvent(event);
+        }
+    }
+
+    private void performDropClick(int id) {
+        int index = mRenderMode == RENDER_MODE_CANVAS ? mCanvasDrops.store.indexOfSlot(id) : -1;
+        long ripeTime = index >= 0 ? mCanvasDrops.store.getRipeTime(index) : ((Water) mPlacedViews.get(id).getTag()).getRipeTime();
+        if (ripeTime > System.currentTimeMillis()) {
+            //未成熟的水滴不能收取
+            return;
+        }
+        playSoundEffect(SoundEffectConstants.CLICK);
+        if (index >= 0) {
+            handCanvasDropClick(index);
+        } else {
+            handViewClick(mPlacedViews.get(id));
+        }
+    }
+
+    private void handCanvasDropClick(int index) {
+        DropStore store = mCanvasDrops.store;
+        mTotalConsumeWater += store.getNumber(index);
+        if (null != mWaterClickListener) {
+            mWaterClickListener.onWaterClick(store.get(index));
+        }
+        collectCanvasDrop(index, AnimationUtils.currentAnimationTimeMillis());
+        invalidate();
+    }
+
+    /**
+     * 添加水滴view
+     */
+    private void addWaterView(PreparedWaters prepared) {
+        for (int i = 0; i < prepared.waters.size(); i++) {
+            View view = createWaterView(prepared.waters.get(i), prepared.slots[i], prepared.labels[i]);
+            view.setX(prepared.x[i]);
+            view.setY(prepared.y[i]);
+            setPlacement(view, prepared.occupy(i, mDropPlacer));
+            showWaterView(view);
+        }
+    }
+
+    /**
+     * @param water
+     * @param i     位置下标，同时决定使用mChildViewResList中的哪个布局
+     */
+    private void addWaterView(Water water, int i) {
+        View view = createWaterView(water, i, PreparedWaters.labelOf(water, System.currentTimeMillis()));
+        setChildViewLocation(view, i);
+        showWaterView(view);
+    }
+
+    private View createWaterView(Water water, int i, String label) {
+        int layoutRes;
+        if (null == mChildViewResList || 0 == mChildViewResList.size()) {
+            layoutRes = mChildViewRes;
+        } else {
+            layoutRes = i < mChildViewResList.size() ? mChildViewResList.get(i) : mChildViewRes;
+        }
+        View view = obtainWaterView(layoutRes, water, label);
+        view.setTag(R.string.location_index, i);
+        return view;
+    }
+
+    private void showWaterView(View view) {
+        mViews.add(view);
+        //每个水滴随机设置浮动的方向
+        mMotion.add(view.getTranslationY(), mRandom.nextBoolean());
+        addShowViewAnimation(view);
+    }
+
+    /**
+     * 从回收池取出水滴view并绑定数据
+     */
+    private View obtainWaterView(int layoutRes, Water water, String label) {
+        View view = mDropViewPool.acquire(mInflater, layoutRes, this);
+        bindWater(view, water, label);
+        if (mLayerCache != null) {
+            mLayerCache.attachLayer(view, (int) (mDropSize * (mDropSize + mDropTop) * 4));
+        }
+        return view;
+    }
+
+    /**
+     * 绑定水滴数据
+     */
+    private void bindWater(View view, Water water) {
+        bindWater(view, water, PreparedWaters.labelOf(water, System.currentTimeMillis()));
+    }
+
+    private void bindWater(View view, Water water, String label) {
+        TextView tvWater = view.findViewById(R.id.tv_water);
+        view.setTag(water);
+        mDropViewPool.applyStyle(view, mDropStyles.get(water.getType()));
+        tvWater.setText(label);
+    }
+
+    private void addShowViewAnimation(View view) {
+        addView(view);
+        view.setAlpha(0);
+        view.setScaleX(0);
+        view.setScaleY(0);
+        view.animate().alpha(1).scaleX(1).scaleY(1).setDuration(500).start();
+        startBob();
+    }
+
+    /**
+     * 数值变化或成熟时缩放提示
+     */
+    private void pulseView(View view) {
+        view.setScaleX(1.2f);
+        view.setScaleY(1.2f);
+        view.animate().scaleX(1).scaleY(1).setDuration(SHOW_DURATION).start();
+    }
+
+    /**
+     * 水滴新增、移除或变化后重新登记未成熟水滴的成熟时间
+     */
+    private void rescheduleRipening() {
+        long now = System.currentTimeMillis();
+        mRipeSchedule.clear();
+        if (mRenderMode == RENDER_MODE_CANVAS) {
+            DropStore store = mCanvasDrops.store;
+            for (int i = 0; i < store.size(); i++) {
+                if (store.getRipeTime(i) > now) {
+                    mRipeSchedule.add(store.getRipeTime(i));
+                }
+            }
+        } else if (mRenderMode == RENDER_MODE_VIRTUAL) {
+            for (int i = 0; i < mVirtualDrops.size(); i++) {
+                if (mVirtualDrops.getRipeTime(i) > now) {
+                    mRipeSchedule.add(mVirtualDrops.getRipeTime(i));
+                }
+            }
+        } else {
+            for (View view : mViews) {
+                Water water = (Water) view.getTag();
+                if (!water.isRipe(now)) {
+                    mRipeSchedule.add(water.getRipeTime());
+                }
+            }
+        }
+        updateRipening();
+    }
+
+    /**
+     * 弹出已到期的成熟时间，刷新倒计时和刚成熟水滴的文字，再安排下一次唤醒
+     * ->不可见时不唤醒，恢复时(updateAnimState)一次刷新暂停期间的变化
+     */
+    private void updateRipening() {
+        removeCallbacks(mRipeTick);
+        if (!isActive()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        mRipeSchedule.advance(now);
+        refreshRipeLabels(mLabelTime, now);
+        mLabelTime = now;
+        long wakeTime = mRipeSchedule.nextWakeTime(now);
+        if (wakeTime != RipeSchedule.NEVER) {
+            postDelayed(mRipeTick, wakeTime - now);
+        }
+    }
+
+    /**
+     * 刷新在since时还未成熟的水滴的文字，其余水滴的文字不会变化
+     * ->虚拟模式下只刷新有view的水滴，其余水滴绑定view时按当时的时间计算
+     */
+    private void refreshRipeLabels(long since, long now) {
+        if (mRenderMode == RENDER_MODE_CANVAS) {
+            long animationTime = AnimationUtils.currentAnimationTimeMillis();
+            boolean changed = false;
+            DropStore store = mCanvasDrops.store;
+            for (int i = 0; i < store.size(); i++) {
+                if (store.getRipeTime(i) <= since) {
+                    continue;
+                }
+                bindCanvasLabel(i);
+                if (store.getRipeTime(i) <= now) {
+                    mCanvasDrops.pulseStartTimes[i] = animationTime;
+                }
+                changed = true;
+            }
+            if (changed) {
+                invalidate();
+            }
+            return;
+        }
+        for (View view : mViews) {
+            Water water = (Water) view.getTag();
+            if (water.isRipe(since)) {
+                continue;
+            }
+            bindWater(view, water);
+            if (water.isRipe(now)) {
+                pulseView(view);
+            }
+        }
+    }
+
+    /**
+     * 水滴被点击、收取或移除：停止浮动并释放位置
+     */
+    private void removeLiveView(View view) {
+        int index = mViews.indexOf(view);
+        if (index >= 0) {
+            mViews.remove(index);
+            mMotion.remove(index);
+        }
+        releaseLocation(view);
+        if (mMotion.size() == 0) {
+            mBobScheduler.stop();
+            mLastFrameTimeNanos = 0;
+        }
+    }
+
+    /**
+     * 每帧推进所有水滴的浮动相位
+     */
+    @VisibleForTesting
+    void stepBob(long frameTimeNanos) {
+        long delta = mLastFrameTimeNanos == 0 ? 0 : frameTimeNanos - mLastFrameTimeNanos;
+        mLastFrameTimeNanos = frameTimeNanos;
+        if (mMetricsRecorder != null) {
+            mMetricsRecorder.beginUpdate(frameTimeNanos);
+        }
+        int level = mQualityController == null ? QualityController.LEVEL_FULL : mQualityController.onFrame(frameTimeNanos);
+        //停止浮动时不推进运动，恢复后从当前位置继续
+        if (level < QualityController.LEVEL_FROZEN) {
+            mMotion.step(delta);
+            for (int i = 0; i < mViews.size(); i++) {
+                View view = mViews.get(i);
+                if (shouldUpdateDrop(i, view)) {
+                    view.setTranslationY(mMotion.getY(i));
+                }
+            }
+        }
+        if (mMetricsRecorder != null) {
+            mMetricsRecorder.endUpdate(mViews.size(), mMotion.size(), level);
+        }
+    }
+
+    /**
+     * 本帧是否更新该水滴的位置，LEVEL_LOW时远离视口中心的水滴降低更新频率
+     */
+    private boolean shouldUpdateDrop(int index, View view) {
+        if (mQualityController == null || mQualityController.getLevel() < QualityController.LEVEL_LOW) {
+            return true;
+        }
+        float dx = view.getX() + view.getWidth() / 2f - getScrollX() - getWidth() / 2f;
+        float dy = view.getY() + view.getHeight() / 2f - getScrollY() - getHeight() / 2f;
+        float distance = (float) Math.sqrt(dx * dx + dy * dy) - view.getWidth() * view.getScaleX() / 2;
+        float viewportRadius = (float) Math.sqrt(getWidth() * getWidth() + getHeight() * getHeight()) / 2;
+        return mQualityController.shouldUpdate(index, distance, viewportRadius);
+    }
+
+    private void setChildViewLocation(View view, int i) {
+        if (i >= locationXY.length) {
+            float[] location = new float[2];
+            setPlacement(view, placeLocation(location));
+            view.setX(location[0]);
+            view.setY(location[1]);
+            return;
+        }
+        view.setX((maxX * (float) locationXY[i][0]));
+        view.setY((maxY * (float) locationXY[i][1]));
+        setPlacement(view, occupyLocation(view.getX(), view.getY()));
+    }
+
+    /**
+     * 释放水滴占用的位置
+     */
+    private void releaseLocation(View view) {
+        Object id = view.getTag(R.string.placement_id);
+        if (id instanceof Integer) {
+            mDropPlacer.remove((Integer) id);
+            mPlacedViews.remove((Integer) id);
+        }
+        view.setTag(R.string.placement_id, null);
+    }
+
+    private void handViewClick(View view) {
+        Object tag = view.getTag();
+        if (tag instanceof Water) {
+            mTotalConsumeWater += ((Water) tag).getNumber();
+        }
+        if (tag instanceof Water && null != mWaterClickListener) {
+            Water waterTag = (Water) tag;
+            mWaterClickListener.onWaterClick(waterTag);
+        }
+        //消失动画接管位移，不再浮动
+        if (mRenderMode == RENDER_MODE_VIRTUAL) {
+            int index = mVirtualDrops.indexOfSlot((Integer) view.getTag(R.string.placement_id));
+            if (index >= 0) {
+                removeVirtualDrop(index);
+            }
+        } else {
+            removeLiveView(view);
+        }
+        if (animationDis == null) {
+            disAnimate(view);
+        } else {
+            view.setAnimation(animationDis);
+            if (palyAcq) {
+                disAnimate(view);
+            } else {
+                //只播放自定义动画时，在动画时长结束后移除并回收
+                view.animate().setStartDelay(animationDis.getStartOffset()).setDuration(animationDis.getDuration())
+                        .setListener(recycleListener(view)).start();
+            }
+        }
+    }
+
+    /**
+     * 收取当前所有已成熟的水滴
+     *
+     * @return
+     */
+    public AntForestView collectAll() {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                collectWaters(null);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * 批量收取水滴，按水滴id匹配当前显示且已成熟的水滴
+     * ->所有水滴共用一个消失动画(不使用setWaterDisAnimate设置的动画)
+     * ->只回调一次WaterCollectListener，不回调WaterClickListener
+     *
+     * @param waters
+     * @return
+     */
+    public AntForestView collect(Collection<Water> waters) {
+        if (waters == null || waters.isEmpty()) {
+            return this;
+        }
+        final Set<Long> keys = new HashSet<>();
+        for (Water water : waters) {
+            keys.add(WaterDiff.keyOf(water));
+        }
+        post(new Runnable() {
+            @Override
+            public void run() {
+                collectWaters(keys);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * @param keys 要收取的水滴id，为null时收取全部
+     */
+    private void collectWaters(Set<Long> keys) {
+        List<Water> collected = new ArrayList<>();
+        int total = 0;
+        //未成熟的水滴不能收取
+        long time = System.currentTimeMillis();
+        if (mRenderMode == RENDER_MODE_CANVAS) {
+            long now = AnimationUtils.currentAnimationTimeMillis();
+            DropStore store = mCanvasDrops.store;
+            //倒序收取，mMotion中前面水滴的下标不受影响
+            for (int i = store.size() - 1; i >= 0; i--) {
+                if (keys != null && !keys.contains(store.getId(i)) || store.getRipeTime(i) > time) {
+                    continue;
+                }
+                collected.add(0, store.get(i));
+                total += store.getNumber(i);
+                collectCanvasDrop(i, now);
+            }
+            invalidate();
+        } else if (mRenderMode == RENDER_MODE_VIRTUAL) {
+            List<View> views = new ArrayList<>();
+            //倒序收取，填补空位的是已经检查过的水滴
+            for (int i = mVirtualDrops.size() - 1; i >= 0; i--) {
+                if (keys != null && !keys.contains(mVirtualDrops.getId(i)) || mVirtualDrops.getRipeTime(i) > time) {
+                    continue;
+                }
+                View view = mPlacedViews.get(mVirtualDrops.getSlot(i));
+                if (view != null) {
+                    views.add(view);
+                }
+                collected.add(mVirtualDrops.get(i));
+                total += mVirtualDrops.getNumber(i);
+                removeVirtualDrop(i);
+            }
+            Collections.reverse(collected);
+            if (!views.isEmpty()) {
+                disAnimate(views);
+            }
+        } else {
+            List<View> views = new ArrayList<>();
+            for (int i = 0; i < mViews.size(); i++) {
+                View view = mViews.get(i);
+                Water water = (Water) view.getTag();
+                if (keys != null && !keys.contains(WaterDiff.keyOf(water)) || !water.isRipe(time)) {
+                    continue;
+                }
+                views.add(view);
+                collected.add(water);
+                total += water.getNumber();
+            }
+            for (View view : views) {
+                removeLiveView(view);
+            }
+            if (!views.isEmpty()) {
+                disAnimate(views);
+            }
+        }
+        if (collected.isEmpty()) {
+            return;
+        }
+        mTotalConsumeWater += total;
+        if (mWaterCollectListener != null) {
+            mWaterCollectListener.onWatersCollected(total, collected);
+        }
+    }
+
+    /**
+     * 一个动画同时移除多个水滴
+     */
+    private void disAnimate(final List<View> views) {
+        final int count = views.size();
+        final float[] startX = new float[count];
+        final float[] startY = new float[count];
+        for (int i = 0; i < count; i++) {
+            View view = views.get(i);
+            view.animate().cancel();
+            startX[i] = view.getTranslationX();
+            startY[i] = view.getTranslationY();
+        }
+        //降级时只保留透明度
+        final boolean full = getQualityLevel() < QualityController.LEVEL_REDUCED;
+        final boolean move = full && (0 != viewDisappearX || 0 != viewDisappearY);
+        //消失位置是相对控件的，虚拟模式下需要加上平移的距离
+        final float endX = viewDisappearX + getScrollX();
+        final float endY = viewDisappearY + getScrollY();
+        ValueAnimator animator = ValueAnimator.ofFloat(0, 1);
+        animator.setDuration(DISAPPEAR_DURATION);
+        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                float fraction = animation.getAnimatedFraction();
+                for (int i = 0; i < count; i++) {
+                    View view = views.get(i);
+                    view.setAlpha(1 - fraction);
+                    if (full) {
+                        view.setScaleX(1 - fraction);
+                        view.setScaleY(1 - fraction);
+                    }
+                    if (move) {
+                        view.setTranslationX(startX[i] + (endX - startX[i]) * fraction);
+                        view.setTranslationY(startY[i] + (endY - startY[i]) * fraction);
+                    }
+                }
+            }
+        });
+        animator.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                mRemoveAnimators.remove(animation);
+                for (View view : views) {
+                    recycleView(view);
+                }
+            }
+        });
+        mRemoveAnimators.add(animator);
+        animator.start();
+    }
+
+    /**
+     * 移除并回收水滴view
+     */
+    private void recycleView(View view) {
+        if (view.getParent() != this) {
+            return;
+        }
+        removeView(view);
+        if (mLayerCache != null) {
+            mLayerCache.detachLayer(view);
+        }
+        mDropViewPool.release(view);
+    }
+
+    /**
+     * 动画结束时移除并回收view；view被回收池复用前会去掉监听，不会误删复用后的水滴
+     */
+    private AnimatorListenerAdapter recycleListener(final View view) {
+        return new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                recycleView(view);
+            }
+        };
+    }
+
+    private void disAnimate(final View view) {
+        AnimatorListenerAdapter recycleListener = recycleListener(view);
+        if (getQualityLevel() >= QualityController.LEVEL_REDUCED) {
+            //降级时只保留透明度
+            view.animate().alpha(0).setDuration(1000).setListener(recycleListener).start();
+        } else if (0 == viewDisappearX && 0 == viewDisappearY) {
+            view.animate()
+                    .alpha(0).scaleX(0).scaleY(0).setDuration(1000).setListener(recycleListener).start();
+        } else {
+            view.animate()
+                    .translationY(viewDisappearY + getScrollY()).translationX(viewDisappearX + getScrollX())
+                    .alpha(0).scaleX(0).scaleY(0).setDuration(1000).setListener(recycleListener).start();
+        }
+    }
+
+    /**
+     * 绑定宿主Activity/Fragment的生命周期：onPause时暂停，onResume时恢复，onDestroy时停止动画
+     *
+     * @param owner
+     * @return
+     */
+    public AntForestView bindLifecycle(@NonNull LifecycleOwner owner) {
+        mHostLifecycle.bind(owner);
+        return this;
+    }
+
+    /**
+     * 设置自定义水滴布局 必须含有id为tv_water的TextView
+     *
+     * @param childViewLayout
+     * @return
+     */
+    public AntForestView setChildView(int childViewLayout) {
+        this.mChildViewRes = childViewLayout;
+        return this;
+    }
+
+    /**
+     * 设置自定义水滴布局list 必须含有id为tv_water的TextView
+     *
+     * @param childViewLayout
+     * @return
+     * @deprecated 每种布局都需要单独inflate，画布、虚拟模式下也不生效，使用{@link #setDropStyle(int, DropStyle)}按水滴类型设置样式
+     */
+    @Deprecated
+    public AntForestView setChildView(List<Integer> childViewLayout) {
+        this.mChildViewResList = childViewLayout;
+        return this;
+    }
+
+    /**
+     * 为一种水滴类型(Water.getType)设置样式，对之后绑定的水滴生效(三种模式都支持)
+     * ->所有水滴使用同一个布局并从回收池复用，只按类型设置背景、文字、图标，不再inflate不同的布局
+     *
+     * @param style 为null时该类型使用水滴布局本身的样式
+     */
+    public AntForestView setDropStyle(int type, @Nullable DropStyle style) {
+        if (style == null) {
+            mDropStyles.remove(type);
+        } else {
+            style.resolve(getContext(), Math.round(mDropSize));
+            mDropStyles.put(type, style);
+        }
+        return this;
+    }
+
+    /**
+     * 设置水滴view回收池，同一界面内的多个水滴控件可以共用一个
+     *
+     * @param dropViewPool
+     * @return
+     */
+    public AntForestView setDropViewPool(@NonNull DropViewPool dropViewPool) {
+        this.mDropViewPool = dropViewPool;
+        return this;
+    }
+
+    /**
+     * 设置水滴静态内容缓存
+     * ->view模式下之后添加的水滴开启硬件层
+     * ->画布模式下按文字缓存合成后的水滴bitmap
+     *
+     * @param layerCache 为null时不缓存
+     * @return
+     */
+    public AntForestView setDropLayerCache(@Nullable DropLayerCache layerCache) {
+        this.mLayerCache = layerCache;
+        return this;
+    }
+
+    /**
+     * 设置水滴监听
+     *
+     * @param waterClickListener
+     */
+    public AntForestView setCallBack(WaterClickListener waterClickListener) {
+        mWaterClickListener = waterClickListener;
+        return this;
+    }
+
+    /**
+     * 设置批量收取监听
+     *
+     * @param waterCollectListener
+     * @return
+     */
+    public AntForestView setCollectCallBack(WaterCollectListener waterCollectListener) {
+        mWaterCollectListener = waterCollectListener;
+        return this;
+    }
+
+    /**
+     * 设置帧数据监听，用于上报帧耗时、丢帧、水滴数等，为null时关闭采集
+     *
+     * @param listener
+     * @return
+     */
+    public AntForestView setFrameMetricsListener(@Nullable FrameMetricsListener listener) {
+        if (mMetricsRecorder != null) {
+            mMetricsRecorder.release();
+            mMetricsRecorder = null;
+        }
+        if (listener != null) {
+            mMetricsRecorder = new FrameMetricsRecorder(getContext(), listener);
+        }
+        return this;
+    }
+
+    /**
+     * 设置动画质量控制，帧间隔变长时逐级降低动画效果，为null时始终使用全部效果
+     *
+     * @param qualityController 阈值等在QualityController中设置
+     * @return
+     */
+    public AntForestView setQualityController(@Nullable QualityController qualityController) {
+        this.mQualityController = qualityController;
+        return this;
+    }
+
+    private int getQualityLevel() {
+        return mQualityController == null ? QualityController.LEVEL_FULL : mQualityController.getLevel();
+    }
+
+    /**
+     * 获取最近一帧的数据
+     *
+     * @return 未设置帧数据监听时返回null
+     */
+    @Nullable
+    public ForestFrameMetrics getFrameMetrics() {
+        return mMetricsRecorder == null ? null : mMetricsRecorder.getMetrics();
+    }
+
+    /**
+     * 获取已经收取的水滴总数值
+     */
+    public int getTotalConsumeWater() {
+        return mTotalConsumeWater;
+    }
+
+    /**
+     * 设置水滴消失动画
+     *
+     * @param animate
+     * @return
+     */
+    public AntForestView setWaterDisAnimate(Animation animate, boolean playAcq) {
+        this.animationDis = animate;
         this.palyAcq = playAcq;
         return this;
     }
 
+    /**
+     * 设置绘制模式(需在setWaters之前调用)
+     * ->RENDER_MODE_VIEW：setChildView、setWaterDisAnimate生效
+     * ->RENDER_MODE_CANVAS：只按setDropStyle绘制，setChildView、setWaterDisAnimate、setContentSize、setPanEnabled都不生效
+     * ->RENDER_MODE_VIRTUAL：setChildView(单个布局)、setWaterDisAnimate、setContentSize、setPanEnabled生效，布局list不生效
+     *
+     * @param renderMode RENDER_MODE_VIEW、RENDER_MODE_CANVAS或RENDER_MODE_VIRTUAL
+     * @return
+     */
+    public AntForestView setRenderMode(int renderMode) {
+        if (renderMode != RENDER_MODE_VIRTUAL) {
+            scrollTo(0, 0);
+        }
+        this.mRenderMode = renderMode;
+        setWillNotDraw(renderMode != RENDER_MODE_CANVAS);
+        return this;
+    }
+
+    /**
+     * 设置虚拟模式下森林的大小，可以比控件大，超出的部分通过拖动平移查看
+     *
+     * @param width  为0时与控件同宽
+     * @param height 为0时按水滴数量自动加高
+     * @return
+     */
+    public AntForestView setContentSize(int width, int height) {
+        this.mContentWidth = width;
+        this.mContentHeight = height;
+        return this;
+    }
+
+    /**
+     * 使用弹簧浮动(SpringMotion)代替默认的关键帧浮动，浮动更平滑且与帧率无关
+     * ->已有的水滴从初始位置重新开始浮动
+     *
+     * @param enabled
+     * @return
+     */
+    public AntForestView setSpringMotion(boolean enabled) {
+        if (enabled == mMotion instanceof SpringMotion) {
+            return this;
+        }
+        replaceMotion(enabled);
+        return this;
+    }
+
+    /**
+     * 设置随机数的种子，用于复现布局和浮动轨迹(如性能测试)，需要在setWaters之前调用
+     *
+     * @param seed
+     * @return
+     */
+    public AntForestView setSeed(long seed) {
+        return setRandom(new Random(seed));
+    }
+
+    /**
+     * 设置位置分配、浮动方向和时长使用的Random，需要在setWaters之前调用
+     * ->可以传入Random的子类替换随机数的生成方式
+     * ->后台计算位置时由它生成副本的种子，结果与在UI线程计算相同
+     * ->已经显示水滴时只影响之后分配的位置，已有水滴的位置和浮动不变
+     *
+     * @param random
+     * @return
+     */
+    public AntForestView setRandom(@NonNull Random random) {
+        mRandom = random;
+        mDropPlacer.setRandom(random);
+        //已经显示的水滴继续当前的浮动，不重新开始
+        if (mMotion.size() == 0) {
+            replaceMotion(mMotion instanceof SpringMotion);
+        }
+        return this;
+    }
+
+    /**
+     * 按当前的Random重新创建浮动，已有水滴从初始位置重新开始浮动
+     * ->初始位置取原来浮动的基准位置，view模式和虚拟模式下y坐标全部在translationY中
+     */
+    private void replaceMotion(boolean spring) {
+        DropMotion motion = spring ? new SpringMotion(CHANGE_RANGE, mRandom) : new WaveMotion(durations, CHANGE_RANGE, mRandom);
+        for (int i = 0; i < mMotion.size(); i++) {
+            float baseY = mMotion.getBaseY(i);
+            motion.add(baseY, mRandom.nextBoolean());
+            if (mRenderMode != RENDER_MODE_CANVAS) {
+                mViews.get(i).setTranslationY(baseY);
+            }
+        }
+        mMotion = motion;
+    }
+
+    /**
+     * 设置计算水滴位置和文字的线程，默认所有水滴控件共用一个后台线程
+     *
+     * @param executor 为null时使用默认线程
+     * @return
+     */
+    public AntForestView setPrepareExecutor(@Nullable Executor executor) {
+        mPreparer.setExecutor(executor);
+        return this;
+    }
+
+    /**
+     * 设置虚拟模式下是否可以拖动平移，默认可以
+     *
+     * @param panEnabled
+     * @return
+     */
+    public AntForestView setPanEnabled(boolean panEnabled) {
+        this.mPanEnabled = panEnabled;
+        return this;
+    }
+
     /**
      * 设置水滴显示位置
      *
@@ -276,6 +2284,26 @@ public class AntForestView extends FrameLayout {
         return this;
     }
 
+    /**
+     * 添加水滴不能放置的区域(如树干、头像)，对之后由DropPlacer放置的水滴生效
+     *
+     * @return
+     */
+    public AntForestView addExclusionZone(float left, float top, float right, float bottom) {
+        mDropPlacer.addExclusionRect(left, top, right, bottom);
+        return this;
+    }
+
+    /**
+     * 清除水滴不能放置的区域
+     *
+     * @return
+     */
+    public AntForestView clearExclusionZones() {
+        mDropPlacer.clearExclusions();
+        return this;
+    }
+
     /**
      * 设置水滴消失位置
      *
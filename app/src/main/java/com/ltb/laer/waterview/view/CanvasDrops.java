@@ -0,0 +1,160 @@
+package com.ltb.laer.waterview.view;
+
+import com.ltb.laer.waterview.model.DropStore;
+import com.ltb.laer.waterview.model.Water;
+
+import java.util.Arrays;
+
+/**
+ * 描述: 画布模式下的水滴，不再对应任何子view，也不为每个水滴创建对象
+ * ->水滴数据、左上角坐标(与water_item布局的左上角一致)保存在DropStore中，slot为DropPlacer中的id
+ * ->绘制用的文字、样式和动画时间按下标保存在并行数组中，在setWaters时一次性算好，onDraw中只做读取
+ * ->移除时后面的水滴下标前移一位，未被收取的水滴下标与DropMotion一致
+ */
+final class CanvasDrops {
+    static final int NONE = -1;
+
+    final DropStore store = new DropStore();
+    /**
+     * 预先拼接好的文字，避免每帧拼接字符串
+     */
+    String[] labels = new String[0];
+    /**
+     * 文字绘制的起点(相对水滴圆形区域左上角)
+     */
+    float[] labelX = new float[0];
+    float[] labelBaseline = new float[0];
+    /**
+     * 按水滴类型取得的样式，null表示默认样式
+     */
+    DropStyle[] styles = new DropStyle[0];
+    /**
+     * 合成bitmap在DropLayerCache中的key，样式和文字都相同的水滴共用
+     */
+    String[] cacheKeys = new String[0];
+    /**
+     * 最近一次绘制时圆形区域顶部的y坐标(包含浮动)，用于点击命中
+     */
+    float[] drawY = new float[0];
+    /**
+     * 在locationXY中的下标
+     */
+    int[] locations = new int[0];
+    /**
+     * 显示动画开始的时间
+     */
+    long[] showStartTimes = new long[0];
+    /**
+     * 消失动画开始的时间，小于0表示未被点击
+     */
+    long[] disStartTimes = new long[0];
+    /**
+     * 数值变化提示动画开始的时间，小于0表示没有
+     */
+    long[] pulseStartTimes = new long[0];
+
+    /**
+     * 添加一个水滴，没有动画，位置为0
+     *
+     * @return 下标，id已存在时返回-1
+     */
+    int add(Water water) {
+        int index = store.add(water);
+        if (index < 0) {
+            return NONE;
+        }
+        ensureCapacity(index + 1);
+        labels[index] = null;
+        labelX[index] = 0;
+        labelBaseline[index] = 0;
+        styles[index] = null;
+        cacheKeys[index] = null;
+        drawY[index] = 0;
+        locations[index] = NONE;
+        showStartTimes[index] = 0;
+        disStartTimes[index] = NONE;
+        pulseStartTimes[index] = NONE;
+        return index;
+    }
+
+    /**
+     * 把水滴移到target的末尾(如收取时移到消失中的水滴)，不保留slot；target中已有相同id的水滴时先移除
+     *
+     * @return 在target中的下标
+     */
+    int moveTo(int index, CanvasDrops target) {
+        int old = target.store.indexOf(store.getId(index));
+        if (old >= 0) {
+            target.removeAt(old);
+        }
+        int moved = target.add(store.get(index));
+        target.store.setPosition(moved, store.getX(index), store.getY(index));
+        target.labels[moved] = labels[index];
+        target.labelX[moved] = labelX[index];
+        target.labelBaseline[moved] = labelBaseline[index];
+        target.styles[moved] = styles[index];
+        target.cacheKeys[moved] = cacheKeys[index];
+        target.drawY[moved] = drawY[index];
+        target.locations[moved] = locations[index];
+        target.showStartTimes[moved] = showStartTimes[index];
+        target.disStartTimes[moved] = disStartTimes[index];
+        target.pulseStartTimes[moved] = pulseStartTimes[index];
+        removeAt(index);
+        return moved;
+    }
+
+    /**
+     * 移除水滴，后面的水滴下标前移一位
+     */
+    void removeAt(int index) {
+        int last = store.size() - 1;
+        store.removeAtOrdered(index);
+        int moved = last - index;
+        System.arraycopy(labels, index + 1, labels, index, moved);
+        System.arraycopy(labelX, index + 1, labelX, index, moved);
+        System.arraycopy(labelBaseline, index + 1, labelBaseline, index, moved);
+        System.arraycopy(styles, index + 1, styles, index, moved);
+        System.arraycopy(cacheKeys, index + 1, cacheKeys, index, moved);
+        System.arraycopy(drawY, index + 1, drawY, index, moved);
+        System.arraycopy(locations, index + 1, locations, index, moved);
+        System.arraycopy(showStartTimes, index + 1, showStartTimes, index, moved);
+        System.arraycopy(disStartTimes, index + 1, disStartTimes, index, moved);
+        System.arraycopy(pulseStartTimes, index + 1, pulseStartTimes, index, moved);
+        labels[last] = null;
+        styles[last] = null;
+        cacheKeys[last] = null;
+    }
+
+    void clear() {
+        int size = store.size();
+        store.clear();
+        Arrays.fill(labels, 0, size, null);
+        Arrays.fill(styles, 0, size, null);
+        Arrays.fill(cacheKeys, 0, size, null);
+    }
+
+    int size() {
+        return store.size();
+    }
+
+    boolean isEmpty() {
+        return store.size() == 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= labels.length) {
+            return;
+        }
+        int length = Math.max(capacity, Math.max(16, labels.length * 2));
+        labels = Arrays.copyOf(labels, length);
+        labelX = Arrays.copyOf(labelX, length);
+        labelBaseline = Arrays.copyOf(labelBaseline, length);
+        styles = Arrays.copyOf(styles, length);
+        cacheKeys = Arrays.copyOf(cacheKeys, length);
+        drawY = Arrays.copyOf(drawY, length);
+        locations = Arrays.copyOf(locations, length);
+        showStartTimes = Arrays.copyOf(showStartTimes, length);
+        disStartTimes = Arrays.copyOf(disStartTimes, length);
+        pulseStartTimes = Arrays.copyOf(pulseStartTimes, length);
+    }
+}
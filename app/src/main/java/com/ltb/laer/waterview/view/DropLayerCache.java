@@ -0,0 +1,105 @@
+package com.ltb.laer.waterview.view;
+
+import android.graphics.Bitmap;
+import android.support.v4.util.LruCache;
+import android.view.View;
+
+import com.ltb.laer.waterview.R;
+
+/**
+ * 描述: 水滴静态内容的缓存
+ * ->view模式：水滴view开启硬件层，背景和文字只光栅化一次，每帧只更新translationY等变换；文字变化时由系统自动重绘该层
+ * ->画布模式：按文字缓存整张水滴bitmap(背景+文字)，数值相同的水滴共用，数值变化时自然使用新的bitmap
+ * ->硬件层与bitmap共用一个内存上限，超出上限的水滴不开启硬件层，bitmap按最近最少使用淘汰
+ */
+public class DropLayerCache {
+    /**
+     * 默认内存上限
+     */
+    public static final int DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    private final int maxBytes;
+    private int mLayerBytes;//硬件层估算占用
+    private LruCache<String, Bitmap> mBitmaps;
+
+    public DropLayerCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public DropLayerCache(int maxBytes) {
+        this.maxBytes = maxBytes;
+        mBitmaps = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * 为水滴view开启硬件层
+     *
+     * @param view
+     * @param bytes 水滴view的估算大小(宽*高*4)
+     * @return 超出内存上限时返回false，不开启
+     */
+    boolean attachLayer(View view, int bytes) {
+        if (view.getTag(R.string.layer_bytes) != null) {
+            return true;
+        }
+        if (mLayerBytes + bytes > maxBytes) {
+            return false;
+        }
+        mLayerBytes += bytes;
+        //给bitmap让出内存
+        mBitmaps.trimToSize(maxBytes - mLayerBytes);
+        view.setTag(R.string.layer_bytes, bytes);
+        view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        return true;
+    }
+
+    /**
+     * 关闭水滴view的硬件层，水滴移除或回收时调用
+     */
+    void detachLayer(View view) {
+        Object bytes = view.getTag(R.string.layer_bytes);
+        if (!(bytes instanceof Integer)) {
+            return;
+        }
+        mLayerBytes -= (Integer) bytes;
+        view.setTag(R.string.layer_bytes, null);
+        view.setLayerType(View.LAYER_TYPE_NONE, null);
+    }
+
+    /**
+     * 获取画布模式下缓存的水滴bitmap
+     *
+     * @param label 水滴文字
+     * @return 没有缓存时返回null
+     */
+    Bitmap getBitmap(String label) {
+        return mBitmaps.get(label);
+    }
+
+    /**
+     * 是否还能缓存该大小的bitmap(可以淘汰其他bitmap，但不能淘汰硬件层)
+     */
+    boolean canPutBitmap(int bytes) {
+        return mLayerBytes + bytes <= maxBytes;
+    }
+
+    /**
+     * 缓存画布模式下的水滴bitmap，需先通过canPutBitmap检查
+     */
+    void putBitmap(String label, Bitmap bitmap) {
+        mBitmaps.put(label, bitmap);
+        mBitmaps.trimToSize(maxBytes - mLayerBytes);
+    }
+
+    /**
+     * 清空bitmap缓存(已开启的硬件层随水滴移除释放)
+     */
+    public void clear() {
+        mBitmaps.evictAll();
+    }
+}
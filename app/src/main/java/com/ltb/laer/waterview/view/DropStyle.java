@@ -0,0 +1,211 @@
+package com.ltb.laer.waterview.view;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+import android.graphics.drawable.InsetDrawable;
+import android.support.annotation.ColorInt;
+import android.support.annotation.DrawableRes;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.view.ViewCompat;
+import android.util.TypedValue;
+import android.widget.TextView;
+
+/**
+ * 描述: 按水滴类型(Water.getType)声明的水滴样式，代替setChildView(List)为每个水滴inflate不同的布局
+ * ->背景(纯色或上下渐变的圆)、大小、文字颜色/大小/粗细、文字上方的图标
+ * ->设置给控件时解析一次为可共用的Drawable状态和Paint，之后绑定水滴只设置属性，不再解析布局
+ * ->大小不超过标准水滴(water_item中的tv_water)，在标准区域内居中，位置和点击范围仍按标准水滴计算
+ * ->同一个DropStyle可以设置给多个控件，修改属性后需要重新设置给控件
+ */
+public class DropStyle {
+    /**
+     * 与tv_water_bg一致
+     */
+    private static final int DEFAULT_COLOR = 0xFF3CFF25;
+    /**
+     * 与water_item中tv_water一致，单位px
+     */
+    private static final float DEFAULT_TEXT_SIZE = 38;
+
+    private int mTopColor = DEFAULT_COLOR, mBottomColor = DEFAULT_COLOR;
+    private int mSize;//0表示与标准水滴相同
+    private int mTextColor = Color.WHITE;
+    private float mTextSize = DEFAULT_TEXT_SIZE;
+    private boolean isBold;
+    private int mIconRes;
+
+    //解析后的结果
+    private boolean isCaptured;//是否由布局中的view生成
+    private int mSlotSize;//解析时标准水滴的边长，0表示还没有解析
+    private boolean isDirty;//解析后是否修改过属性
+    private Drawable.ConstantState mBackground;
+    private Drawable.ConstantState mIcon;
+    private ColorStateList mTextColors;
+    private Typeface mTypeface;
+    private Paint mTextPaint;
+    private float mIconHeight;
+    private Bitmap mBitmap;//画布模式下的背景和图标
+
+    /**
+     * 纯色背景
+     */
+    public DropStyle setColor(@ColorInt int color) {
+        return setGradient(color, color);
+    }
+
+    /**
+     * 从上到下渐变的背景
+     */
+    public DropStyle setGradient(@ColorInt int topColor, @ColorInt int bottomColor) {
+        this.mTopColor = topColor;
+        this.mBottomColor = bottomColor;
+        return invalidate();
+    }
+
+    /**
+     * 水滴圆形的直径，单位px，超过标准水滴时按标准水滴的大小
+     */
+    public DropStyle setSize(int size) {
+        this.mSize = size;
+        return invalidate();
+    }
+
+    public DropStyle setTextColor(@ColorInt int textColor) {
+        this.mTextColor = textColor;
+        return invalidate();
+    }
+
+    /**
+     * @param textSize 单位px
+     */
+    public DropStyle setTextSize(float textSize) {
+        this.mTextSize = textSize;
+        return invalidate();
+    }
+
+    public DropStyle setBold(boolean bold) {
+        this.isBold = bold;
+        return invalidate();
+    }
+
+    /**
+     * 显示在数值上方的图标，0表示没有
+     */
+    public DropStyle setIcon(@DrawableRes int iconRes) {
+        this.mIconRes = iconRes;
+        return invalidate();
+    }
+
+    /**
+     * 已经解析的结果继续使用，直到再次设置给控件
+     */
+    private DropStyle invalidate() {
+        isDirty = true;
+        return this;
+    }
+
+    /**
+     * 由布局中还没有设置过样式的tv_water生成样式，用于把复用的view恢复为布局本身的样式
+     */
+    static DropStyle capture(TextView textView) {
+        DropStyle style = new DropStyle();
+        Drawable background = textView.getBackground();
+        style.mBackground = background == null ? null : background.getConstantState();
+        Drawable icon = textView.getCompoundDrawables()[1];
+        style.mIcon = icon == null ? null : icon.getConstantState();
+        style.mTextColors = textView.getTextColors();
+        style.mTextSize = textView.getTextSize();
+        style.mTypeface = textView.getTypeface();
+        style.isCaptured = true;
+        return style;
+    }
+
+    /**
+     * 解析为可共用的Drawable状态和Paint，标准水滴大小不变时只解析一次
+     *
+     * @param slotSize 标准水滴的边长
+     */
+    void resolve(Context context, int slotSize) {
+        if (isCaptured || (!isDirty && mSlotSize == slotSize)) {
+            return;
+        }
+        isDirty = false;
+        mSlotSize = slotSize;
+        mBitmap = null;
+        int size = mSize <= 0 ? slotSize : Math.min(mSize, slotSize);
+        GradientDrawable circle = new GradientDrawable(GradientDrawable.Orientation.TOP_BOTTOM,
+                new int[]{mTopColor, mBottomColor});
+        circle.setShape(GradientDrawable.OVAL);
+        int inset = (slotSize - size) / 2;
+        Drawable background = inset > 0 ? new InsetDrawable(circle, inset) : circle;
+        mBackground = background.getConstantState();
+        Drawable icon = mIconRes == 0 ? null : ContextCompat.getDrawable(context, mIconRes);
+        mIcon = icon == null ? null : icon.getConstantState();
+        mIconHeight = icon == null ? 0 : icon.getIntrinsicHeight();
+        mTextColors = ColorStateList.valueOf(mTextColor);
+        mTypeface = isBold ? Typeface.DEFAULT_BOLD : Typeface.DEFAULT;
+        mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mTextPaint.setColor(mTextColor);
+        mTextPaint.setTextSize(mTextSize);
+        mTextPaint.setTypeface(mTypeface);
+    }
+
+    /**
+     * 设置到水滴布局中的tv_water，Drawable由共用的状态创建
+     */
+    void apply(TextView textView) {
+        Resources res = textView.getResources();
+        ViewCompat.setBackground(textView, mBackground == null ? null : mBackground.newDrawable(res));
+        textView.setCompoundDrawablesWithIntrinsicBounds(null, mIcon == null ? null : mIcon.newDrawable(res), null, null);
+        textView.setTextColor(mTextColors);
+        textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, mTextSize);
+        textView.setTypeface(mTypeface);
+    }
+
+    /**
+     * 画布模式下绘制文字的Paint，需要先resolve
+     */
+    Paint getTextPaint() {
+        return mTextPaint;
+    }
+
+    /**
+     * 图标的高度，画布模式下文字向下偏移一半
+     */
+    float getIconHeight() {
+        return mIconHeight;
+    }
+
+    /**
+     * 画布模式下的背景和图标，绘制一次后共用，需要先resolve
+     */
+    Bitmap getBitmap(Resources res) {
+        if (mBitmap != null) {
+            return mBitmap;
+        }
+        mBitmap = Bitmap.createBitmap(mSlotSize, mSlotSize, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(mBitmap);
+        Drawable background = mBackground.newDrawable(res);
+        background.setBounds(0, 0, mSlotSize, mSlotSize);
+        background.draw(canvas);
+        if (mIcon != null) {
+            //与TextView的顶部图标一致，图标和文字作为整体居中
+            Drawable icon = mIcon.newDrawable(res);
+            Paint.FontMetrics fm = mTextPaint.getFontMetrics();
+            int width = icon.getIntrinsicWidth();
+            int top = (int) ((mSlotSize - mIconHeight - (fm.bottom - fm.top)) / 2);
+            int left = (mSlotSize - width) / 2;
+            icon.setBounds(left, top, left + width, top + (int) mIconHeight);
+            icon.draw(canvas);
+        }
+        return mBitmap;
+    }
+}
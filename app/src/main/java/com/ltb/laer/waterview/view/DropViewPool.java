@@ -0,0 +1,123 @@
+package com.ltb.laer.waterview.view;
+
+import android.support.annotation.Nullable;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.ltb.laer.waterview.R;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 描述: 水滴view的回收池
+ * ->按布局资源分别缓存已经inflate过的水滴view，再次setWaters时直接复用，只重新绑定数据
+ * ->每种布局最多缓存maxSize个，超出的直接丢弃
+ * ->view持有创建时的Context，只能在同一个界面内的WaterView、AntForestView之间共享
+ * ->复用的view保留上次设置的DropStyle，每种布局第一次inflate时记录布局本身的样式，没有样式的水滴用它恢复
+ */
+public class DropViewPool {
+    /**
+     * 默认每种布局最多缓存的view数量
+     */
+    public static final int DEFAULT_MAX_SIZE = 20;
+
+    private final int maxSize;
+    private SparseArray<List<View>> mScrap = new SparseArray<>();
+    private SparseArray<DropStyle> mLayoutStyles = new SparseArray<>();//布局本身的样式
+
+    public DropViewPool() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public DropViewPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 取出一个水滴view，没有可复用的则inflate
+     *
+     * @param inflater
+     * @param layoutRes 水滴布局
+     * @param parent    水滴容器(只用于生成LayoutParams，不会添加进去)
+     * @return
+     */
+    View acquire(LayoutInflater inflater, int layoutRes, ViewGroup parent) {
+        List<View> scrap = mScrap.get(layoutRes);
+        if (scrap != null && !scrap.isEmpty()) {
+            return scrap.remove(scrap.size() - 1);
+        }
+        View view = inflater.inflate(layoutRes, parent, false);
+        view.setTag(R.string.drop_layout_res, layoutRes);
+        if (mLayoutStyles.get(layoutRes) == null) {
+            TextView tvWater = view.findViewById(R.id.tv_water);
+            if (tvWater != null) {
+                mLayoutStyles.put(layoutRes, DropStyle.capture(tvWater));
+            }
+        }
+        return view;
+    }
+
+    /**
+     * 为水滴view设置样式，与当前样式相同时不做任何处理
+     *
+     * @param style 为null时使用布局本身的样式
+     */
+    void applyStyle(View view, @Nullable DropStyle style) {
+        Object current = view.getTag(R.string.drop_style);
+        if (style == null) {
+            if (current == null) {
+                //从没有设置过样式
+                return;
+            }
+            style = mLayoutStyles.get((Integer) view.getTag(R.string.drop_layout_res));
+        }
+        if (style == null || style == current) {
+            return;
+        }
+        TextView tvWater = view.findViewById(R.id.tv_water);
+        style.apply(tvWater);
+        view.setTag(R.string.drop_style, style);
+    }
+
+    /**
+     * 回收水滴view，调用前需要已经从父容器中移除
+     *
+     * @param view
+     */
+    void release(View view) {
+        Object layoutRes = view.getTag(R.string.drop_layout_res);
+        if (!(layoutRes instanceof Integer)) {
+            return;
+        }
+        //先去掉监听再取消，防止取消动画时回调结束监听
+        view.animate().setListener(null);
+        view.animate().cancel();
+        view.clearAnimation();
+        view.setOnClickListener(null);
+        view.setTag(null);
+        view.setAlpha(1);
+        view.setScaleX(1);
+        view.setScaleY(1);
+        view.setTranslationX(0);
+        view.setTranslationY(0);
+        List<View> scrap = mScrap.get((Integer) layoutRes);
+        if (scrap == null) {
+            scrap = new ArrayList<>();
+            mScrap.put((Integer) layoutRes, scrap);
+        }
+        if (scrap.size() < maxSize) {
+            scrap.add(view);
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        mScrap.clear();
+    }
+}
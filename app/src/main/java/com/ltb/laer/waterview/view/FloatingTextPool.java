@@ -0,0 +1,133 @@
+package com.ltb.laer.waterview.view;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.TimeInterpolator;
+import android.content.Context;
+import android.graphics.Color;
+import android.util.SparseArray;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.animation.DecelerateInterpolator;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 描述: 收取水滴时"+N"飘字的回收池
+ * ->飘字view及其动画监听只创建一次，动画结束后放回池中复用
+ * ->结束时从飘字当前所在的容器中移除，连续点击不同水滴也不会移错容器
+ * ->文字按数值缓存，池中有空闲view后每次收取不再创建对象
+ */
+class FloatingTextPool {
+    /**
+     * 飘字动画时长
+     */
+    private static final int DURATION = 2000;
+    /**
+     * 飘字上移的距离
+     */
+    private static final int DISTANCE = -100;
+    /**
+     * 最多缓存的文字数量
+     */
+    private static final int MAX_LABELS = 64;
+    private static final TimeInterpolator INTERPOLATOR = new DecelerateInterpolator();
+
+    private final Context mContext;
+    private final int maxSize;
+    private final List<TextView> mScrap = new ArrayList<>();
+    private final SparseArray<String> mLabels = new SparseArray<>();
+
+    FloatingTextPool(Context context, int maxSize) {
+        this.mContext = context;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 在容器中显示一个飘字
+     *
+     * @param container 水滴布局中的飘字容器
+     * @param number    收取的数值
+     */
+    void show(ViewGroup container, int number) {
+        TextView textView = acquire();
+        textView.setText(getLabel(number));
+        container.addView(textView);
+        textView.animate().translationY(DISTANCE).alpha(0).setDuration(DURATION)
+                .setInterpolator(INTERPOLATOR)
+                .setListener((Animator.AnimatorListener) textView.getTag())
+                .start();
+    }
+
+    /**
+     * 水滴view回收前调用，结束容器中所有飘字并放回池中
+     */
+    void recycleAll(ViewGroup container) {
+        for (int i = container.getChildCount() - 1; i >= 0; i--) {
+            View child = container.getChildAt(i);
+            if (child.getTag() instanceof EndListener) {
+                child.animate().cancel();
+                release((TextView) child);
+            }
+        }
+        container.removeAllViews();
+    }
+
+    private TextView acquire() {
+        if (!mScrap.isEmpty()) {
+            return mScrap.remove(mScrap.size() - 1);
+        }
+        TextView textView = new TextView(mContext);
+        textView.setTextColor(Color.WHITE);
+        textView.setTextSize(16);
+        textView.setGravity(Gravity.CENTER);
+        textView.setTag(new EndListener(textView));
+        return textView;
+    }
+
+    private void release(TextView textView) {
+        ViewParent parent = textView.getParent();
+        if (parent instanceof ViewGroup) {
+            ((ViewGroup) parent).removeView(textView);
+        } else if (mScrap.contains(textView)) {
+            //取消动画时已经放回
+            return;
+        }
+        textView.setAlpha(1);
+        textView.setTranslationY(0);
+        if (mScrap.size() < maxSize) {
+            mScrap.add(textView);
+        }
+    }
+
+    private String getLabel(int number) {
+        String label = mLabels.get(number);
+        if (label == null) {
+            label = "+" + number;
+            if (mLabels.size() < MAX_LABELS) {
+                mLabels.put(number, label);
+            }
+        }
+        return label;
+    }
+
+    /**
+     * 每个飘字固定的动画结束监听
+     */
+    private class EndListener extends AnimatorListenerAdapter {
+        private final TextView mTextView;
+
+        EndListener(TextView textView) {
+            this.mTextView = textView;
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            release(mTextView);
+        }
+    }
+}
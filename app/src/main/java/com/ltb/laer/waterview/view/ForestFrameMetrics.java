@@ -0,0 +1,88 @@
+package com.ltb.laer.waterview.view;
+
+/**
+ * 描述: 水滴控件的帧数据
+ * ->时间单位都是纳秒
+ * ->由FrameMetricsListener回调，同一个对象每帧复用
+ */
+public class ForestFrameMetrics {
+    long frameTimeNanos;
+    long updateNanos;
+    long drawNanos;
+    int droppedFrames;
+    int totalDroppedFrames;
+    int dropCount;
+    int animatorCount;
+    int allocationsPerFrame;
+    int qualityLevel;
+
+    /**
+     * 本帧的vsync时间
+     */
+    public long getFrameTimeNanos() {
+        return frameTimeNanos;
+    }
+
+    /**
+     * 本帧更新水滴位置的耗时
+     */
+    public long getUpdateNanos() {
+        return updateNanos;
+    }
+
+    /**
+     * 最近一次绘制的耗时(硬件加速下只有位移变化时不会重新绘制)
+     */
+    public long getDrawNanos() {
+        return drawNanos;
+    }
+
+    /**
+     * 与上一帧之间丢掉的帧数
+     */
+    public int getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * 开启监听以来丢掉的总帧数
+     */
+    public int getTotalDroppedFrames() {
+        return totalDroppedFrames;
+    }
+
+    /**
+     * 当前显示的水滴数
+     */
+    public int getDropCount() {
+        return dropCount;
+    }
+
+    /**
+     * 当前由帧回调驱动浮动的水滴数
+     */
+    public int getAnimatorCount() {
+        return animatorCount;
+    }
+
+    /**
+     * 上一帧在主线程上分配的对象数
+     */
+    public int getAllocationsPerFrame() {
+        return allocationsPerFrame;
+    }
+
+    /**
+     * 当前的动画质量等级，未设置QualityController时为QualityController.LEVEL_FULL
+     */
+    public int getQualityLevel() {
+        return qualityLevel;
+    }
+
+    @Override
+    public String toString() {
+        return "ForestFrameMetrics{update=" + updateNanos / 1000 + "us, draw=" + drawNanos / 1000
+                + "us, dropped=" + droppedFrames + "/" + totalDroppedFrames + ", drops=" + dropCount
+                + ", animators=" + animatorCount + ", allocs=" + allocationsPerFrame + ", quality=" + qualityLevel + "}";
+    }
+}
@@ -0,0 +1,161 @@
+package com.ltb.laer.waterview.view;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.view.View;
+
+import com.ltb.laer.waterview.engine.DropMotion;
+import com.ltb.laer.waterview.model.Water;
+
+/**
+ * 描述: 水滴控件onSaveInstanceState保存的数据，恢复时不重新分配位置，也不播放显示动画
+ * ->每个属性一个基本类型数组，写入Parcel时只写数组，不为每个水滴写对象
+ * ->位置是水滴左上角，y为浮动的初始位置；slot为locationXY中的下标，flags为DropStore中的标记
+ * ->运动状态按DropMotion.save保存，下标与水滴一致；虚拟模式下只有数据，没有运动状态
+ * ->恢复时DropMotion类型不同或控件大小变化(如旋转屏幕)时不恢复运动状态，位置按比例缩放
+ */
+class ForestSavedState extends View.BaseSavedState {
+    int renderMode;
+    /**
+     * 保存时放置区域的大小，虚拟模式下为森林的大小
+     */
+    int width, height;
+    int scrollX, scrollY;
+    int totalConsumeWater;
+
+    long[] ids = new long[0];
+    int[] numbers = new int[0];
+    String[] names = new String[0];
+    int[] types = new int[0];
+    long[] ripeTimes = new long[0];
+    float[] x = new float[0];
+    float[] y = new float[0];
+    int[] slots = new int[0];
+    byte[] flags = new byte[0];
+
+    private String mMotionClass = "";
+    private int mMotionStateSize;
+    private float[] mMotion = new float[0];
+
+    ForestSavedState(Parcelable superState) {
+        super(superState);
+    }
+
+    private ForestSavedState(Parcel in) {
+        super(in);
+        renderMode = in.readInt();
+        width = in.readInt();
+        height = in.readInt();
+        scrollX = in.readInt();
+        scrollY = in.readInt();
+        totalConsumeWater = in.readInt();
+        ids = in.createLongArray();
+        numbers = in.createIntArray();
+        names = in.createStringArray();
+        types = in.createIntArray();
+        ripeTimes = in.createLongArray();
+        x = in.createFloatArray();
+        y = in.createFloatArray();
+        slots = in.createIntArray();
+        flags = in.createByteArray();
+        mMotionClass = in.readString();
+        mMotionStateSize = in.readInt();
+        mMotion = in.createFloatArray();
+    }
+
+    @Override
+    public void writeToParcel(Parcel out, int flags) {
+        super.writeToParcel(out, flags);
+        out.writeInt(renderMode);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeInt(scrollX);
+        out.writeInt(scrollY);
+        out.writeInt(totalConsumeWater);
+        out.writeLongArray(ids);
+        out.writeIntArray(numbers);
+        out.writeStringArray(names);
+        out.writeIntArray(types);
+        out.writeLongArray(ripeTimes);
+        out.writeFloatArray(x);
+        out.writeFloatArray(y);
+        out.writeIntArray(slots);
+        out.writeByteArray(this.flags);
+        out.writeString(mMotionClass);
+        out.writeInt(mMotionStateSize);
+        out.writeFloatArray(mMotion);
+    }
+
+    /**
+     * 按水滴数量分配数组
+     */
+    void allocate(int count) {
+        ids = new long[count];
+        numbers = new int[count];
+        names = new String[count];
+        types = new int[count];
+        ripeTimes = new long[count];
+        x = new float[count];
+        y = new float[count];
+        slots = new int[count];
+        flags = new byte[count];
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    void setWater(int i, Water water) {
+        ids[i] = water.getId();
+        numbers[i] = water.getNumber();
+        names[i] = water.getName();
+        types[i] = water.getType();
+        ripeTimes[i] = water.getRipeTime();
+    }
+
+    Water getWater(int i) {
+        return new Water(ids[i], numbers[i], names[i], types[i], ripeTimes[i]);
+    }
+
+    /**
+     * 保存所有水滴的运动状态，下标与水滴一致
+     */
+    void saveMotion(DropMotion motion) {
+        mMotionClass = motion.getClass().getName();
+        mMotionStateSize = motion.getStateSize();
+        mMotion = new float[motion.size() * mMotionStateSize];
+        for (int i = 0; i < motion.size(); i++) {
+            motion.save(i, mMotion, i * mMotionStateSize);
+        }
+    }
+
+    /**
+     * 运动状态能否恢复到motion
+     *
+     * @param width  当前放置区域的宽度
+     * @param height 当前放置区域的高度
+     */
+    boolean canRestoreMotion(DropMotion motion, int width, int height) {
+        return width == this.width && height == this.height && mMotionClass.equals(motion.getClass().getName())
+                && mMotionStateSize == motion.getStateSize() && mMotion.length == size() * mMotionStateSize;
+    }
+
+    /**
+     * 按第i个水滴保存的状态添加到motion，需要先检查canRestoreMotion
+     */
+    int restoreMotion(DropMotion motion, int i) {
+        return motion.restore(mMotion, i * mMotionStateSize);
+    }
+
+    public static final Parcelable.Creator<ForestSavedState> CREATOR = new Parcelable.Creator<ForestSavedState>() {
+        @Override
+        public ForestSavedState createFromParcel(Parcel in) {
+            return new ForestSavedState(in);
+        }
+
+        @Override
+        public ForestSavedState[] newArray(int size) {
+            return new ForestSavedState[size];
+        }
+    };
+}
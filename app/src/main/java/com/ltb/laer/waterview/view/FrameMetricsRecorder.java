@@ -0,0 +1,89 @@
+package com.ltb.laer.waterview.view;
+
+import android.content.Context;
+import android.os.Debug;
+import android.view.WindowManager;
+
+import com.ltb.laer.waterview.listener.FrameMetricsListener;
+
+/**
+ * 描述: 帧数据的采集
+ * ->只在设置了FrameMetricsListener时创建，未开启时控件中只有一次判空
+ * ->对象分配数通过Debug.startAllocCounting统计主线程，本身有开销，只用于调试和采样
+ */
+class FrameMetricsRecorder {
+    private final FrameMetricsListener mListener;
+    private final ForestFrameMetrics mMetrics = new ForestFrameMetrics();
+    private final long mFrameIntervalNanos;
+    private long mLastFrameTimeNanos;
+    private long mUpdateStartNanos;
+    private long mDrawStartNanos;
+    private int mLastAllocCount;
+
+    FrameMetricsRecorder(Context context, FrameMetricsListener listener) {
+        this.mListener = listener;
+        float refreshRate = 60;
+        WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        if (windowManager != null && windowManager.getDefaultDisplay().getRefreshRate() > 0) {
+            refreshRate = windowManager.getDefaultDisplay().getRefreshRate();
+        }
+        mFrameIntervalNanos = (long) (1000000000L / refreshRate);
+        Debug.startAllocCounting();
+        mLastAllocCount = Debug.getThreadAllocCount();
+    }
+
+    /**
+     * 一帧开始更新水滴位置
+     */
+    void beginUpdate(long frameTimeNanos) {
+        int allocCount = Debug.getThreadAllocCount();
+        mMetrics.allocationsPerFrame = allocCount - mLastAllocCount;
+        mLastAllocCount = allocCount;
+        mMetrics.droppedFrames = 0;
+        if (mLastFrameTimeNanos > 0) {
+            //超过1.5个帧间隔才认为丢帧
+            long interval = frameTimeNanos - mLastFrameTimeNanos;
+            if (interval > mFrameIntervalNanos * 3 / 2) {
+                mMetrics.droppedFrames = (int) ((interval + mFrameIntervalNanos / 2) / mFrameIntervalNanos) - 1;
+                mMetrics.totalDroppedFrames += mMetrics.droppedFrames;
+            }
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+        mMetrics.frameTimeNanos = frameTimeNanos;
+        mUpdateStartNanos = System.nanoTime();
+    }
+
+    /**
+     * 一帧更新结束，回调监听
+     */
+    void endUpdate(int dropCount, int animatorCount, int qualityLevel) {
+        mMetrics.updateNanos = System.nanoTime() - mUpdateStartNanos;
+        mMetrics.dropCount = dropCount;
+        mMetrics.animatorCount = animatorCount;
+        mMetrics.qualityLevel = qualityLevel;
+        mListener.onFrameMetrics(mMetrics);
+    }
+
+    void beginDraw() {
+        mDrawStartNanos = System.nanoTime();
+    }
+
+    void endDraw() {
+        mMetrics.drawNanos = System.nanoTime() - mDrawStartNanos;
+    }
+
+    /**
+     * 动画停止后重新开始时不计算丢帧
+     */
+    void resetFrameTime() {
+        mLastFrameTimeNanos = 0;
+    }
+
+    ForestFrameMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    void release() {
+        Debug.stopAllocCounting();
+    }
+}
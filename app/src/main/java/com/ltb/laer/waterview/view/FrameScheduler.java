@@ -0,0 +1,114 @@
+package com.ltb.laer.waterview.view;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * 描述: 跟随屏幕刷新(vsync)回调的帧调度器
+ * ->API 16及以上使用Choreographer，回调时间为当前帧的vsync时间
+ * ->API 16以下退化为Handler按16ms投递
+ * ->只在start之后每帧回调一次，stop后立即不再回调
+ */
+class FrameScheduler {
+    /**
+     * 低版本下模拟的帧间隔
+     */
+    private static final long FALLBACK_FRAME_DELAY_MILLIS = 16;
+
+    interface Callback {
+        /**
+         * @param frameTimeNanos 当前帧的时间(System.nanoTime时基)
+         */
+        void onFrame(long frameTimeNanos);
+    }
+
+    private final Callback mCallback;
+    private boolean isRunning;
+    private boolean isPosted;
+    private Choreographer.FrameCallback mFrameCallback;
+    private Handler mHandler;
+    private Runnable mFallbackRunnable;
+
+    FrameScheduler(Callback callback) {
+        this.mCallback = callback;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mFrameCallback = createFrameCallback();
+        } else {
+            mHandler = new Handler(Looper.getMainLooper());
+            mFallbackRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    dispatchFrame(System.nanoTime());
+                }
+            };
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private Choreographer.FrameCallback createFrameCallback() {
+        return new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                dispatchFrame(frameTimeNanos);
+            }
+        };
+    }
+
+    private void dispatchFrame(long frameTimeNanos) {
+        isPosted = false;
+        if (!isRunning) {
+            return;
+        }
+        mCallback.onFrame(frameTimeNanos);
+        //回调中可能已经stop
+        if (isRunning) {
+            postFrame();
+        }
+    }
+
+    private void postFrame() {
+        if (isPosted) {
+            return;
+        }
+        isPosted = true;
+        if (mFrameCallback != null) {
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        } else {
+            mHandler.postDelayed(mFallbackRunnable, FALLBACK_FRAME_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * 开始每帧回调，重复调用无影响
+     */
+    void start() {
+        if (isRunning) {
+            return;
+        }
+        isRunning = true;
+        postFrame();
+    }
+
+    /**
+     * 停止回调并移除已经投递的帧
+     */
+    void stop() {
+        isRunning = false;
+        if (!isPosted) {
+            return;
+        }
+        isPosted = false;
+        if (mFrameCallback != null) {
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+        } else {
+            mHandler.removeCallbacks(mFallbackRunnable);
+        }
+    }
+
+    boolean isRunning() {
+        return isRunning;
+    }
+}
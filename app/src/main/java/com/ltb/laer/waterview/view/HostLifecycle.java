@@ -0,0 +1,61 @@
+package com.ltb.laer.waterview.view;
+
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.LifecycleOwner;
+import android.arch.lifecycle.OnLifecycleEvent;
+
+/**
+ * 描述: 把宿主Activity/Fragment的生命周期转发给水滴控件
+ * ->onPause时暂停帧回调并结束动画，onResume时恢复
+ * ->onDestroy时释放控件并自动解除绑定，不会持有已经销毁的宿主
+ */
+class HostLifecycle implements LifecycleObserver {
+
+    interface Callback {
+        void onHostResume();
+
+        void onHostPause();
+
+        void onHostDestroy();
+    }
+
+    private final Callback mCallback;
+    private Lifecycle mLifecycle;
+
+    HostLifecycle(Callback callback) {
+        this.mCallback = callback;
+    }
+
+    /**
+     * 绑定宿主，已经resume的宿主会立即回调onHostResume
+     */
+    void bind(LifecycleOwner owner) {
+        unbind();
+        mLifecycle = owner.getLifecycle();
+        mLifecycle.addObserver(this);
+    }
+
+    void unbind() {
+        if (mLifecycle != null) {
+            mLifecycle.removeObserver(this);
+            mLifecycle = null;
+        }
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_RESUME)
+    public void onResume() {
+        mCallback.onHostResume();
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_PAUSE)
+    public void onPause() {
+        mCallback.onHostPause();
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+    public void onDestroy() {
+        unbind();
+        mCallback.onHostDestroy();
+    }
+}
@@ -0,0 +1,246 @@
+package com.ltb.laer.waterview.view;
+
+import android.graphics.Paint;
+import android.util.SparseArray;
+
+import com.ltb.laer.waterview.engine.DropPlacer;
+import com.ltb.laer.waterview.engine.RipeSchedule;
+import com.ltb.laer.waterview.model.Water;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 描述: 一次setWaters的水滴位置和文字，可以在后台线程计算(见WaterPreparer)，UI线程提交时直接使用
+ * ->创建时在UI线程复制控件的DropPlacer和Paint，prepare只使用副本，不读取控件的状态
+ * ->水滴按顺序使用空闲的固定位置(AntForestView的locationXY，跳过已有水滴占用的)，没有空闲时由DropPlacer选取，区域放满时随机放置
+ * ->复制之后控件的DropPlacer有新增水滴、禁止区域或重置，或者控件大小变化时，计算结果失效(见isValid)
+ * ->画布模式下同时测量文字位置，测量时使用的样式与提交时不同的水滴需要重新测量(见getStyle)
+ * ->未成熟水滴的文字是prepare时(labelTime)的倒计时，提交后由控件按当前时间刷新
+ */
+class PreparedWaters {
+    final List<Water> waters;
+    /**
+     * 水滴左上角
+     */
+    final float[] x, y;
+    final String[] labels;
+    /**
+     * 使用的固定位置下标，由DropPlacer选取时为固定位置的个数
+     */
+    final int[] slots;
+    /**
+     * 画布模式下文字的位置，没有调用measureText时为null
+     */
+    float[] labelX, labelBaseline;
+    /**
+     * 计算文字时的时间(System.currentTimeMillis)
+     */
+    long labelTime;
+
+    private final DropPlacer mPlacer;
+    private final Random mRandom;
+    private final int mModCount;
+    private final float mDropSize, mDropTop, mPlaceRadius;
+    private final int mWidth, mHeight;
+    private Object[][] mLocations = new Object[0][];
+    private boolean[] mUsedSlots = new boolean[0];
+    private Paint mTextPaint;
+    private SparseArray<DropStyle> mStyles;
+    private Paint[] mStylePaints;//与mStyles的下标一致
+    private float[] mIconHeights;
+    private DropStyle[] mMeasuredStyles;
+
+    /**
+     * @param placer      控件的DropPlacer，只读取，不修改
+     * @param random      为副本生成种子
+     * @param dropSize    水滴圆形区域的直径
+     * @param dropTop     水滴圆形区域距离view顶部的距离
+     * @param placeRadius 分配位置时的半径(包含浮动范围)
+     * @param width       放置区域的宽度，区域放满时在其中随机放置
+     * @param height      放置区域的高度
+     */
+    PreparedWaters(List<Water> waters, DropPlacer placer, Random random, float dropSize, float dropTop,
+                   float placeRadius, int width, int height) {
+        this.waters = waters;
+        this.x = new float[waters.size()];
+        this.y = new float[waters.size()];
+        this.labels = new String[waters.size()];
+        this.slots = new int[waters.size()];
+        this.mRandom = new Random(random.nextLong());
+        this.mPlacer = placer.copy(mRandom);
+        this.mModCount = placer.getModCount();
+        this.mDropSize = dropSize;
+        this.mDropTop = dropTop;
+        this.mPlaceRadius = placeRadius;
+        this.mWidth = width;
+        this.mHeight = height;
+    }
+
+    /**
+     * 水滴显示的文字，未成熟时为倒计时
+     *
+     * @param now System.currentTimeMillis
+     */
+    static String labelOf(Water water, long now) {
+        return labelOf(water.getNumber(), water.getRipeTime(), now);
+    }
+
+    static String labelOf(int number, long ripeTime, long now) {
+        if (ripeTime <= now) {
+            return number + "g";
+        }
+        return formatCountdown(RipeSchedule.countdownSeconds(ripeTime, now));
+    }
+
+    /**
+     * 倒计时文字，不足1小时为mm:ss，否则为h:mm:ss
+     */
+    static String formatCountdown(long seconds) {
+        long hours = seconds / 3600;
+        long minutes = seconds / 60 % 60;
+        long secs = seconds % 60;
+        StringBuilder builder = new StringBuilder(8);
+        if (hours > 0) {
+            builder.append(hours).append(':');
+        }
+        if (minutes < 10) {
+            builder.append('0');
+        }
+        builder.append(minutes).append(':');
+        if (secs < 10) {
+            builder.append('0');
+        }
+        return builder.append(secs).toString();
+    }
+
+    /**
+     * 副本从空的区域开始分配，用于提交时会清空已有水滴的情况(WaterView)
+     */
+    PreparedWaters clearPlacement(float cellSize) {
+        mPlacer.reset(0, mDropTop, mWidth, mHeight, cellSize);
+        return this;
+    }
+
+    /**
+     * @param locations 按比例的固定位置，每项为{x, y}
+     * @param used      已有水滴占用的固定位置，复制一份，之后修改不受影响
+     */
+    PreparedWaters setFixedLocations(Object[][] locations, boolean[] used) {
+        this.mLocations = locations;
+        this.mUsedSlots = Arrays.copyOf(used, locations.length);
+        return this;
+    }
+
+    /**
+     * 取出一个空闲的固定位置下标并标记为占用，没有空闲时返回used.length
+     */
+    static int nextFreeSlot(boolean[] used) {
+        for (int i = 0; i < used.length; i++) {
+            if (!used[i]) {
+                used[i] = true;
+                return i;
+            }
+        }
+        return used.length;
+    }
+
+    /**
+     * prepare时同时测量画布模式下的文字
+     *
+     * @param textPaint 没有样式时的Paint
+     * @param styles    按类型设置的样式，需要已经resolve
+     */
+    PreparedWaters measureText(Paint textPaint, SparseArray<DropStyle> styles) {
+        mTextPaint = new Paint(textPaint);
+        mStyles = styles.clone();
+        mStylePaints = new Paint[styles.size()];
+        mIconHeights = new float[styles.size()];
+        for (int i = 0; i < styles.size(); i++) {
+            mStylePaints[i] = new Paint(styles.valueAt(i).getTextPaint());
+            mIconHeights[i] = styles.valueAt(i).getIconHeight();
+        }
+        labelX = new float[waters.size()];
+        labelBaseline = new float[waters.size()];
+        mMeasuredStyles = new DropStyle[waters.size()];
+        return this;
+    }
+
+    /**
+     * 计算所有水滴的位置和文字，可以在后台线程执行
+     *
+     * @param token 为null时不会取消
+     * @return 被取消时返回false
+     */
+    boolean prepare(WaterPreparer.Token token) {
+        float half = mDropSize / 2;
+        labelTime = System.currentTimeMillis();
+        for (int i = 0; i < waters.size(); i++) {
+            if (token != null && token.isCancelled()) {
+                return false;
+            }
+            Water water = waters.get(i);
+            slots[i] = nextFreeSlot(mUsedSlots);
+            if (slots[i] < mLocations.length) {
+                x[i] = mWidth * (float) mLocations[slots[i]][0];
+                y[i] = mHeight * (float) mLocations[slots[i]][1];
+                mPlacer.occupy(x[i] + half, y[i] + mDropTop + half, mPlaceRadius);
+            } else {
+                int id = mPlacer.place(mPlaceRadius);
+                if (id < 0) {
+                    x[i] = mRandom.nextFloat() * Math.max(0, mWidth - mDropSize);
+                    y[i] = mRandom.nextFloat() * Math.max(0, mHeight - mDropSize - mDropTop);
+                    mPlacer.occupy(x[i] + half, y[i] + mDropTop + half, mPlaceRadius);
+                } else {
+                    x[i] = mPlacer.getX(id) - half;
+                    y[i] = mPlacer.getY(id) - half - mDropTop;
+                }
+            }
+            labels[i] = labelOf(water, labelTime);
+            if (labelX != null) {
+                measure(i, water.getType());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 与AntForestView.bindCanvasLabel一致
+     */
+    private void measure(int i, int type) {
+        int index = mStyles.indexOfKey(type);
+        Paint paint = index < 0 ? mTextPaint : mStylePaints[index];
+        float iconHeight = index < 0 ? 0 : mIconHeights[index];
+        Paint.FontMetrics fm = paint.getFontMetrics();
+        labelX[i] = (mDropSize - paint.measureText(labels[i])) / 2;
+        labelBaseline[i] = (mDropSize + iconHeight - fm.bottom - fm.top) / 2;
+        mMeasuredStyles[i] = index < 0 ? null : mStyles.valueAt(index);
+    }
+
+    /**
+     * 测量第i个水滴的文字时使用的样式
+     */
+    DropStyle getStyle(int i) {
+        return mMeasuredStyles[i];
+    }
+
+    /**
+     * 计算结果是否仍然可以直接提交
+     *
+     * @param placer 控件的DropPlacer
+     */
+    boolean isValid(DropPlacer placer, int width, int height) {
+        return placer.getModCount() == mModCount && width == mWidth && height == mHeight;
+    }
+
+    /**
+     * 把第i个水滴的位置登记到控件的DropPlacer
+     *
+     * @return DropPlacer中的id
+     */
+    int occupy(int i, DropPlacer placer) {
+        float half = mDropSize / 2;
+        return placer.occupy(x[i] + half, y[i] + mDropTop + half, mPlaceRadius);
+    }
+}
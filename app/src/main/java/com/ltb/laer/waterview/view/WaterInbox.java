@@ -0,0 +1,37 @@
+package com.ltb.laer.waterview.view;
+
+import com.ltb.laer.waterview.model.Water;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 描述: 从任意线程提交的水滴数据，只保留最新的一份，由UI线程每帧最多取一次
+ * ->提交时复制列表，之后调用方修改原列表不受影响
+ * ->没有待处理的数据时offer返回true，调用方需要安排一次take；连续提交只替换数据，不会重复安排
+ * ->只用一个AtomicReference交换数据，UI线程取数据时不加锁
+ */
+class WaterInbox {
+    private final AtomicReference<List<Water>> mPending = new AtomicReference<>();
+
+    /**
+     * 提交最新的全部水滴，可以在任意线程调用
+     *
+     * @return 之前没有待处理的数据，需要安排一次take
+     */
+    boolean offer(List<Water> waters) {
+        List<Water> snapshot = Collections.unmodifiableList(new ArrayList<>(waters));
+        return mPending.getAndSet(snapshot) == null;
+    }
+
+    /**
+     * 取出最新的数据
+     *
+     * @return 没有待处理的数据时返回null
+     */
+    List<Water> take() {
+        return mPending.getAndSet(null);
+    }
+}
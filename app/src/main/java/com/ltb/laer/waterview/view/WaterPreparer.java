@@ -0,0 +1,121 @@
+package com.ltb.laer.waterview.view;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 描述: 在后台线程为setWaters准备数据，完成后在UI线程一次提交
+ * ->后台只做不涉及view的计算(位置、文字、文字测量)，inflate和动画仍在提交时进行
+ * ->每次submit都会取消之前还没有提交的任务，后台任务在每个水滴之间检查是否已取消
+ * ->所有控件默认共用一个后台线程，执行器是同步的(在UI线程上执行)时直接提交，不再post
+ */
+class WaterPreparer {
+
+    /**
+     * 后台执行的计算
+     */
+    interface Work<T> {
+        /**
+         * @return 准备好的结果，已取消时返回null
+         */
+        T prepare(Token token);
+    }
+
+    /**
+     * UI线程上的提交
+     */
+    interface Commit<T> {
+        void commit(T result);
+    }
+
+    /**
+     * 任务是否已经被之后的submit或cancel取消
+     */
+    static final class Token {
+        private final AtomicInteger mGeneration;
+        private final int mValue;
+
+        private Token(AtomicInteger generation, int value) {
+            this.mGeneration = generation;
+            this.mValue = value;
+        }
+
+        boolean isCancelled() {
+            return mGeneration.get() != mValue;
+        }
+    }
+
+    private static ExecutorService sDefaultExecutor;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    private Executor mExecutor;
+
+    void setExecutor(Executor executor) {
+        this.mExecutor = executor;
+    }
+
+    /**
+     * 取消之前的任务并提交新的任务，只能在UI线程调用
+     */
+    <T> void submit(final Work<T> work, final Commit<T> commit) {
+        final Token token = new Token(mGeneration, mGeneration.incrementAndGet());
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (token.isCancelled()) {
+                    return;
+                }
+                final T result = work.prepare(token);
+                if (result == null || token.isCancelled()) {
+                    return;
+                }
+                Runnable apply = new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!token.isCancelled()) {
+                            commit.commit(result);
+                        }
+                    }
+                };
+                if (Looper.myLooper() == Looper.getMainLooper()) {
+                    apply.run();
+                } else {
+                    mMainHandler.post(apply);
+                }
+            }
+        });
+    }
+
+    /**
+     * 取消还没有提交的任务
+     */
+    void cancel() {
+        mGeneration.incrementAndGet();
+    }
+
+    private Executor getExecutor() {
+        if (mExecutor != null) {
+            return mExecutor;
+        }
+        synchronized (WaterPreparer.class) {
+            if (sDefaultExecutor == null) {
+                sDefaultExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "water-prepare");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            return sDefaultExecutor;
+        }
+    }
+}
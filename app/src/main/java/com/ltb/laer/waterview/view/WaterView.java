@@ -1,52 +1,81 @@
 package com.ltb.laer.waterview.view;
 
 import android.animation.Animator;
-import android.annotation.SuppressLint;
+import android.animation.AnimatorListenerAdapter;
+import android.arch.lifecycle.LifecycleOwner;
+import android.animation.ValueAnimator;
 import android.content.Context;
-import android.graphics.Color;
-import android.os.Handler;
-import android.os.Message;
+import android.graphics.Canvas;
+import android.os.Parcelable;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
-import android.view.Gravity;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
 import android.view.View;
-import android.view.animation.DecelerateInterpolator;
+import android.view.ViewGroup;
 import android.widget.FrameLayout;
-import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import com.ltb.laer.waterview.R;
+import com.ltb.laer.waterview.engine.BounceMotion;
+import com.ltb.laer.waterview.engine.DropMotion;
+import com.ltb.laer.waterview.engine.DropPlacer;
+import com.ltb.laer.waterview.engine.QualityController;
+import com.ltb.laer.waterview.engine.RipeSchedule;
+import com.ltb.laer.waterview.engine.SpringMotion;
+import com.ltb.laer.waterview.listener.FrameMetricsListener;
 import com.ltb.laer.waterview.listener.WaterClickListener;
+import com.ltb.laer.waterview.listener.WaterCollectListener;
 import com.ltb.laer.waterview.model.Water;
+import com.ltb.laer.waterview.model.WaterDiff;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * 描述:  蚂蚁森林模拟
  * 处理思路：
  * ->将森林水滴作为一个总体而不是单个的view，自定义一个ViewGroup容器
+ * ->setWaters时在后台线程(WaterPreparer)计算位置和文字，UI线程只创建view并登记计算好的位置；新的setWaters/updateWaters会取消未完成的计算
  * ->循环创建view
- * ->为view随机设置位置(在一些固定的集合中随机选取，尽量保证水滴不重合)
- * ->为view设置一个初始的运动方向（注：由于每个view的运动方向不同，所以我选择将方向绑定到view的tag中）
- * ->为view设置一个初始的速度（同理：将初始速度绑定到view的tag中）
+ * ->为view随机设置位置(由DropPlacer选取与其他水滴、禁止区域都不重合的位置)
+ * ->为view设置一个初始的运动方向和速度（注：运动由engine中的BounceMotion模拟，下标与mViews一致，每帧不产生装箱）
  * ->添加view到容器中，并缩放伴随透明度显示
- * ->开启handler达到view上下位移动画（注意点：这里我们需要定一个临界值来改变view的速度，到达view时而快时而慢的目的）
- * ->点击view后，缩放、透明度伴随位移移除水滴
- * ->界面销毁时停止调用handler避免内存泄漏，空指针等异常
+ * ->跟随屏幕刷新回调达到view上下位移动画，位移按两帧的时间差计算（注意点：这里我们需要定一个临界值来改变view的速度，到达view时而快时而慢的目的）
+ * ->setSpringMotion(true)后改用SpringMotion，按固定步长积分的弹簧浮动，轨迹与帧率无关
+ * ->没有水滴、控件不可见、窗口失去焦点、从窗口移除或宿主onPause时停止帧回调，并结束所有进行中的显示、消失动画，条件恢复后从原位置继续
+ * ->点击由容器统一处理：按下、抬起的位置在DropPlacer的网格中查找候选水滴，再按水滴当前的圆心和圆形半径判断，水滴挨得很近时取圆心最近的
+ * ->点击view后，缩放、透明度伴随位移移除水滴，动画结束后从容器中移除并放回DropViewPool
+ * ->点击时显示收取数值的"+N"飘字，飘字view与动画监听由FloatingTextPool复用
+ * ->重新setWaters时旧的水滴view放回DropViewPool，新的水滴优先复用
+ * ->按水滴类型设置DropStyle，绑定数据时只设置预先解析好的背景、文字、图标
+ * ->未成熟的水滴(Water.ripeTime)显示倒计时，不能点击或收取；所有水滴共用一个RipeSchedule定时唤醒，
+ * 只在下一次成熟或倒计时变化的整秒时刷新文字，不可见时停止
+ * ->updateWaters只处理新增、移除、数值变化的水滴，其余水滴保持位置和运动状态
+ * ->submitWaters可以在任意线程调用，一帧内的多次提交只保留最新的一份(WaterInbox)，下一帧按updateWaters的方式应用
+ * ->collect/collectAll批量收取水滴，所有水滴共用一个消失动画，只回调一次WaterCollectListener
+ * ->设置QualityController后按帧间隔自适应降级：去掉飘字、简化消失动画、远处水滴降低更新频率、停止浮动，流畅后再恢复
+ * ->界面销毁(bindLifecycle绑定的宿主onDestroy)时停止帧回调避免内存泄漏，空指针等异常
+ * ->位置分配、运动方向和速度共用一个Random，setSeed后相同的输入和帧时间得到相同的布局和运动轨迹
+ * ->设置了id时保存水滴、位置、运动状态和收取总数(ForestSavedState)，旋转屏幕或重新进入时直接恢复，
+ * 不重新分配位置、不播放显示动画；恢复后的setWaters按updateWaters的方式应用
  */
 public class WaterView extends FrameLayout {
-    private static final int WHAT_ADD_PROGRESS = 1;
     /**
-     * view变化的y抖动范围
-     */
-    private static final int CHANGE_RANGE = 10;
-    /**
-     * 控制抖动动画执行的快慢，人眼不能识别16ms以下的
+     * 速度的参考时间，mSpds中的速度表示每PROGRESS_DELAY_MILLIS移动的像素
      */
     public static final int PROGRESS_DELAY_MILLIS = 12;
     /**
@@ -60,38 +89,60 @@ public class WaterView extends FrameLayout {
     /**
      * 控制水滴动画的快慢
      */
-    private List<Float> mSpds = Arrays.asList(0.5f, 0.3f, 0.2f, 0.1f);
-    /**
-     * x最多可选取的随机数值
-     */
-    private static final List<Float> X_MAX_CHOSE_RANDOMS = Arrays.asList(
-            0.41f, 0.55f, 0.1f, 0.6f, 0.01f, 0.16f, 0.21f, 0.26f, 0.31f, 0.7f, 0.75f, 0.8f, 0.85f, 0.87f);
-    /**
-     * y最多可选取的随机数值
-     */
-    private static final List<Float> Y_MAX_CHOSE_RANDOMS = Arrays.asList(
-            0.01f, 0.06f, 0.11f, 0.17f, 0.23f, 0.29f, 0.35f, 0.41f, 0.47f, 0.53f, 0.59f, 0.65f, 0.71f);
-    /**
-     * x坐标当前可选的随机数组
-     */
-    private List<Float> mXCurrentCanShoseRandoms = new ArrayList<>();
-    /**
-     * y坐标当前可选的随机数组
-     */
-    private List<Float> mYCurrentCanShoseRandoms = new ArrayList<>();
-
-    /**
-     * 已经选取x的随机数值
-     */
-    private List<Float> mXRandoms = new ArrayList<>();
-    /**
-     * 已经选取y的随机数值
-     */
-    private List<Float> mYRandoms = new ArrayList<>();
-
+    private float[] mSpds = {0.5f, 0.3f, 0.2f, 0.1f};
     private Random mRandom = new Random();
     private List<View> mViews = new ArrayList<>();
+    private DropMotion mMotion = new BounceMotion(mSpds, PROGRESS_DELAY_MILLIS, mRandom);
+    private DropPlacer mDropPlacer = new DropPlacer(mRandom);
+    private SparseArray<View> mPlacedViews = new SparseArray<>();//以DropPlacer中的id为key的水滴view，用于点击命中
+    private int mTouchDropId = -1;//按下时命中的水滴
+    private DropPlacer.Locator mDropLocator = new DropPlacer.Locator() {
+        @Override
+        public boolean locate(int id, float[] center) {
+            View view = mPlacedViews.get(id);
+            if (view == null) {
+                return false;
+            }
+            //getY已包含浮动的位移
+            center[0] = view.getX() + mDropRadius;
+            center[1] = view.getY() + mDropTop + mDropRadius;
+            return true;
+        }
+    };
+    private float mDropRadius;//水滴圆形区域的半径，对应water_item中的tv_water
+    private float mDropTop;//水滴圆形区域距离顶部的距离，对应water_item中的id_ll_add_assets_anim
     private int mChildViewRes = R.layout.water_item;//子view的资源文件
+    private DropViewPool mDropViewPool = new DropViewPool();
+    private SparseArray<DropStyle> mDropStyles = new SparseArray<>();//按水滴类型设置的样式
+    private DropLayerCache mLayerCache;//为null时不开启硬件层
+    private FloatingTextPool mFloatingTextPool;
+    private WaterPreparer mPreparer = new WaterPreparer();
+    private ForestSavedState mPendingState;//已经恢复但还没有应用的水滴
+    private boolean isRestored;//水滴来自恢复的状态，之后第一次setWaters只更新变化的水滴
+    private Runnable mApplyPendingState = new Runnable() {
+        @Override
+        public void run() {
+            restoreDatas();
+        }
+    };
+    private RipeSchedule mRipeSchedule = new RipeSchedule();
+    private long mLabelTime = System.currentTimeMillis();//上次刷新文字的时间，成熟时间晚于它的水滴文字需要刷新
+    private Runnable mRipeTick = new Runnable() {
+        @Override
+        public void run() {
+            updateRipening();
+        }
+    };
+    private WaterInbox mInbox = new WaterInbox();
+    private Runnable mApplyInbox = new Runnable() {
+        @Override
+        public void run() {
+            List<Water> waters = mInbox.take();
+            if (waters != null) {
+                applyWaters(waters);
+            }
+        }
+    };
 
     private LayoutInflater mInflater;
     private int mTotalConsumeWater;//总的已经点击的水滴
@@ -99,8 +150,38 @@ public class WaterView extends FrameLayout {
     private boolean isCancelAnimtion;//是否销毁动画
     private int maxX, maxY;//子view的x坐标和y坐标的最大取值
     private WaterClickListener mWaterClickListener = null;//水滴点击监听
+    private WaterCollectListener mWaterCollectListener = null;//批量收取监听
     private int viewDisappearX, viewDisappearY;// 小球动画消失的x,y轴
-    private LinearLayout idLlAddAssetsAnim;
+    private long mLastFrameTimeNanos;//上一帧的时间，0表示还没有开始
+    private FrameMetricsRecorder mMetricsRecorder;//为null时不采集帧数据
+    private QualityController mQualityController;//为null时始终使用全部效果
+    private List<Animator> mRemoveAnimators = new ArrayList<>();//进行中的批量消失动画
+    private boolean isHostPaused;//宿主是否处于onPause之后
+    private boolean wasActive;//上次检查时是否可以播放动画
+    private HostLifecycle mHostLifecycle = new HostLifecycle(new HostLifecycle.Callback() {
+        @Override
+        public void onHostResume() {
+            isHostPaused = false;
+            updateFrames();
+        }
+
+        @Override
+        public void onHostPause() {
+            isHostPaused = true;
+            updateFrames();
+        }
+
+        @Override
+        public void onHostDestroy() {
+            onDestroy();
+        }
+    });
+    private FrameScheduler mFrameScheduler = new FrameScheduler(new FrameScheduler.Callback() {
+        @Override
+        public void onFrame(long frameTimeNanos) {
+            doFrame(frameTimeNanos);
+        }
+    });
 
     public WaterView(@NonNull Context context) {
         this(context, null);
@@ -113,20 +194,146 @@ public class WaterView extends FrameLayout {
     public WaterView(@NonNull Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
         mInflater = LayoutInflater.from(getContext());
+        mFloatingTextPool = new FloatingTextPool(getContext(), DropViewPool.DEFAULT_MAX_SIZE);
+        float density = getResources().getDisplayMetrics().density;
+        mDropRadius = 25 * density;
+        mDropTop = 20 * density;
     }
 
-    @SuppressLint("HandlerLeak")
-    private Handler mHandler = new Handler() {
-        @Override
-        public void handleMessage(Message msg) {
-            //根据isCancelAnimtion来标识是否退出，防止界面销毁时，再一次改变UI
-            if (isCancelAnimtion) {
-                return;
+    /**
+     * 每帧回调
+     *
+     * @param frameTimeNanos
+     */
+    @VisibleForTesting
+    void doFrame(long frameTimeNanos) {
+        //根据isCancelAnimtion来标识是否退出，防止界面销毁时，再一次改变UI
+        if (isCancelAnimtion || mViews.isEmpty()) {
+            stopFrames();
+            return;
+        }
+        long delta = mLastFrameTimeNanos == 0 ? 0 : frameTimeNanos - mLastFrameTimeNanos;
+        mLastFrameTimeNanos = frameTimeNanos;
+        if (delta <= 0) {
+            return;
+        }
+        if (mMetricsRecorder != null) {
+            mMetricsRecorder.beginUpdate(frameTimeNanos);
+        }
+        int level = mQualityController == null ? QualityController.LEVEL_FULL : mQualityController.onFrame(frameTimeNanos);
+        //停止浮动时不推进运动，恢复后从当前位置继续
+        if (level < QualityController.LEVEL_FROZEN) {
+            setOffSet(delta);
+        }
+        if (mMetricsRecorder != null) {
+            mMetricsRecorder.endUpdate(mViews.size(), mMotion.size(), level);
+        }
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        if (mMetricsRecorder == null) {
+            super.draw(canvas);
+            return;
+        }
+        mMetricsRecorder.beginDraw();
+        super.draw(canvas);
+        mMetricsRecorder.endDraw();
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateFrames();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateFrames();
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasWindowFocus) {
+        super.onWindowFocusChanged(hasWindowFocus);
+        updateFrames();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateFrames();
+    }
+
+    /**
+     * 根据当前状态开启或停止帧回调，从可以播放变为不能播放时同时结束进行中的动画
+     */
+    private void updateFrames() {
+        boolean active = isActive();
+        if (wasActive && !active) {
+            releaseAnimations();
+        }
+        wasActive = active;
+        if (active && isOpenAnimtion && !isCancelAnimtion && !mViews.isEmpty()) {
+            mFrameScheduler.start();
+        } else {
+            stopFrames();
+        }
+        updateRipening();
+    }
+
+    /**
+     * 控件当前是否可以播放动画
+     */
+    private boolean isActive() {
+        return !isHostPaused && isShown() && getWindowVisibility() == VISIBLE && hasWindowFocus();
+    }
+
+    /**
+     * 结束所有进行中的动画：显示、数值变化的动画直接到结束状态，消失中的水滴立即移除并回收
+     */
+    private void releaseAnimations() {
+        for (int i = mRemoveAnimators.size() - 1; i >= 0; i--) {
+            //结束监听中回收view并从列表中移除
+            mRemoveAnimators.get(i).end();
+        }
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            View child = getChildAt(i);
+            if (!(child.getTag(R.string.drop_layout_res) instanceof Integer)) {
+                //不是水滴view
+                continue;
+            }
+            child.animate().cancel();
+            if (mViews.contains(child)) {
+                child.setAlpha(1);
+                child.setScaleX(1);
+                child.setScaleY(1);
+            } else if (child.getParent() == this) {
+                removeView(child);
+                recycleView(child);
             }
-            setOffSet();
-            mHandler.sendEmptyMessageDelayed(WHAT_ADD_PROGRESS, PROGRESS_DELAY_MILLIS);
         }
-    };
+    }
+
+    /**
+     * 帧回调是否在运行
+     */
+    @VisibleForTesting
+    boolean isFrameScheduled() {
+        return mFrameScheduler.isRunning();
+    }
+
+    private void stopFrames() {
+        mFrameScheduler.stop();
+        //重新开始时从0计算时间差，避免不可见期间的时间被算作位移
+        mLastFrameTimeNanos = 0;
+        if (mMetricsRecorder != null) {
+            mMetricsRecorder.resetFrameTime();
+        }
+        if (mQualityController != null) {
+            mQualityController.reset();
+        }
+    }
 
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
@@ -136,12 +343,58 @@ public class WaterView extends FrameLayout {
     }
 
     /**
-     * 界面销毁时回调
+     * 保存水滴、位置、运动状态和收取总数，需要为控件设置id
+     */
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        Parcelable superState = super.onSaveInstanceState();
+        if (mPendingState != null) {
+            //恢复后还没有应用
+            return mPendingState;
+        }
+        ForestSavedState state = new ForestSavedState(superState);
+        state.totalConsumeWater = mTotalConsumeWater;
+        state.width = maxX;
+        state.height = maxY;
+        state.allocate(mViews.size());
+        for (int i = 0; i < mViews.size(); i++) {
+            View view = mViews.get(i);
+            state.setWater(i, (Water) view.getTag());
+            state.x[i] = view.getX();
+            state.y[i] = mMotion.getBaseY(i);
+        }
+        state.saveMotion(mMotion);
+        return state;
+    }
+
+    /**
+     * 恢复收取总数，水滴在布局完成后应用(setWaters时或之后的第一个post)
+     */
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof ForestSavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        ForestSavedState saved = (ForestSavedState) state;
+        super.onRestoreInstanceState(saved.getSuperState());
+        mTotalConsumeWater = saved.totalConsumeWater;
+        if (saved.size() > 0) {
+            mPendingState = saved;
+            post(mApplyPendingState);
+        }
+    }
+
+    /**
+     * 从窗口移除时暂停，重新添加后恢复
      */
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
-        onDestroy();
+        wasActive = false;
+        stopFrames();
+        removeCallbacks(mRipeTick);
+        releaseAnimations();
     }
 
     /**
@@ -151,14 +404,16 @@ public class WaterView extends FrameLayout {
         isCancelAnimtion = true;
         isOpenAnimtion = false;
         for (int i = 0; i < mViews.size(); i++) {
-            removeView(mViews.get(i));
+            View view = mViews.get(i);
+            removeView(view);
+            recycleView(view);
         }
         mViews.clear();
-        mXRandoms.clear();
-        mYRandoms.clear();
-        mYCurrentCanShoseRandoms.clear();
-        mXCurrentCanShoseRandoms.clear();
-        mHandler.removeCallbacksAndMessages(null);
+        mMotion.clear();
+        mDropPlacer.reset(0, mDropTop, maxX, maxY, (mDropRadius + BounceMotion.CHANGE_RANGE) * 2);
+        mPlacedViews.clear();
+        mTouchDropId = -1;
+        stopFrames();
     }
 
     /**
@@ -166,62 +421,226 @@ public class WaterView extends FrameLayout {
      *
      * @param waters
      */
-    public WaterView setWaters(final List<Water> waters) {
+    public WaterView setWaters(List<Water> waters) {
         if (waters == null || waters.isEmpty()) {
             return this;
         }
+        //复制一份，后台计算期间调用方修改列表不受影响
+        final List<Water> copy = new ArrayList<>(waters);
         //确保初始化完成
         post(new Runnable() {
             @Override
             public void run() {
-                setDatas(waters);
+                //有恢复的水滴时保持原位置，只更新变化的水滴(恢复可能已经由post执行)
+                boolean restored = restoreDatas() || isRestored;
+                isRestored = false;
+                if (restored) {
+                    applyWaters(copy);
+                } else {
+                    prepareDatas(copy);
+                }
+            }
+        });
+        return this;
+    }
+
+    /**
+     * 在后台线程计算位置和文字，完成后在UI线程提交，之前未提交的setWaters被取消
+     */
+    private void prepareDatas(final List<Water> waters) {
+        float placeRadius = mDropRadius + BounceMotion.CHANGE_RANGE;
+        //setDatas会清空已有水滴，副本从空的区域开始分配
+        final PreparedWaters prepared = new PreparedWaters(waters, mDropPlacer, mRandom, mDropRadius * 2, mDropTop,
+                placeRadius, maxX, maxY).clearPlacement(placeRadius * 2);
+        mPreparer.submit(new WaterPreparer.Work<PreparedWaters>() {
+            @Override
+            public PreparedWaters prepare(WaterPreparer.Token token) {
+                return prepared.prepare(token) ? prepared : null;
+            }
+        }, new WaterPreparer.Commit<PreparedWaters>() {
+            @Override
+            public void commit(PreparedWaters result) {
+                if (result.isValid(mDropPlacer, maxX, maxY)) {
+                    setDatas(result);
+                } else {
+                    //计算期间控件大小或禁止区域变化，在UI线程重新计算
+                    setDatas(waters);
+                }
+            }
+        });
+    }
+
+    /**
+     * 增量更新水滴，以水滴id作为唯一标识(见WaterDiff)
+     * ->新增的水滴显示动画，移除的水滴消失动画(不回调点击监听)，数值变化的水滴更新文字并缩放提示
+     * ->未变化的水滴保持当前位置和运动状态
+     *
+     * @param waters 更新后的全部水滴
+     */
+    public WaterView updateWaters(List<Water> waters) {
+        final List<Water> copy = waters == null ? null : new ArrayList<>(waters);
+        post(new Runnable() {
+            @Override
+            public void run() {
+                applyWaters(copy);
             }
         });
         return this;
     }
 
+    /**
+     * 提交最新的全部水滴，可以在任意线程调用(网络、推送回调等)
+     * ->提交时复制列表，之后修改原列表不受影响
+     * ->下一帧之前的多次提交只应用最后一次，应用方式与updateWaters相同
+     *
+     * @param waters 最新的全部水滴，为null时按没有水滴处理
+     */
+    public WaterView submitWaters(@Nullable List<Water> waters) {
+        if (mInbox.offer(waters == null ? Collections.<Water>emptyList() : waters)) {
+            ViewCompat.postOnAnimation(this, mApplyInbox);
+        }
+        return this;
+    }
+
+    private void applyWaters(List<Water> waters) {
+        //以更新后的数据为准
+        mPreparer.cancel();
+        if (!isOpenAnimtion) {
+            if (waters != null && !waters.isEmpty()) {
+                setDatas(waters);
+            }
+            return;
+        }
+        List<Water> current = new ArrayList<>(mViews.size());
+        Map<Long, View> viewMap = new HashMap<>();
+        for (View view : mViews) {
+            Water water = (Water) view.getTag();
+            current.add(water);
+            viewMap.put(WaterDiff.keyOf(water), view);
+        }
+        WaterDiff diff = WaterDiff.calculate(current, waters);
+        for (Water water : diff.getRemoved()) {
+            View view = viewMap.get(WaterDiff.keyOf(water));
+            int index = mViews.indexOf(view);
+            mViews.remove(index);
+            mMotion.remove(index);
+            releaseLocation(view);
+            animRemoveView(view);
+        }
+        for (Water water : diff.getChanged()) {
+            View view = viewMap.get(WaterDiff.keyOf(water));
+            bindWater(view, water);
+            pulseView(view);
+        }
+        for (Water water : diff.getInserted()) {
+            addWaterView(water);
+        }
+        rescheduleRipening();
+        updateFrames();
+    }
+
     /**
      * 设置数据
      *
      * @param waters
      */
     private void setDatas(List<Water> waters) {
+        float placeRadius = mDropRadius + BounceMotion.CHANGE_RANGE;
+        PreparedWaters prepared = new PreparedWaters(waters, mDropPlacer, mRandom, mDropRadius * 2, mDropTop,
+                placeRadius, maxX, maxY).clearPlacement(placeRadius * 2);
+        prepared.prepare(null);
+        setDatas(prepared);
+    }
+
+    /**
+     * 提交计算好的水滴：只创建view并登记位置
+     */
+    private void setDatas(PreparedWaters prepared) {
         reset();
         isCancelAnimtion = false;
-        setCurrentCanChoseRandoms();
-        addWaterView(waters);
-        setViewsSpd();
+        for (int i = 0; i < prepared.waters.size(); i++) {
+            View view = mDropViewPool.acquire(mInflater, mChildViewRes, this);
+            bindWater(view, prepared.waters.get(i), prepared.labels[i]);
+            view.setX(prepared.x[i]);
+            view.setY(prepared.y[i]);
+            setPlacement(view, prepared.occupy(i, mDropPlacer));
+            showWaterView(view);
+        }
+        //文字是后台计算时的倒计时
+        mLabelTime = Math.min(mLabelTime, prepared.labelTime);
+        rescheduleRipening();
         startAnimation();
     }
 
-    private void setCurrentCanChoseRandoms() {
-        mXCurrentCanShoseRandoms.addAll(X_MAX_CHOSE_RANDOMS);
-        mYCurrentCanShoseRandoms.addAll(Y_MAX_CHOSE_RANDOMS);
+    /**
+     * 应用onRestoreInstanceState恢复的水滴：直接使用保存的位置和运动状态，不播放显示动画
+     *
+     * @return 是否有恢复的水滴
+     */
+    private boolean restoreDatas() {
+        ForestSavedState state = mPendingState;
+        mPendingState = null;
+        if (state == null) {
+            return false;
+        }
+        mPreparer.cancel();
+        reset();
+        isCancelAnimtion = false;
+        boolean restoreMotion = state.canRestoreMotion(mMotion, maxX, maxY);
+        float scaleX = state.width == 0 ? 1 : maxX / (float) state.width;
+        float scaleY = state.height == 0 ? 1 : maxY / (float) state.height;
+        float placeRadius = mDropRadius + BounceMotion.CHANGE_RANGE;
+        for (int i = 0; i < state.size(); i++) {
+            View view = mDropViewPool.acquire(mInflater, mChildViewRes, this);
+            bindWater(view, state.getWater(i));
+            float x = state.x[i] * scaleX;
+            float y = state.y[i] * scaleY;
+            int index = restoreMotion ? state.restoreMotion(mMotion, i) : mMotion.add(y, mRandom.nextBoolean());
+            view.setX(x);
+            view.setY(mMotion.getY(index));
+            setPlacement(view, mDropPlacer.occupy(x + mDropRadius, y + mDropTop + mDropRadius, placeRadius));
+            mViews.add(view);
+            if (mLayerCache != null) {
+                mLayerCache.attachLayer(view, (int) (mDropRadius * 2 * (mDropRadius * 2 + mDropTop) * 4));
+            }
+            addView(view);
+        }
+        isRestored = true;
+        rescheduleRipening();
+        startAnimation();
+        return true;
+    }
+
+    private void addWaterView(Water water) {
+        View view = mDropViewPool.acquire(mInflater, mChildViewRes, this);
+        bindWater(view, water);
+        setChildViewLocation(view);
+        showWaterView(view);
+    }
+
+    private void showWaterView(View view) {
+        //随机设置view动画的方向
+        boolean isUp = mRandom.nextBoolean();
+        mViews.add(view);
+        mMotion.add(view.getY(), isUp);
+        if (mLayerCache != null) {
+            mLayerCache.attachLayer(view, (int) (mDropRadius * 2 * (mDropRadius * 2 + mDropTop) * 4));
+        }
+        addShowViewAnimation(view);
     }
 
     /**
-     * 添加水滴view
+     * 绑定水滴数据
      */
-    private void addWaterView(List<Water> waters) {
-        for (int i = 0; i < waters.size(); i++) {
-            final Water water = waters.get(i);
-            View view = mInflater.inflate(mChildViewRes, this, false);
+    private void bindWater(View view, Water water) {
+        bindWater(view, water, PreparedWaters.labelOf(water, System.currentTimeMillis()));
+    }
 
-            TextView tvWater = view.findViewById(R.id.tv_water);
-            view.setTag(water);
-            tvWater.setText(water.getNumber() + "g");
-            view.setOnClickListener(new OnClickListener() {
-                @Override
-                public void onClick(View view) {
-                    handViewClick(view);
-                }
-            });
-            //随机设置view动画的方向
-            view.setTag(R.string.isUp, mRandom.nextBoolean());
-            setChildViewLocation(view);
-            mViews.add(view);
-            addShowViewAnimation(view);
-        }
+    private void bindWater(View view, Water water, String label) {
+        TextView tvWater = view.findViewById(R.id.tv_water);
+        view.setTag(water);
+        mDropViewPool.applyStyle(view, mDropStyles.get(water.getType()));
+        tvWater.setText(label);
     }
 
     /**
@@ -237,169 +656,413 @@ public class WaterView extends FrameLayout {
         view.animate().alpha(1).scaleX(1).scaleY(1).setDuration(ANIMATION_SHOW_VIEW_DURATION).start();
     }
 
+    /**
+     * 数值变化或成熟时缩放提示
+     */
+    private void pulseView(View view) {
+        view.setScaleX(1.2f);
+        view.setScaleY(1.2f);
+        view.animate().scaleX(1).scaleY(1).setDuration(ANIMATION_SHOW_VIEW_DURATION).start();
+    }
+
+    /**
+     * 水滴新增、移除或变化后重新登记未成熟水滴的成熟时间
+     */
+    private void rescheduleRipening() {
+        long now = System.currentTimeMillis();
+        mRipeSchedule.clear();
+        for (View view : mViews) {
+            Water water = (Water) view.getTag();
+            if (!water.isRipe(now)) {
+                mRipeSchedule.add(water.getRipeTime());
+            }
+        }
+        updateRipening();
+    }
+
+    /**
+     * 弹出已到期的成熟时间，刷新在上次刷新时还未成熟的水滴的文字，再安排下一次唤醒
+     * ->不可见或已销毁时不唤醒，恢复时(updateFrames)一次刷新暂停期间的变化
+     */
+    private void updateRipening() {
+        removeCallbacks(mRipeTick);
+        if (!isActive() || isCancelAnimtion) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        mRipeSchedule.advance(now);
+        for (View view : mViews) {
+            Water water = (Water) view.getTag();
+            if (water.isRipe(mLabelTime)) {
+                continue;
+            }
+            bindWater(view, water);
+            if (water.isRipe(now)) {
+                pulseView(view);
+            }
+        }
+        mLabelTime = now;
+        long wakeTime = mRipeSchedule.nextWakeTime(now);
+        if (wakeTime != RipeSchedule.NEVER) {
+            postDelayed(mRipeTick, wakeTime - now);
+        }
+    }
+
+    /**
+     * 未成熟的水滴不能点击或收取
+     */
+    private static boolean isRipe(View view) {
+        return ((Water) view.getTag()).isRipe(System.currentTimeMillis());
+    }
+
     /**
      * 处理view点击
      *
      * @param view
      */
     private void handViewClick(View view) {
-        startAssetTextAnimStep1("1", view);
         //移除当前集合中的该view
-        mViews.remove(view);
+        int index = mViews.indexOf(view);
+        if (index >= 0) {
+            mViews.remove(index);
+            mMotion.remove(index);
+        }
+        releaseLocation(view);
         Object tag = view.getTag();
         if (tag instanceof Water) {
             Water waterTag = (Water) tag;
+            if (getQualityLevel() < QualityController.LEVEL_REDUCED) {
+                showCollectText(view, waterTag.getNumber());
+            }
             mTotalConsumeWater += waterTag.getNumber();
 //            Toast.makeText(getContext(), "当前点击的是：" + waterTag.getName() + "水滴的值是:"
 //                    + waterTag.getNumber() + "总的水滴数是" + mTotalConsumeWater, Toast.LENGTH_SHORT).show();
-            mWaterClickListener.onWaterClick(waterTag);
+            if (null != mWaterClickListener) {
+                mWaterClickListener.onWaterClick(waterTag);
+            }
         }
-        view.setTag(R.string.original_y, view.getY());
         animRemoveView(view);
     }
 
     /**
      * 设置view在父控件中的位置
+     * 浮动范围也计算在水滴半径内，保证浮动时也不重合
      *
      * @param view
      */
     private void setChildViewLocation(View view) {
-        view.setX((float) (maxX * getX_YRandom(mXCurrentCanShoseRandoms, mXRandoms)));
-        view.setY((float) (maxY * getX_YRandom(mYCurrentCanShoseRandoms, mYRandoms)));
-        view.setTag(R.string.original_y, view.getY());
+        float placeRadius = mDropRadius + BounceMotion.CHANGE_RANGE;
+        int id = mDropPlacer.place(placeRadius);
+        if (id < 0) {
+            //区域已放满，只能随机放置，位置仍然登记到网格中用于点击命中
+            view.setX(mRandom.nextFloat() * Math.max(0, maxX - mDropRadius * 2));
+            view.setY(mRandom.nextFloat() * Math.max(0, maxY - mDropRadius * 2 - mDropTop));
+            id = mDropPlacer.occupy(view.getX() + mDropRadius, view.getY() + mDropTop + mDropRadius, placeRadius);
+        } else {
+            view.setX(mDropPlacer.getX(id) - mDropRadius);
+            view.setY(mDropPlacer.getY(id) - mDropRadius - mDropTop);
+        }
+        setPlacement(view, id);
     }
 
     /**
-     * 获取x轴或是y轴上的随机值
-     *
-     * @return
+     * 记录水滴view占用的位置
      */
-    private double getX_YRandom(List<Float> choseRandoms, List<Float> saveRandoms) {
+    private void setPlacement(View view, int id) {
+        view.setTag(R.string.placement_id, id);
+        mPlacedViews.put(id, view);
+    }
 
-        if (choseRandoms.size() <= 0) {
-            //防止水滴别可选项的个数还要多，这里就重新对可选项赋值
-            setCurrentCanChoseRandoms();
+    /**
+     * 释放水滴占用的位置
+     *
+     * @param view
+     */
+    private void releaseLocation(View view) {
+        Object id = view.getTag(R.string.placement_id);
+        if (id instanceof Integer) {
+            mDropPlacer.remove((Integer) id);
+            mPlacedViews.remove((Integer) id);
         }
-        //取用一个随机数，就移除一个随机数，达到不用循环遍历来确保获取不一样的值
-        float random = choseRandoms.get(mRandom.nextInt(choseRandoms.size()));
-        choseRandoms.remove(random);
-        saveRandoms.add(random);
-        return random;
+        view.setTag(R.string.placement_id, null);
     }
 
     /**
-     * 设置所有子view的加速度
+     * 查找点击位置的水滴
+     *
+     * @return DropPlacer中的id，没有命中时返回-1
      */
-    private void setViewsSpd() {
-        for (int i = 0; i < mViews.size(); i++) {
-            View view = mViews.get(i);
-            setSpd(view);
+    private int findDropAt(float x, float y) {
+        return mDropPlacer.findAt(x, y, mDropRadius, mDropLocator);
+    }
+
+    /**
+     * 按下时命中水滴就拦截，水滴view本身不处理点击
+     */
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN && findDropAt(event.getX(), event.getY()) >= 0) {
+            return true;
         }
+        return super.onInterceptTouchEvent(event);
     }
 
     /**
-     * 设置View的spd
-     *
-     * @param view
+     * 按下和抬起命中同一个水滴时收取
      */
-    private void setSpd(View view) {
-        float spd = mSpds.get(mRandom.nextInt(mSpds.size()));
-        view.setTag(R.string.spd, spd);
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mTouchDropId = findDropAt(event.getX(), event.getY());
+                return mTouchDropId >= 0 || super.onTouchEvent(event);
+            case MotionEvent.ACTION_UP:
+                int id = mTouchDropId;
+                mTouchDropId = -1;
+                if (id >= 0 && id == findDropAt(event.getX(), event.getY())) {
+                    View view = mPlacedViews.get(id);
+                    if (isRipe(view)) {
+                        playSoundEffect(SoundEffectConstants.CLICK);
+                        handViewClick(view);
+                    }
+                    return true;
+                }
+                return id >= 0 || super.onTouchEvent(event);
+            case MotionEvent.ACTION_CANCEL:
+                if (mTouchDropId >= 0) {
+                    mTouchDropId = -1;
+                    return true;
+                }
+                return super.onTouchEvent(event);
+            default:
+                return mTouchDropId >= 0 || super.onTouchEvent(event);
+        }
     }
 
     /**
      * 设置偏移
+     *
+     * @param dtNanos 距上一帧的时间
      */
-    private void setOffSet() {
+    private void setOffSet(long dtNanos) {
+        mMotion.step(dtNanos);
         for (int i = 0; i < mViews.size(); i++) {
             View view = mViews.get(i);
-            //拿到上次view保存的速度
-            float spd = (float) view.getTag(R.string.spd);
-            //水滴初始的位置
-            float original = (float) view.getTag(R.string.original_y);
-            boolean isUp = (boolean) view.getTag(R.string.isUp);
-            float translationY;
-            //根据水滴tag中的上下移动标识移动view
-            if (isUp) {
-                translationY = view.getY() - spd;
-            } else {
-                translationY = view.getY() + spd;
+            if (shouldUpdateDrop(i, view)) {
+                view.setY(mMotion.getY(i));
             }
-            //对水滴位移范围的控制
-            if (translationY - original > CHANGE_RANGE) {
-                translationY = original + CHANGE_RANGE;
-                view.setTag(R.string.isUp, true);
-            } else if (translationY - original < -CHANGE_RANGE) {
-                translationY = original - CHANGE_RANGE;
-                // 每次当水滴到最高点时再一次设置水滴的移动因子，从而达到时而快时而慢
-                setSpd(view);
-                view.setTag(R.string.isUp, false);
-            }
-            view.setY(translationY);
         }
     }
 
+    /**
+     * 本帧是否更新该水滴的位置，LEVEL_LOW时远离视口中心的水滴降低更新频率
+     */
+    private boolean shouldUpdateDrop(int index, View view) {
+        if (mQualityController == null || mQualityController.getLevel() < QualityController.LEVEL_LOW) {
+            return true;
+        }
+        float dx = view.getX() + view.getWidth() / 2f - getScrollX() - getWidth() / 2f;
+        float dy = view.getY() + view.getHeight() / 2f - getScrollY() - getHeight() / 2f;
+        float distance = (float) Math.sqrt(dx * dx + dy * dy) - view.getWidth() * view.getScaleX() / 2;
+        float viewportRadius = (float) Math.sqrt(getWidth() * getWidth() + getHeight() * getHeight()) / 2;
+        return mQualityController.shouldUpdate(index, distance, viewportRadius);
+    }
+
     /**
      * 动画移除view
      *
      * @param view
      */
     private void animRemoveView(final View view) {
+        //降级时只保留透明度
+        float scale = getQualityLevel() < QualityController.LEVEL_REDUCED ? 0 : 1;
         view.animate()
 //                .translationY(viewDisappearY).translationX(viewDisappearX)
-                .alpha(0).scaleX(0).scaleY(0).setDuration(REMOVE_DELAY_MILLIS).start();
+                .alpha(0).scaleX(scale).scaleY(scale).setDuration(REMOVE_DELAY_MILLIS)
+                .setListener(new AnimatorListenerAdapter() {
+                    @Override
+                    public void onAnimationEnd(Animator animation) {
+                        if (view.getParent() == WaterView.this) {
+                            removeView(view);
+                            recycleView(view);
+                        }
+                    }
+                }).start();
     }
 
     /**
-     * 开启水滴抖动动画
+     * 收取当前所有已成熟的水滴
      */
-    private void startAnimation() {
-        if (isOpenAnimtion) {
-            return;
-        }
-        mHandler.sendEmptyMessage(WHAT_ADD_PROGRESS);
-        isOpenAnimtion = true;
+    public WaterView collectAll() {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                List<Water> waters = new ArrayList<>(mViews.size());
+                for (View view : mViews) {
+                    waters.add((Water) view.getTag());
+                }
+                collectWaters(waters);
+            }
+        });
+        return this;
     }
 
-    private void startAssetTextAnimStep1(String number, View view) {
-        final TextView textView = new TextView(getContext());
-        textView.setText("+" + number);
-        textView.setTextColor(Color.WHITE);
-        textView.setTextSize(16);
-        textView.setGravity(Gravity.CENTER);
-        idLlAddAssetsAnim = view.findViewById(R.id.id_ll_add_assets_anim);
-        idLlAddAssetsAnim.addView(textView);
-        startAssetTextAnimStep2(textView);
+    /**
+     * 批量收取水滴，按水滴id匹配当前显示且已成熟的水滴
+     * ->所有水滴共用一个消失动画
+     * ->只回调一次WaterCollectListener，不回调WaterClickListener
+     *
+     * @param waters
+     */
+    public WaterView collect(final Collection<Water> waters) {
+        if (waters == null || waters.isEmpty()) {
+            return this;
+        }
+        final List<Water> snapshot = new ArrayList<>(waters);
+        post(new Runnable() {
+            @Override
+            public void run() {
+                collectWaters(snapshot);
+            }
+        });
+        return this;
     }
 
-    private void startAssetTextAnimStep2(final TextView textView) {
-        textView.animate().translationY(-100).alpha(0).setDuration(2000).setListener(new Animator.AnimatorListener() {
+    private void collectWaters(Collection<Water> waters) {
+        Set<Long> keys = new HashSet<>();
+        for (Water water : waters) {
+            keys.add(WaterDiff.keyOf(water));
+        }
+        List<View> views = new ArrayList<>();
+        List<Water> collected = new ArrayList<>();
+        int total = 0;
+        for (int i = mViews.size() - 1; i >= 0; i--) {
+            View view = mViews.get(i);
+            Water water = (Water) view.getTag();
+            if (!keys.contains(WaterDiff.keyOf(water)) || !isRipe(view)) {
+                continue;
+            }
+            mViews.remove(i);
+            mMotion.remove(i);
+            releaseLocation(view);
+            views.add(view);
+            collected.add(0, water);
+            total += water.getNumber();
+        }
+        if (views.isEmpty()) {
+            return;
+        }
+        mTotalConsumeWater += total;
+        if (mWaterCollectListener != null) {
+            mWaterCollectListener.onWatersCollected(total, collected);
+        }
+        animRemoveViews(views);
+    }
 
+    /**
+     * 一个动画同时移除多个view
+     *
+     * @param views
+     */
+    private void animRemoveViews(final List<View> views) {
+        for (View view : views) {
+            view.animate().cancel();
+        }
+        //降级时只保留透明度
+        final boolean scale = getQualityLevel() < QualityController.LEVEL_REDUCED;
+        ValueAnimator animator = ValueAnimator.ofFloat(0, 1);
+        animator.setDuration(REMOVE_DELAY_MILLIS);
+        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
             @Override
-            public void onAnimationStart(Animator animation) {
+            public void onAnimationUpdate(ValueAnimator animation) {
+                float value = 1 - animation.getAnimatedFraction();
+                for (int i = 0; i < views.size(); i++) {
+                    View view = views.get(i);
+                    view.setAlpha(value);
+                    if (scale) {
+                        view.setScaleX(value);
+                        view.setScaleY(value);
+                    }
+                }
             }
-
+        });
+        animator.addListener(new AnimatorListenerAdapter() {
             @Override
             public void onAnimationEnd(Animator animation) {
-                idLlAddAssetsAnim.removeView(textView);
+                mRemoveAnimators.remove(animation);
+                for (View view : views) {
+                    if (view.getParent() == WaterView.this) {
+                        removeView(view);
+                        recycleView(view);
+                    }
+                }
             }
+        });
+        mRemoveAnimators.add(animator);
+        animator.start();
+    }
 
-            @Override
-            public void onAnimationCancel(Animator animation) {
-            }
+    /**
+     * 回收已经移除的水滴view
+     *
+     * @param view
+     */
+    private void recycleView(View view) {
+        ViewGroup addAssetsAnim = view.findViewById(R.id.id_ll_add_assets_anim);
+        if (addAssetsAnim != null) {
+            mFloatingTextPool.recycleAll(addAssetsAnim);
+        }
+        if (mLayerCache != null) {
+            mLayerCache.detachLayer(view);
+        }
+        mDropViewPool.release(view);
+    }
 
-            @Override
-            public void onAnimationRepeat(Animator animation) {
-            }
-        }).setInterpolator(new DecelerateInterpolator()).start();
+    /**
+     * 开启水滴抖动动画
+     */
+    private void startAnimation() {
+        if (isOpenAnimtion) {
+            return;
+        }
+        isOpenAnimtion = true;
+        updateFrames();
+    }
+
+    /**
+     * 显示收取数值的飘字
+     *
+     * @param view   被点击的水滴view
+     * @param number 收取的数值
+     */
+    private void showCollectText(View view, int number) {
+        ViewGroup addAssetsAnim = view.findViewById(R.id.id_ll_add_assets_anim);
+        if (addAssetsAnim != null) {
+            mFloatingTextPool.show(addAssetsAnim, number);
+        }
     }
 
     /**
      * 销毁
      */
     private void onDestroy() {
+        mPreparer.cancel();
+        mPendingState = null;
+        mInbox.take();
         isCancelAnimtion = true;
-        mHandler.removeCallbacksAndMessages(this);
+        stopFrames();
+        removeCallbacks(mRipeTick);
+        releaseAnimations();
+    }
+
+    /**
+     * 绑定宿主Activity/Fragment的生命周期：onPause时暂停，onResume时恢复，onDestroy时释放
+     *
+     * @param owner
+     */
+    public WaterView bindLifecycle(@NonNull LifecycleOwner owner) {
+        mHostLifecycle.bind(owner);
+        return this;
     }
 
     /**
@@ -412,6 +1075,179 @@ public class WaterView extends FrameLayout {
         return this;
     }
 
+    /**
+     * 为一种水滴类型(Water.getType)设置样式，对之后绑定的水滴生效
+     * ->所有水滴使用同一个布局并从回收池复用，只按类型设置背景、文字、图标，不再inflate不同的布局
+     *
+     * @param style 为null时该类型使用水滴布局本身的样式
+     */
+    public WaterView setDropStyle(int type, @Nullable DropStyle style) {
+        if (style == null) {
+            mDropStyles.remove(type);
+        } else {
+            style.resolve(getContext(), Math.round(mDropRadius * 2));
+            mDropStyles.put(type, style);
+        }
+        return this;
+    }
+
+    /**
+     * 使用弹簧浮动(SpringMotion)代替默认的匀速往返，浮动更平滑且与帧率无关
+     * ->已有的水滴从初始位置重新开始浮动
+     */
+    public WaterView setSpringMotion(boolean enabled) {
+        if (enabled == mMotion instanceof SpringMotion) {
+            return this;
+        }
+        replaceMotion(enabled);
+        return this;
+    }
+
+    /**
+     * 设置随机数的种子，用于复现布局和运动轨迹(如性能测试)，需要在setWaters之前调用
+     *
+     * @param seed
+     */
+    public WaterView setSeed(long seed) {
+        return setRandom(new Random(seed));
+    }
+
+    /**
+     * 设置位置分配、运动方向和速度使用的Random，需要在setWaters之前调用
+     * ->可以传入Random的子类替换随机数的生成方式
+     * ->后台计算位置时由它生成副本的种子，结果与在UI线程计算相同
+     * ->已经显示水滴时只影响之后分配的位置，已有水滴的位置和浮动不变
+     *
+     * @param random
+     */
+    public WaterView setRandom(@NonNull Random random) {
+        mRandom = random;
+        mDropPlacer.setRandom(random);
+        //已经显示的水滴继续当前的浮动，不重新开始
+        if (mMotion.size() == 0) {
+            replaceMotion(mMotion instanceof SpringMotion);
+        }
+        return this;
+    }
+
+    /**
+     * 按当前的Random重新创建运动，已有水滴从初始位置重新开始运动
+     */
+    private void replaceMotion(boolean spring) {
+        DropMotion motion = spring ? new SpringMotion(BounceMotion.CHANGE_RANGE, mRandom)
+                : new BounceMotion(mSpds, PROGRESS_DELAY_MILLIS, mRandom);
+        for (View view : mViews) {
+            int id = (Integer) view.getTag(R.string.placement_id);
+            float baseY = mDropPlacer.getY(id) - mDropRadius - mDropTop;
+            view.setY(baseY);
+            motion.add(baseY, mRandom.nextBoolean());
+        }
+        mMotion = motion;
+    }
+
+    /**
+     * 设置水滴view回收池，同一界面内的多个水滴控件可以共用一个
+     *
+     * @param dropViewPool
+     */
+    public WaterView setDropViewPool(@NonNull DropViewPool dropViewPool) {
+        this.mDropViewPool = dropViewPool;
+        return this;
+    }
+
+    /**
+     * 设置水滴静态内容缓存，之后添加的水滴开启硬件层，每帧只更新位移
+     *
+     * @param layerCache 为null时不开启
+     */
+    public WaterView setDropLayerCache(@Nullable DropLayerCache layerCache) {
+        this.mLayerCache = layerCache;
+        return this;
+    }
+
+    /**
+     * 设置计算水滴位置和文字的线程，默认所有水滴控件共用一个后台线程
+     *
+     * @param executor 为null时使用默认线程
+     */
+    public WaterView setPrepareExecutor(@Nullable Executor executor) {
+        mPreparer.setExecutor(executor);
+        return this;
+    }
+
+    /**
+     * 添加水滴不能放置的区域(如头像)，对之后添加的水滴生效
+     */
+    public WaterView addExclusionZone(float left, float top, float right, float bottom) {
+        mDropPlacer.addExclusionRect(left, top, right, bottom);
+        return this;
+    }
+
+    /**
+     * 清除水滴不能放置的区域
+     */
+    public WaterView clearExclusionZones() {
+        mDropPlacer.clearExclusions();
+        return this;
+    }
+
+    /**
+     * 设置批量收取监听
+     *
+     * @param waterCollectListener
+     */
+    public WaterView setCollectCallBack(WaterCollectListener waterCollectListener) {
+        mWaterCollectListener = waterCollectListener;
+        return this;
+    }
+
+    /**
+     * 设置帧数据监听，用于上报帧耗时、丢帧、水滴数等，为null时关闭采集
+     *
+     * @param listener
+     */
+    public WaterView setFrameMetricsListener(@Nullable FrameMetricsListener listener) {
+        if (mMetricsRecorder != null) {
+            mMetricsRecorder.release();
+            mMetricsRecorder = null;
+        }
+        if (listener != null) {
+            mMetricsRecorder = new FrameMetricsRecorder(getContext(), listener);
+        }
+        return this;
+    }
+
+    /**
+     * 设置动画质量控制，帧间隔变长时逐级降低动画效果，为null时始终使用全部效果
+     *
+     * @param qualityController 阈值等在QualityController中设置
+     */
+    public WaterView setQualityController(@Nullable QualityController qualityController) {
+        this.mQualityController = qualityController;
+        return this;
+    }
+
+    private int getQualityLevel() {
+        return mQualityController == null ? QualityController.LEVEL_FULL : mQualityController.getLevel();
+    }
+
+    /**
+     * 获取最近一帧的数据
+     *
+     * @return 未设置帧数据监听时返回null
+     */
+    @Nullable
+    public ForestFrameMetrics getFrameMetrics() {
+        return mMetricsRecorder == null ? null : mMetricsRecorder.getMetrics();
+    }
+
+    /**
+     * 获取已经收取的水滴总数值
+     */
+    public int getTotalConsumeWater() {
+        return mTotalConsumeWater;
+    }
+
     /**
      * 设置水滴消失的位置
      */
@@ -0,0 +1,102 @@
+package com.ltb.laer.waterview.engine;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * BounceMotion的本地单元测试
+ */
+public class BounceMotionTest {
+
+    private static final float[] SPDS = {0.5f, 0.3f, 0.2f, 0.1f};
+    private static final long FRAME_NANOS = 16666667L;
+
+    private BounceMotion createMotion(int count) {
+        BounceMotion motion = new BounceMotion(SPDS, 12, new Random(1));
+        for (int i = 0; i < count; i++) {
+            motion.add(i * 20, i % 2 == 0);
+        }
+        return motion;
+    }
+
+    @Test
+    public void step_staysInRange() throws Exception {
+        BounceMotion motion = createMotion(50);
+        for (int frame = 0; frame < 10000; frame++) {
+            motion.step(FRAME_NANOS);
+            for (int i = 0; i < motion.size(); i++) {
+                assertTrue(Math.abs(motion.getY(i) - motion.getBaseY(i)) <= BounceMotion.CHANGE_RANGE);
+            }
+        }
+    }
+
+    @Test
+    public void step_movesEveryDrop() throws Exception {
+        BounceMotion motion = createMotion(20);
+        motion.step(FRAME_NANOS);
+        for (int i = 0; i < motion.size(); i++) {
+            assertTrue(motion.getY(i) != motion.getBaseY(i));
+        }
+    }
+
+    @Test
+    public void step_ignoresNonPositiveDelta() throws Exception {
+        BounceMotion motion = createMotion(5);
+        motion.step(0);
+        motion.step(-FRAME_NANOS);
+        for (int i = 0; i < motion.size(); i++) {
+            assertEquals(motion.getBaseY(i), motion.getY(i), 0);
+        }
+    }
+
+    @Test
+    public void step_clampsLongPause() throws Exception {
+        BounceMotion paused = createMotion(10);
+        BounceMotion clamped = createMotion(10);
+        paused.step(60_000_000_000L);
+        clamped.step(100_000_000L);
+        for (int i = 0; i < paused.size(); i++) {
+            assertEquals(clamped.getY(i), paused.getY(i), 0);
+        }
+    }
+
+    @Test
+    public void remove_keepsOrder() throws Exception {
+        BounceMotion motion = createMotion(5);
+        motion.remove(1);
+        assertEquals(4, motion.size());
+        assertEquals(0, motion.getBaseY(0), 0);
+        assertEquals(40, motion.getBaseY(1), 0);
+        assertEquals(80, motion.getBaseY(3), 0);
+    }
+
+    @Test
+    public void step_allocatesNothing() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        BounceMotion motion = createMotion(80);
+        //预热，让JIT完成编译
+        for (int frame = 0; frame < 20000; frame++) {
+            motion.step(FRAME_NANOS);
+        }
+        long threadId = Thread.currentThread().getId();
+        int frames = 10000;
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int frame = 0; frame < frames; frame++) {
+            motion.step(FRAME_NANOS);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        //只允许测量调用本身的少量开销，不能随帧数增长
+        assertTrue("allocated " + allocated + " bytes in " + frames + " frames", allocated < frames);
+    }
+}
@@ -0,0 +1,236 @@
+package com.ltb.laer.waterview.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * DropPlacer的本地单元测试，包含分配耗时的基准
+ */
+public class DropPlacerTest {
+
+    private static final float WIDTH = 1080;
+    private static final float HEIGHT = 900;
+    private static final float RADIUS = 20;
+
+    private int[] placeAll(DropPlacer placer, int count) {
+        placer.reset(0, 0, WIDTH, HEIGHT, RADIUS * 2);
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = placer.place(RADIUS);
+        }
+        return ids;
+    }
+
+    @Test
+    public void place_noOverlapAndInBounds() throws Exception {
+        DropPlacer placer = new DropPlacer(new Random(7));
+        int[] ids = placeAll(placer, 300);
+        for (int i = 0; i < ids.length; i++) {
+            assertTrue(ids[i] >= 0);
+            float x = placer.getX(ids[i]);
+            float y = placer.getY(ids[i]);
+            assertTrue(x >= RADIUS && x <= WIDTH - RADIUS);
+            assertTrue(y >= RADIUS && y <= HEIGHT - RADIUS);
+            for (int j = 0; j < i; j++) {
+                float dx = x - placer.getX(ids[j]);
+                float dy = y - placer.getY(ids[j]);
+                assertTrue(Math.sqrt(dx * dx + dy * dy) >= RADIUS * 2 - 0.01f);
+            }
+        }
+    }
+
+    @Test
+    public void place_avoidsExclusions() throws Exception {
+        DropPlacer placer = new DropPlacer(new Random(7));
+        placer.addExclusionRect(400, 300, 680, 900);
+        placer.addExclusionCircle(100, 100, 80);
+        int[] ids = placeAll(placer, 200);
+        for (int id : ids) {
+            float x = placer.getX(id);
+            float y = placer.getY(id);
+            float nx = Math.max(400, Math.min(x, 680));
+            float ny = Math.max(300, Math.min(y, 900));
+            assertTrue(Math.sqrt((x - nx) * (x - nx) + (y - ny) * (y - ny)) >= RADIUS - 0.01f);
+            float dx = x - 100, dy = y - 100;
+            assertTrue(Math.sqrt(dx * dx + dy * dy) >= 80 + RADIUS - 0.01f);
+        }
+    }
+
+    @Test
+    public void place_returnsMinusOneWhenFull() throws Exception {
+        DropPlacer placer = new DropPlacer(new Random(7));
+        placer.reset(0, 0, 100, 100, 100);
+        assertTrue(placer.place(40) >= 0);
+        assertEquals(-1, placer.place(40));
+    }
+
+    @Test
+    public void remove_freesSpace() throws Exception {
+        DropPlacer placer = new DropPlacer(new Random(7));
+        placer.reset(0, 0, 100, 100, 100);
+        int id = placer.place(40);
+        placer.remove(id);
+        assertTrue(placer.place(40) >= 0);
+        assertEquals(1, placer.size());
+    }
+
+    @Test
+    public void copy_placesAroundOriginalWithoutChangingIt() throws Exception {
+        DropPlacer placer = new DropPlacer(new Random(7));
+        int[] ids = placeAll(placer, 100);
+        placer.addExclusionRect(0, 0, WIDTH, 100);
+        int modCount = placer.getModCount();
+
+        DropPlacer copy = placer.copy(new Random(11));
+        for (int i = 0; i < 100; i++) {
+            int id = copy.place(RADIUS);
+            assertTrue(id >= 0);
+            float x = copy.getX(id), y = copy.getY(id);
+            assertTrue(y >= 100 + RADIUS - 0.01f);
+            for (int original : ids) {
+                float dx = x - placer.getX(original), dy = y - placer.getY(original);
+                assertTrue(Math.sqrt(dx * dx + dy * dy) >= RADIUS * 2 - 0.01f);
+            }
+        }
+        assertEquals(100, placer.size());
+        assertEquals(200, copy.size());
+        assertEquals(modCount, placer.getModCount());
+    }
+
+    @Test
+    public void modCount_changesOnAddAndResetOnly() throws Exception {
+        DropPlacer placer = new DropPlacer(new Random(7));
+        placer.reset(0, 0, WIDTH, HEIGHT, RADIUS * 2);
+        int modCount = placer.getModCount();
+        int id = placer.place(RADIUS);
+        assertTrue(placer.getModCount() != modCount);
+
+        modCount = placer.getModCount();
+        placer.remove(id);
+        assertEquals(modCount, placer.getModCount());
+
+        placer.occupy(100, 100, RADIUS);
+        assertTrue(placer.getModCount() != modCount);
+        modCount = placer.getModCount();
+        placer.addExclusionCircle(500, 500, 50);
+        assertTrue(placer.getModCount() != modCount);
+        modCount = placer.getModCount();
+        placer.reset(0, 0, WIDTH, HEIGHT, RADIUS * 2);
+        assertTrue(placer.getModCount() != modCount);
+    }
+
+    @Test
+    public void modCount_changesOnClearExclusions() throws Exception {
+        DropPlacer placer = new DropPlacer(new Random(7));
+        placer.reset(0, 0, WIDTH, HEIGHT, RADIUS * 2);
+        placer.addExclusionRect(0, 0, WIDTH, 100);
+        int modCount = placer.getModCount();
+        //副本按禁止区域分配的位置需要重新计算
+        placer.clearExclusions();
+        assertTrue(placer.getModCount() != modCount);
+    }
+
+    @Test
+    public void query_returnsExactlyIntersectingDrops() throws Exception {
+        DropPlacer placer = new DropPlacer(new Random(7));
+        int[] ids = placeAll(placer, 300);
+        float left = 200, top = 150, right = 700, bottom = 500;
+        int[] out = new int[ids.length];
+        int found = placer.query(left, top, right, bottom, out);
+        boolean[] hit = new boolean[ids.length];
+        for (int i = 0; i < found; i++) {
+            hit[out[i]] = true;
+        }
+        int expected = 0;
+        for (int id : ids) {
+            float x = placer.getX(id), y = placer.getY(id);
+            boolean intersects = x + RADIUS >= left && x - RADIUS <= right && y + RADIUS >= top && y - RADIUS <= bottom;
+            assertEquals(intersects, hit[id]);
+            if (intersects) {
+                expected++;
+            }
+        }
+        assertEquals(expected, found);
+        assertTrue(found > 0 && found < ids.length);
+    }
+
+    @Test
+    public void findAt_usesCurrentCenterAndRealRadius() throws Exception {
+        final DropPlacer placer = new DropPlacer(new Random(7));
+        placer.reset(0, 0, WIDTH, HEIGHT, 60);
+        //占用半径包含10像素的浮动范围，实际半径20
+        final int id = placer.occupy(100, 100, 30);
+        final float[] offset = {0};
+        DropPlacer.Locator locator = new DropPlacer.Locator() {
+            @Override
+            public boolean locate(int dropId, float[] center) {
+                center[0] = placer.getX(dropId);
+                center[1] = placer.getY(dropId) + offset[0];
+                return true;
+            }
+        };
+        assertEquals(id, placer.findAt(100, 119, RADIUS, locator));
+        //在占用区域内但不在水滴的圆内
+        assertEquals(-1, placer.findAt(100, 125, RADIUS, locator));
+        assertEquals(-1, placer.findAt(118, 118, RADIUS, locator));
+        //水滴向下浮动后命中
+        offset[0] = 10;
+        assertEquals(id, placer.findAt(100, 125, RADIUS, locator));
+        assertEquals(-1, placer.findAt(100, 85, RADIUS, locator));
+    }
+
+    @Test
+    public void findAt_picksNearestWhenDropsOverlap() throws Exception {
+        final DropPlacer placer = new DropPlacer(new Random(7));
+        placer.reset(0, 0, WIDTH, HEIGHT, RADIUS * 2);
+        int left = placer.occupy(100, 100, RADIUS);
+        int right = placer.occupy(130, 100, RADIUS);
+        final boolean[] hidden = new boolean[2];
+        DropPlacer.Locator locator = new DropPlacer.Locator() {
+            @Override
+            public boolean locate(int id, float[] center) {
+                if (hidden[id]) {
+                    return false;
+                }
+                center[0] = placer.getX(id);
+                center[1] = placer.getY(id);
+                return true;
+            }
+        };
+        assertEquals(left, placer.findAt(112, 100, RADIUS, locator));
+        assertEquals(right, placer.findAt(118, 100, RADIUS, locator));
+        //不能点击的水滴(如正在消失)被跳过
+        hidden[right] = true;
+        assertEquals(left, placer.findAt(118, 100, RADIUS, locator));
+    }
+
+    @Test
+    public void findAt_matchesLinearScan() throws Exception {
+        final DropPlacer placer = new DropPlacer(new Random(7));
+        int[] ids = placeAll(placer, 300);
+        DropPlacer.Locator locator = new DropPlacer.Locator() {
+            @Override
+            public boolean locate(int id, float[] center) {
+                center[0] = placer.getX(id);
+                center[1] = placer.getY(id);
+                return true;
+            }
+        };
+        Random random = new Random(11);
+        for (int i = 0; i < 2000; i++) {
+            float x = random.nextFloat() * WIDTH, y = random.nextFloat() * HEIGHT;
+            int expected = -1;
+            for (int id : ids) {
+                float dx = placer.getX(id) - x, dy = placer.getY(id) - y;
+                if (dx * dx + dy * dy <= RADIUS * RADIUS) {
+                    expected = id;
+                }
+            }
+            assertEquals(expected, placer.findAt(x, y, RADIUS, locator));
+        }
+    }
+}
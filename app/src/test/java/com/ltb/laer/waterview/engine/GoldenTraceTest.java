@@ -0,0 +1,102 @@
+package com.ltb.laer.waterview.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * 固定种子下的布局和浮动轨迹(golden trace)
+ * ->与控件相同的方式使用一个Random：先分配位置，再按随机方向加入浮动，之后按固定帧间隔推进
+ * ->轨迹按0.01像素取整后计算CRC32，与记录的值比较；改动位置分配或运动算法导致轨迹变化时需要确认后更新记录值
+ */
+public class GoldenTraceTest {
+
+    private static final long SEED = 20180109L;
+    private static final int DROPS = 40;
+    private static final int FRAMES = 300;
+    private static final long FRAME_NANOS = 16666667L;
+    private static final float RADIUS = 45;
+
+    private static final long GOLDEN_BOUNCE = 3136552179L;
+    private static final long GOLDEN_WAVE = 670728528L;
+    private static final long GOLDEN_SPRING = 2755080997L;
+
+    private interface MotionFactory {
+        DropMotion create(Random random);
+    }
+
+    private static final MotionFactory BOUNCE = new MotionFactory() {
+        @Override
+        public DropMotion create(Random random) {
+            return new BounceMotion(new float[]{0.5f, 0.3f, 0.2f, 0.1f}, 12, random);
+        }
+    };
+
+    private static final MotionFactory WAVE = new MotionFactory() {
+        @Override
+        public DropMotion create(Random random) {
+            return new WaveMotion(new int[]{1500, 1600, 1800, 2000, 2300, 2500}, 10, random);
+        }
+    };
+
+    private static final MotionFactory SPRING = new MotionFactory() {
+        @Override
+        public DropMotion create(Random random) {
+            return new SpringMotion(10, random);
+        }
+    };
+
+    /**
+     * 分配位置并推进浮动，返回整个轨迹的CRC32
+     */
+    private static long trace(long seed, MotionFactory factory) {
+        Random random = new Random(seed);
+        DropPlacer placer = new DropPlacer(random);
+        placer.reset(0, 60, 1080, 1600, RADIUS * 2);
+        placer.addExclusionRect(400, 60, 680, 300);
+        DropMotion motion = factory.create(random);
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < DROPS; i++) {
+            int id = placer.place(RADIUS);
+            float x = id < 0 ? -1 : placer.getX(id);
+            float y = id < 0 ? -1 : placer.getY(id);
+            update(crc, x);
+            update(crc, y);
+            motion.add(y, random.nextBoolean());
+        }
+        for (int frame = 0; frame < FRAMES; frame++) {
+            motion.step(FRAME_NANOS);
+            for (int i = 0; i < motion.size(); i++) {
+                update(crc, motion.getY(i));
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void update(CRC32 crc, float value) {
+        int quantized = Math.round(value * 100);
+        crc.update(quantized >>> 24);
+        crc.update(quantized >>> 16);
+        crc.update(quantized >>> 8);
+        crc.update(quantized);
+    }
+
+    @Test
+    public void sameSeed_sameTrace() throws Exception {
+        for (MotionFactory factory : new MotionFactory[]{BOUNCE, WAVE, SPRING}) {
+            assertEquals(trace(SEED, factory), trace(SEED, factory));
+            assertNotEquals(trace(SEED, factory), trace(SEED + 1, factory));
+        }
+    }
+
+    @Test
+    public void trace_matchesGolden() throws Exception {
+        assertEquals(GOLDEN_BOUNCE, trace(SEED, BOUNCE));
+        assertEquals(GOLDEN_WAVE, trace(SEED, WAVE));
+        assertEquals(GOLDEN_SPRING, trace(SEED, SPRING));
+    }
+}
@@ -0,0 +1,101 @@
+package com.ltb.laer.waterview.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * QualityController的本地单元测试
+ */
+public class QualityControllerTest {
+
+    private static final long FRAME_NANOS = 16_666_667L;
+
+    private long time;
+
+    /**
+     * 以固定间隔推进若干帧
+     */
+    private int run(QualityController controller, int frames, long intervalNanos) {
+        int level = controller.getLevel();
+        for (int i = 0; i < frames; i++) {
+            time += intervalNanos;
+            level = controller.onFrame(time);
+        }
+        return level;
+    }
+
+    @Test
+    public void smoothFrames_keepFullQuality() throws Exception {
+        QualityController controller = new QualityController();
+        assertEquals(QualityController.LEVEL_FULL, run(controller, 600, FRAME_NANOS));
+    }
+
+    @Test
+    public void slowFrames_stepDownOneLevelPerWindow() throws Exception {
+        QualityController controller = new QualityController().setWindow(30, 3);
+        run(controller, 1, FRAME_NANOS);
+        assertEquals(QualityController.LEVEL_REDUCED, run(controller, 30, FRAME_NANOS * 2));
+        assertEquals(QualityController.LEVEL_LOW, run(controller, 30, FRAME_NANOS * 2));
+        assertEquals(QualityController.LEVEL_FROZEN, run(controller, 30, FRAME_NANOS * 2));
+        assertEquals(QualityController.LEVEL_FROZEN, run(controller, 300, FRAME_NANOS * 2));
+    }
+
+    @Test
+    public void headroom_stepsBackUpAfterConsecutiveGoodWindows() throws Exception {
+        QualityController controller = new QualityController().setWindow(30, 3);
+        run(controller, 91, FRAME_NANOS * 2);
+        assertEquals(QualityController.LEVEL_FROZEN, controller.getLevel());
+        //两个流畅窗口还不够
+        assertEquals(QualityController.LEVEL_FROZEN, run(controller, 60, FRAME_NANOS));
+        assertEquals(QualityController.LEVEL_LOW, run(controller, 30, FRAME_NANOS));
+        assertEquals(QualityController.LEVEL_FULL, run(controller, 180, FRAME_NANOS));
+    }
+
+    @Test
+    public void thresholdsAndMaxLevel_areConfigurable() throws Exception {
+        QualityController controller = new QualityController()
+                .setThresholds(3f, 1.1f)
+                .setMaxLevel(QualityController.LEVEL_LOW);
+        //2倍间隔低于降级阈值
+        assertEquals(QualityController.LEVEL_FULL, run(controller, 300, FRAME_NANOS * 2));
+        assertEquals(QualityController.LEVEL_LOW, run(controller, 600, FRAME_NANOS * 4));
+    }
+
+    @Test
+    public void reset_ignoresPause() throws Exception {
+        QualityController controller = new QualityController();
+        run(controller, 20, FRAME_NANOS);
+        controller.reset();
+        time += 5_000_000_000L;
+        assertEquals(QualityController.LEVEL_FULL, run(controller, 60, FRAME_NANOS));
+    }
+
+    @Test
+    public void shouldUpdate_thinsFarDropsFirstAtLowLevel() throws Exception {
+        final float radius = 1000;
+        QualityController controller = new QualityController().setWindow(1, 1);
+        run(controller, 1, FRAME_NANOS);
+        assertTrue(controller.shouldUpdate(0, 2000, radius) && controller.shouldUpdate(1, 2000, radius));
+        run(controller, 2, FRAME_NANOS * 2);
+        assertEquals(QualityController.LEVEL_LOW, controller.getLevel());
+        //介于升降级阈值之间，等级不变；统计8帧内各距离的更新次数
+        int near = 0, visible = 0, offscreen = 0;
+        for (int frame = 0; frame < 8; frame++) {
+            run(controller, 1, (long) (FRAME_NANOS * 1.3));
+            assertEquals(QualityController.LEVEL_LOW, controller.getLevel());
+            near += controller.shouldUpdate(0, 300, radius) ? 1 : 0;
+            visible += controller.shouldUpdate(0, 800, radius) ? 1 : 0;
+            offscreen += controller.shouldUpdate(0, 1500, radius) ? 1 : 0;
+            //相邻的水滴错开更新
+            assertTrue(controller.shouldUpdate(0, 800, radius) != controller.shouldUpdate(1, 800, radius));
+        }
+        assertEquals(8, near);
+        assertEquals(4, visible);
+        assertEquals(2, offscreen);
+        run(controller, 1, FRAME_NANOS * 2);
+        assertFalse(controller.shouldUpdate(0, 0, radius) || controller.shouldUpdate(1, 0, radius));
+    }
+}
@@ -0,0 +1,80 @@
+package com.ltb.laer.waterview.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * RipeSchedule的本地单元测试
+ */
+public class RipeScheduleTest {
+
+    @Test
+    public void empty_neverWakes() throws Exception {
+        RipeSchedule schedule = new RipeSchedule();
+        assertEquals(RipeSchedule.NEVER, schedule.nextWakeTime(12_345));
+        assertEquals(RipeSchedule.NEVER, schedule.peek());
+        assertEquals(0, schedule.advance(Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    public void advance_popsDueTimesInOrder() throws Exception {
+        RipeSchedule schedule = new RipeSchedule();
+        Random random = new Random(7);
+        long[] times = new long[1000];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = 1_000_000 + random.nextInt(100_000);
+            schedule.add(times[i]);
+        }
+        Arrays.sort(times);
+        int popped = 0;
+        for (long now = 1_000_000; now <= 1_100_000; now += 777) {
+            int expected = 0;
+            while (popped + expected < times.length && times[popped + expected] <= now) {
+                expected++;
+            }
+            assertEquals(expected, schedule.advance(now));
+            popped += expected;
+            long next = popped < times.length ? times[popped] : RipeSchedule.NEVER;
+            assertEquals(next, schedule.peek());
+        }
+        assertEquals(times.length - popped, schedule.size());
+    }
+
+    @Test
+    public void nextWakeTime_isNextSecondOrRipeTime() throws Exception {
+        RipeSchedule schedule = new RipeSchedule();
+        schedule.add(10_500);
+        //倒计时在整秒时变化
+        assertEquals(3_000, schedule.nextWakeTime(2_001));
+        assertEquals(4_000, schedule.nextWakeTime(3_000));
+        //成熟早于下一个整秒
+        assertEquals(10_500, schedule.nextWakeTime(10_200));
+        schedule.advance(10_500);
+        assertEquals(RipeSchedule.NEVER, schedule.nextWakeTime(10_500));
+    }
+
+    @Test
+    public void countdownSeconds_changesOnlyOnWholeSeconds() throws Exception {
+        long ripeTime = 65_300;
+        assertEquals(0, RipeSchedule.countdownSeconds(ripeTime, ripeTime));
+        assertEquals(1, RipeSchedule.countdownSeconds(ripeTime, ripeTime - 1));
+        assertEquals(65, RipeSchedule.countdownSeconds(ripeTime, 0));
+        assertEquals(65, RipeSchedule.countdownSeconds(ripeTime, 999));
+        assertEquals(64, RipeSchedule.countdownSeconds(ripeTime, 1_000));
+        long last = RipeSchedule.countdownSeconds(ripeTime, 0);
+        for (long now = 1; now < ripeTime; now++) {
+            long seconds = RipeSchedule.countdownSeconds(ripeTime, now);
+            if (seconds != last) {
+                assertEquals(0, now % 1000);
+                assertEquals(last - 1, seconds);
+            }
+            //与实际剩余时间相差不到1秒
+            assertEquals((ripeTime - now) / 1000.0, seconds, 1.0);
+            last = seconds;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.ltb.laer.waterview.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SpringMotion的本地单元测试，每帧耗时的基准见benchmark模块的DropMotionBenchmark
+ */
+public class SpringMotionTest {
+
+    private static final long STEP = SpringMotion.FIXED_STEP_NANOS;
+    private static final float RANGE = 10;
+
+    private SpringMotion createMotion(int count) {
+        SpringMotion motion = new SpringMotion(RANGE, new Random(1));
+        for (int i = 0; i < count; i++) {
+            motion.add(i * 20, i % 2 == 0);
+        }
+        return motion;
+    }
+
+    @Test
+    public void step_staysInRangeAndKeepsMoving() throws Exception {
+        SpringMotion motion = createMotion(100);
+        int[] crossings = new int[motion.size()];
+        float[] last = new float[motion.size()];
+        for (int frame = 0; frame < 60 * 20; frame++) {
+            motion.step(16666667L);
+            for (int i = 0; i < motion.size(); i++) {
+                float offset = motion.getY(i) - motion.getBaseY(i);
+                assertTrue(Math.abs(offset) <= RANGE + 0.001f);
+                if (last[i] * offset < 0) {
+                    crossings[i]++;
+                }
+                last[i] = offset;
+            }
+        }
+        //20秒内每个水滴都多次经过初始位置
+        for (int crossing : crossings) {
+            assertTrue("crossings " + crossing, crossing >= 8);
+        }
+    }
+
+    @Test
+    public void step_initialDirection() throws Exception {
+        SpringMotion motion = createMotion(2);
+        motion.step(STEP * 6);
+        assertTrue(motion.getY(0) > motion.getBaseY(0));
+        assertTrue(motion.getY(1) < motion.getBaseY(1));
+    }
+
+    @Test
+    public void step_independentOfFrameRate() throws Exception {
+        //30、60、120fps及不规则的帧间隔，在整步的时间点上位置完全一致
+        long[][] frames = {{STEP * 4}, {STEP * 2}, {STEP}, {STEP / 3, STEP * 2, STEP * 2 - STEP / 3}};
+        float[][] results = new float[frames.length][];
+        for (int f = 0; f < frames.length; f++) {
+            SpringMotion motion = createMotion(50);
+            long elapsed = 0;
+            int index = 0;
+            while (elapsed < STEP * 480) {
+                long dt = frames[f][index++ % frames[f].length];
+                motion.step(dt);
+                elapsed += dt;
+            }
+            results[f] = new float[motion.size()];
+            for (int i = 0; i < motion.size(); i++) {
+                results[f][i] = motion.getY(i);
+            }
+        }
+        for (int f = 1; f < frames.length; f++) {
+            assertTrue(Arrays.equals(results[0], results[f]));
+        }
+    }
+
+    @Test
+    public void step_interpolatesBetweenSteps() throws Exception {
+        SpringMotion motion = createMotion(1);
+        motion.step(STEP * 10);
+        float before = motion.getY(0);
+        SpringMotion next = createMotion(1);
+        next.step(STEP * 11);
+        float after = next.getY(0);
+        SpringMotion half = createMotion(1);
+        half.step(STEP * 10 + STEP / 2);
+        assertEquals((before + after) / 2, half.getY(0), 0.0001f);
+    }
+
+    @Test
+    public void remove_keepsOrder() throws Exception {
+        SpringMotion motion = createMotion(5);
+        motion.remove(1);
+        assertEquals(4, motion.size());
+        assertEquals(0, motion.getBaseY(0), 0);
+        assertEquals(40, motion.getBaseY(1), 0);
+        assertEquals(80, motion.getBaseY(3), 0);
+    }
+
+    @Test
+    public void restore_keepsPositionAndVelocity() throws Exception {
+        SpringMotion motion = createMotion(5);
+        for (int i = 0; i < 30; i++) {
+            motion.step(STEP);
+        }
+        float[] state = new float[motion.size() * motion.getStateSize()];
+        SpringMotion restored = new SpringMotion(RANGE, new Random(2));
+        for (int i = 0; i < motion.size(); i++) {
+            motion.save(i, state, i * motion.getStateSize());
+            restored.restore(state, i * motion.getStateSize());
+        }
+        //目标点至少保持72步，期间不使用随机数，轨迹完全相同
+        for (int step = 0; step < 40; step++) {
+            for (int i = 0; i < motion.size(); i++) {
+                assertEquals(motion.getY(i), restored.getY(i), 0);
+            }
+            motion.step(STEP);
+            restored.step(STEP);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.ltb.laer.waterview.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * WaveMotion的本地单元测试
+ */
+public class WaveMotionTest {
+
+    private static final int[] DURATIONS = {1500, 1600, 1800, 2000, 2300, 2500};
+    private static final long FRAME_NANOS = 16666667L;
+    private static final float RANGE = 10;
+
+    private WaveMotion createMotion(int count) {
+        WaveMotion motion = new WaveMotion(DURATIONS, RANGE, new Random(1));
+        for (int i = 0; i < count; i++) {
+            motion.add(i * 20, i % 2 == 0);
+        }
+        return motion;
+    }
+
+    @Test
+    public void waveOffset_keyFrames() throws Exception {
+        assertEquals(0, WaveMotion.waveOffset(0, RANGE), 0.0001f);
+        assertEquals(RANGE, WaveMotion.waveOffset(0.25f, RANGE), 0.0001f);
+        assertEquals(0, WaveMotion.waveOffset(0.5f, RANGE), 0.0001f);
+        assertEquals(-RANGE, WaveMotion.waveOffset(0.75f, RANGE), 0.0001f);
+        assertEquals(0, WaveMotion.waveOffset(0.9999f, RANGE), 0.01f);
+    }
+
+    @Test
+    public void step_staysInRange() throws Exception {
+        WaveMotion motion = createMotion(100);
+        for (int frame = 0; frame < 10000; frame++) {
+            motion.step(FRAME_NANOS);
+            for (int i = 0; i < motion.size(); i++) {
+                assertTrue(Math.abs(motion.getY(i) - motion.getBaseY(i)) <= RANGE + 0.001f);
+            }
+        }
+    }
+
+    @Test
+    public void step_initialDirection() throws Exception {
+        WaveMotion motion = createMotion(2);
+        motion.step(FRAME_NANOS);
+        assertTrue(motion.getY(0) > motion.getBaseY(0));
+        assertTrue(motion.getY(1) < motion.getBaseY(1));
+    }
+
+    @Test
+    public void step_returnsToBaseAfterFullPeriod() throws Exception {
+        WaveMotion motion = new WaveMotion(new int[]{2000}, RANGE, new Random(1));
+        motion.add(100, true);
+        //1000帧合并为一次长步进，结果应与逐帧推进一致
+        WaveMotion stepped = new WaveMotion(new int[]{2000}, RANGE, new Random(1));
+        stepped.add(100, true);
+        for (int frame = 0; frame < 120; frame++) {
+            stepped.step(FRAME_NANOS);
+        }
+        motion.step(120 * FRAME_NANOS);
+        assertEquals(stepped.getY(0), motion.getY(0), 0.01f);
+        //2000ms正好一个周期
+        motion.step(2000_000_000L - 120 * FRAME_NANOS);
+        assertEquals(100, motion.getY(0), 0.01f);
+    }
+
+    @Test
+    public void remove_keepsOrder() throws Exception {
+        WaveMotion motion = createMotion(5);
+        motion.step(FRAME_NANOS);
+        float last = motion.getY(4);
+        motion.remove(1);
+        assertEquals(4, motion.size());
+        assertEquals(40, motion.getBaseY(1), 0);
+        assertEquals(last, motion.getY(3), 0);
+    }
+
+    @Test
+    public void restore_continuesFromSavedPhase() throws Exception {
+        WaveMotion motion = createMotion(5);
+        motion.step(37 * FRAME_NANOS);
+        float[] state = new float[motion.size() * motion.getStateSize()];
+        WaveMotion restored = new WaveMotion(DURATIONS, RANGE, new Random(2));
+        for (int i = 0; i < motion.size(); i++) {
+            motion.save(i, state, i * motion.getStateSize());
+            assertEquals(i, restored.restore(state, i * motion.getStateSize()));
+        }
+        for (int frame = 0; frame < 200; frame++) {
+            for (int i = 0; i < motion.size(); i++) {
+                assertEquals(motion.getY(i), restored.getY(i), 0);
+                assertEquals(motion.getBaseY(i), restored.getBaseY(i), 0);
+            }
+            motion.step(FRAME_NANOS);
+            restored.step(FRAME_NANOS);
+        }
+    }
+}
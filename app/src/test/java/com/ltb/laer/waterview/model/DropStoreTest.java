@@ -0,0 +1,164 @@
+package com.ltb.laer.waterview.model;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * DropStore的本地单元测试，包含按数组布局计算的每个水滴占用内存
+ */
+public class DropStoreTest {
+
+    @Test
+    public void add_rejectsDuplicateIdAndGetRebuildsWater() throws Exception {
+        DropStore store = new DropStore();
+        Water water = new Water(42L, 7, "a", 3, 1000L);
+        int index = store.add(water);
+        assertEquals(-1, store.add(new Water(42L, 1, "b", 0, Water.RIPE)));
+        Water copy = store.get(index);
+        assertEquals(42L, copy.getId());
+        assertEquals(7, copy.getNumber());
+        assertEquals("a", copy.getName());
+        assertEquals(3, copy.getType());
+        assertEquals(1000L, copy.getRipeTime());
+    }
+
+    @Test
+    public void removeAt_movesLastAndKeepsLookups() throws Exception {
+        DropStore store = new DropStore();
+        for (int i = 0; i < 3; i++) {
+            int index = store.add(new Water(i, i, "item" + i, 0, Water.RIPE));
+            store.setSlot(index, 10 + i);
+            store.setPosition(index, i, i * 2);
+            store.setFlag(index, DropStore.FLAG_UP, i == 2);
+        }
+        store.removeAt(0);
+        assertEquals(2, store.size());
+        assertEquals(-1, store.indexOf(0));
+        assertEquals(-1, store.indexOfSlot(10));
+        int moved = store.indexOf(2);
+        assertEquals(0, moved);
+        assertEquals(moved, store.indexOfSlot(12));
+        assertEquals(4f, store.getY(moved), 0);
+        assertTrue(store.hasFlag(moved, DropStore.FLAG_UP));
+        assertFalse(store.hasFlag(moved, DropStore.FLAG_SHOWN));
+    }
+
+    @Test
+    public void removeAtOrdered_shiftsFollowingDrops() throws Exception {
+        DropStore store = new DropStore();
+        for (int i = 0; i < 5; i++) {
+            int index = store.add(new Water(i * 1024L, i, "item" + i, 0, Water.RIPE));
+            store.setSlot(index, 10 + i);
+            store.setPosition(index, i, i * 2);
+        }
+        store.removeAtOrdered(1);
+        assertEquals(4, store.size());
+        assertEquals(-1, store.indexOf(1024L));
+        assertEquals(-1, store.indexOfSlot(11));
+        long[] expected = {0, 2, 3, 4};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i] * 1024L, store.getId(i));
+            assertEquals(i, store.indexOf(expected[i] * 1024L));
+            assertEquals(i, store.indexOfSlot(10 + (int) expected[i]));
+            assertEquals(expected[i] * 2, store.getY(i), 0);
+        }
+        store.removeAtOrdered(3);
+        assertEquals(3, store.size());
+        assertEquals(-1, store.indexOf(4 * 1024L));
+        assertEquals(2, store.indexOf(3 * 1024L));
+    }
+
+    @Test
+    public void randomOperations_matchMap() throws Exception {
+        Random random = new Random(3);
+        DropStore store = new DropStore();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int step = 0; step < 20000; step++) {
+            //id取值范围小，保证经常命中已有的id和哈希冲突
+            long id = random.nextInt(500) * 1024L;
+            int index = store.indexOf(id);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.containsKey(id), index >= 0);
+                if (index >= 0) {
+                    store.removeAt(index);
+                    expected.remove(id);
+                }
+            } else if (index < 0) {
+                int number = random.nextInt(100);
+                index = store.add(new Water(id, number, null, 0, Water.RIPE));
+                store.setSlot(index, (int) (id / 1024));
+                expected.put(id, number);
+            }
+        }
+        assertEquals(expected.size(), store.size());
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            int index = store.indexOf(entry.getKey());
+            assertEquals((int) entry.getValue(), store.getNumber(index));
+            assertEquals(index, store.indexOfSlot((int) (entry.getKey() / 1024)));
+        }
+    }
+
+    @Test
+    public void clearSlots_allowsReassigning() throws Exception {
+        DropStore store = new DropStore();
+        store.add(new Water(1, "a"));
+        store.add(new Water(2, "b"));
+        store.setSlot(0, 0);
+        store.setSlot(1, 1);
+        store.clearSlots();
+        store.setSlot(1, 0);
+        store.setSlot(0, 5);
+        assertEquals(1, store.indexOfSlot(0));
+        assertEquals(-1, store.indexOfSlot(1));
+        assertEquals(0, store.indexOfSlot(5));
+    }
+
+    @Test
+    public void capacity_presizedStoreDoesNotGrow() throws Exception {
+        final int count = 100000;
+        DropStore store = new DropStore(count);
+        int tableLength = store.tableLength();
+        for (int i = 0; i < count; i++) {
+            int index = store.add(new Water(i, 1, "item", 0, Water.RIPE));
+            store.setPosition(index, i, i);
+            store.setSlot(index, i);
+        }
+        assertEquals(count, store.size());
+        assertEquals(count, store.capacity());
+        assertEquals(tableLength, store.tableLength());
+        //哈希表最多用一半
+        assertTrue(store.tableLength() >= count * 2 && store.tableLength() < count * 4);
+    }
+
+    @Test
+    public void capacity_growsByDoubling() throws Exception {
+        DropStore store = new DropStore();
+        assertEquals(16, store.capacity());
+        for (int i = 0; i < 17; i++) {
+            store.add(new Water(i, 1, "item", 0, Water.RIPE));
+        }
+        assertEquals(32, store.capacity());
+        assertEquals(64, store.tableLength());
+    }
+
+    /**
+     * 每个水滴的字节数按数组元素计算(引用按8字节)：9个属性数组加上哈希表，不随JVM变化
+     * ->每个水滴一个对象时的实际分配量见benchmark模块的DropStoreBenchmark
+     */
+    @Test
+    public void memory_perDropFromArrayLayout() throws Exception {
+        final int count = 100000;
+        DropStore store = new DropStore(count);
+        //ids、ripeTimes为long，names为引用，numbers、types、x、y、slots为4字节，flags为1字节
+        long fields = 8 + 8 + 8 + 4 * 5 + 1;
+        long bytes = store.capacity() * fields + store.tableLength() * 4L;
+        assertTrue(bytes / count <= 72);
+    }
+}
@@ -0,0 +1,44 @@
+package com.ltb.laer.waterview.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * WaterDiff的本地单元测试
+ */
+public class WaterDiffTest {
+
+    @Test
+    public void calculate_insertRemoveChange() throws Exception {
+        Water a = new Water(1, "a");
+        Water b = new Water(2, "b");
+        Water c = new Water(3, "c");
+        Water b2 = new Water(5, "b");
+        Water d = new Water(4, "d");
+        WaterDiff diff = WaterDiff.calculate(Arrays.asList(a, b, c), Arrays.asList(a, b2, d));
+        assertEquals(Collections.singletonList(d), diff.getInserted());
+        assertEquals(Collections.singletonList(c), diff.getRemoved());
+        assertEquals(1, diff.getChanged().size());
+        assertSame(b2, diff.getChanged().get(0));
+    }
+
+    @Test
+    public void calculate_sameValuesIsEmpty() throws Exception {
+        WaterDiff diff = WaterDiff.calculate(Arrays.asList(new Water(1, "a")), Arrays.asList(new Water(1, "a")));
+        assertTrue(diff.isEmpty());
+    }
+
+    @Test
+    public void calculate_nullMeansEmpty() throws Exception {
+        WaterDiff diff = WaterDiff.calculate(null, Arrays.asList(new Water(1, "a")));
+        assertEquals(1, diff.getInserted().size());
+        diff = WaterDiff.calculate(Arrays.asList(new Water(1, "a")), null);
+        assertEquals(1, diff.getRemoved().size());
+    }
+}
@@ -0,0 +1,81 @@
+package com.ltb.laer.waterview.view;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * 本地基准的结果记录
+ * 每个基准一行，输出到build/reports/benchmarks/下固定的csv文件，便于不同提交之间直接对比
+ */
+class BenchmarkReport {
+
+    interface Body {
+        void run() throws Exception;
+    }
+
+    private final String name;
+    private static final String HEADER = "benchmark,drops,median_us,p90_us,bytes_per_op\n";
+
+    private final StringBuilder rows = new StringBuilder(HEADER);
+
+    BenchmarkReport(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 预热后执行runs次，记录中位数、p90耗时与平均每次分配的字节数
+     */
+    void measure(String benchmark, int drops, int warmups, int runs, Body body) throws Exception {
+        for (int i = 0; i < warmups; i++) {
+            body.run();
+        }
+        long[] times = new long[runs];
+        long allocatedBefore = allocatedBytes();
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            body.run();
+            times[i] = System.nanoTime() - start;
+        }
+        //不支持统计分配时记为-1，不能与0字节混淆
+        long allocated = allocatedBefore < 0 ? -1 : (allocatedBytes() - allocatedBefore) / runs;
+        Arrays.sort(times);
+        rows.append(benchmark).append(',').append(drops).append(',')
+                .append(times[runs / 2] / 1000).append(',')
+                .append(times[Math.min(runs - 1, runs * 9 / 10)] / 1000).append(',')
+                .append(allocated).append('\n');
+    }
+
+    /**
+     * 写入csv，没有执行任何基准(如未开启)时不覆盖上次的结果
+     */
+    void write() throws IOException {
+        if (rows.length() == HEADER.length()) {
+            return;
+        }
+        File dir = new File("build/reports/benchmarks");
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("can not create " + dir);
+        }
+        FileWriter writer = new FileWriter(new File(dir, name + ".csv"));
+        try {
+            writer.write(rows.toString());
+        } finally {
+            writer.close();
+        }
+        System.out.print(rows);
+    }
+
+    /**
+     * 当前线程已分配的字节数，不支持时返回-1
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
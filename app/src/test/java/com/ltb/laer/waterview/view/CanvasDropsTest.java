@@ -0,0 +1,58 @@
+package com.ltb.laer.waterview.view;
+
+import com.ltb.laer.waterview.model.Water;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * CanvasDrops的本地单元测试：并行数组与DropStore的下标保持一致
+ */
+public class CanvasDropsTest {
+
+    private static CanvasDrops create(int count) {
+        CanvasDrops drops = new CanvasDrops();
+        for (int i = 0; i < count; i++) {
+            int index = drops.add(new Water(i, i, "item" + i, 0, Water.RIPE));
+            drops.store.setSlot(index, 100 + i);
+            drops.labels[index] = i + "g";
+            drops.locations[index] = i;
+        }
+        return drops;
+    }
+
+    @Test
+    public void removeAt_shiftsParallelArrays() throws Exception {
+        CanvasDrops drops = create(40);
+        drops.removeAt(3);
+        assertEquals(39, drops.size());
+        for (int i = 0; i < drops.size(); i++) {
+            long id = drops.store.getId(i);
+            assertEquals(i < 3 ? i : i + 1, id);
+            assertEquals(id + "g", drops.labels[i]);
+            assertEquals(id, drops.locations[i]);
+            assertEquals(i, drops.store.indexOfSlot(100 + (int) id));
+        }
+    }
+
+    @Test
+    public void moveTo_keepsRenderStateAndDropsSlot() throws Exception {
+        CanvasDrops drops = create(3);
+        CanvasDrops collected = new CanvasDrops();
+        drops.store.setPosition(1, 5, 6);
+        int moved = drops.moveTo(1, collected);
+        assertEquals(2, drops.size());
+        assertEquals(-1, drops.store.indexOf(1));
+        assertEquals(1, drops.store.indexOfSlot(102));
+        assertEquals("1g", collected.labels[moved]);
+        assertEquals(6f, collected.store.getY(moved), 0);
+        assertEquals(-1, collected.store.getSlot(moved));
+        assertEquals(CanvasDrops.NONE, collected.disStartTimes[moved]);
+        //同一个id再次收取时替换消失中的水滴
+        drops.add(new Water(1, 9, "again", 0, Water.RIPE));
+        drops.moveTo(drops.store.indexOf(1), collected);
+        assertEquals(1, collected.size());
+        assertEquals(9, collected.store.getNumber(0));
+    }
+}
@@ -0,0 +1,19 @@
+package com.ltb.laer.waterview.view;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 测试中在调用线程上直接执行setWaters的计算，提交也随之同步完成
+ */
+final class DirectExecutor implements Executor {
+
+    static final DirectExecutor INSTANCE = new DirectExecutor();
+
+    private DirectExecutor() {
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        command.run();
+    }
+}
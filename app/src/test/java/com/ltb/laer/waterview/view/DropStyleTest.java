@@ -0,0 +1,92 @@
+package com.ltb.laer.waterview.view;
+
+import android.graphics.Color;
+import android.view.View;
+import android.widget.TextView;
+
+import com.ltb.laer.waterview.R;
+import com.ltb.laer.waterview.model.Water;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * 按水滴类型设置DropStyle(Robolectric)
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class DropStyleTest {
+
+    private static final int TYPE_GOLD = 1;
+
+    private static AntForestView createForestView(int renderMode) {
+        AntForestView view = new AntForestView(RuntimeEnvironment.application);
+        view.setPrepareExecutor(DirectExecutor.INSTANCE);
+        view.setRenderMode(renderMode);
+        view.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, 1080, 1920);
+        return view;
+    }
+
+    private static TextView textOf(View drop) {
+        return drop.findViewById(R.id.tv_water);
+    }
+
+    @Test
+    public void setDropStyle_appliesByTypeAndRestoresLayoutStyleOnReuse() throws Exception {
+        DropViewPool pool = new DropViewPool();
+        AntForestView view = createForestView(AntForestView.RENDER_MODE_VIEW);
+        view.setDropViewPool(pool);
+        view.setDropStyle(TYPE_GOLD, new DropStyle().setGradient(Color.YELLOW, Color.RED).setTextColor(Color.BLACK).setTextSize(20));
+        List<Water> waters = new ArrayList<>();
+        waters.add(new Water(1, "plain"));
+        waters.add(new Water(2, "gold", TYPE_GOLD));
+        view.setWaters(waters);
+        ShadowLooper.runUiThreadTasks();
+
+        TextView plain = textOf(view.getChildAt(0));
+        TextView gold = textOf(view.getChildAt(1));
+        int layoutColor = plain.getCurrentTextColor();
+        float layoutSize = plain.getTextSize();
+        assertEquals(Color.BLACK, gold.getCurrentTextColor());
+        assertEquals(20, gold.getTextSize(), 0.01f);
+        assertNotSame(plain.getBackground(), gold.getBackground());
+
+        //收取后view回到回收池，再作为普通水滴复用时恢复布局本身的样式
+        DropTouch.tap(view, view.getChildAt(1));
+        view.stopAnim();
+        List<Water> next = new ArrayList<>();
+        next.add(new Water(3, "plain2"));
+        view.updateWaters(next);
+        ShadowLooper.runUiThreadTasks();
+        TextView reused = textOf(view.getChildAt(view.getChildCount() - 1));
+        assertSame(gold, reused);
+        assertEquals(layoutColor, reused.getCurrentTextColor());
+        assertEquals(layoutSize, reused.getTextSize(), 0.01f);
+    }
+
+    @Test
+    public void setDropStyle_canvasModeUsesStyleBitmap() throws Exception {
+        AntForestView view = createForestView(AntForestView.RENDER_MODE_CANVAS);
+        DropStyle style = new DropStyle().setColor(Color.BLUE).setBold(true);
+        view.setDropStyle(TYPE_GOLD, style);
+        List<Water> waters = new ArrayList<>();
+        waters.add(new Water(5, "gold", TYPE_GOLD));
+        view.setWaters(waters);
+        ShadowLooper.runUiThreadTasks();
+        assertEquals(Math.round(50 * RuntimeEnvironment.application.getResources().getDisplayMetrics().density),
+                style.getBitmap(RuntimeEnvironment.application.getResources()).getWidth());
+    }
+}
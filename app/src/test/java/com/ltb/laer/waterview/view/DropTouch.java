@@ -0,0 +1,37 @@
+package com.ltb.laer.waterview.view;
+
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * 测试中模拟点击水滴：在水滴圆形区域的中心依次分发按下、抬起事件给容器
+ */
+final class DropTouch {
+
+    private DropTouch() {
+    }
+
+    /**
+     * @param container WaterView或AntForestView
+     * @param drop      水滴view(water_item布局)
+     */
+    static void tap(ViewGroup container, View drop) {
+        float density = drop.getResources().getDisplayMetrics().density;
+        //water_item中tv_water为50dp，顶部有20dp的飘字区域
+        float x = drop.getX() + 25 * density - container.getScrollX();
+        float y = drop.getY() + 45 * density - container.getScrollY();
+        tap(container, x, y);
+    }
+
+    static void tap(ViewGroup container, float x, float y) {
+        long time = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(time, time, MotionEvent.ACTION_DOWN, x, y, 0);
+        MotionEvent up = MotionEvent.obtain(time, time + 50, MotionEvent.ACTION_UP, x, y, 0);
+        container.dispatchTouchEvent(down);
+        container.dispatchTouchEvent(up);
+        down.recycle();
+        up.recycle();
+    }
+}
@@ -0,0 +1,231 @@
+package com.ltb.laer.waterview.view;
+
+import android.support.v7.app.AppCompatActivity;
+import android.view.View;
+import android.view.animation.AlphaAnimation;
+
+import com.ltb.laer.waterview.listener.FrameMetricsListener;
+import com.ltb.laer.waterview.listener.WaterClickListener;
+import com.ltb.laer.waterview.model.Water;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowChoreographer;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 暂停、恢复时帧回调和动画的释放(Robolectric)
+ * ->暂停后推进主线程时间，帧数据监听不能再收到回调，即没有残留的帧回调
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class ForestLifecycleTest {
+
+    private static final int DROPS = 10;
+
+    private ActivityController<AppCompatActivity> controller;
+    private AppCompatActivity activity;
+    private int frames;
+
+    @Before
+    public void setUp() throws Exception {
+        //默认没有延迟，每帧重新投递的回调会让idleMainLooper无法结束
+        ShadowChoreographer.setPostFrameCallbackDelay(16);
+        controller = Robolectric.buildActivity(AppCompatActivity.class).setup().windowFocusChanged(true);
+        activity = controller.get();
+        showWindow();
+    }
+
+    /**
+     * Robolectric不执行窗口的首次遍历，窗口可见性一直是GONE，这里设置为窗口显示后的状态
+     */
+    private void showWindow() {
+        View decor = activity.getWindow().getDecorView();
+        ReflectionHelpers.setField(ReflectionHelpers.getField(decor, "mAttachInfo"), "mWindowVisibility", View.VISIBLE);
+        decor.dispatchWindowVisibilityChanged(View.VISIBLE);
+    }
+
+    private static List<Water> createWaters() {
+        List<Water> waters = new ArrayList<>(DROPS);
+        for (int i = 0; i < DROPS; i++) {
+            waters.add(new Water(i + 1, "item" + i));
+        }
+        return waters;
+    }
+
+    private FrameMetricsListener countFrames() {
+        return new FrameMetricsListener() {
+            @Override
+            public void onFrameMetrics(ForestFrameMetrics metrics) {
+                frames++;
+            }
+        };
+    }
+
+    /**
+     * 推进主线程1秒，返回期间的帧数
+     */
+    private int runOneSecond() {
+        int before = frames;
+        ShadowLooper.idleMainLooper(1000);
+        return frames - before;
+    }
+
+    private WaterView showWaterView() {
+        WaterView view = new WaterView(activity);
+        view.setPrepareExecutor(DirectExecutor.INSTANCE);
+        view.setCallBack(new WaterClickListener() {
+            @Override
+            public void onWaterClick(Water water) {
+            }
+        });
+        view.setFrameMetricsListener(countFrames());
+        view.bindLifecycle(activity);
+        activity.setContentView(view);
+        view.setWaters(createWaters());
+        ShadowLooper.idleMainLooper();
+        return view;
+    }
+
+    private AntForestView showForestView() {
+        AntForestView view = new AntForestView(activity);
+        view.setPrepareExecutor(DirectExecutor.INSTANCE);
+        view.setFrameMetricsListener(countFrames());
+        view.bindLifecycle(activity);
+        activity.setContentView(view);
+        view.setWaters(createWaters());
+        ShadowLooper.idleMainLooper();
+        return view;
+    }
+
+    @Test
+    public void waterView_visibility_pausesAndResumesWithoutReinflating() throws Exception {
+        WaterView view = showWaterView();
+        assertTrue(view.isFrameScheduled());
+        assertTrue(runOneSecond() > 0);
+        View first = view.getChildAt(0);
+
+        view.setVisibility(View.GONE);
+        assertFalse(view.isFrameScheduled());
+        assertEquals(0, runOneSecond());
+
+        view.setVisibility(View.VISIBLE);
+        assertTrue(view.isFrameScheduled());
+        assertTrue(runOneSecond() > 0);
+        assertEquals(DROPS, view.getChildCount());
+        assertSame(first, view.getChildAt(0));
+    }
+
+    @Test
+    public void waterView_hostPause_releasesAnimations() throws Exception {
+        WaterView view = showWaterView();
+        DropTouch.tap(view, view.getChildAt(0));
+        //消失动画进行中，view还在容器中
+        assertEquals(DROPS, view.getChildCount());
+
+        controller.pause();
+        assertFalse(view.isFrameScheduled());
+        assertEquals(DROPS - 1, view.getChildCount());
+        assertEquals(0, runOneSecond());
+
+        controller.resume();
+        assertTrue(view.isFrameScheduled());
+        assertTrue(runOneSecond() > 0);
+    }
+
+    @Test
+    public void waterView_tapWithoutListener_collects() throws Exception {
+        WaterView view = new WaterView(activity);
+        view.setPrepareExecutor(DirectExecutor.INSTANCE);
+        activity.setContentView(view);
+        view.setWaters(createWaters());
+        ShadowLooper.idleMainLooper();
+        DropTouch.tap(view, view.getChildAt(0));
+        assertTrue(view.getTotalConsumeWater() > 0);
+    }
+
+    @Test
+    public void waterView_windowFocusAndDetach_stopFrames() throws Exception {
+        WaterView view = showWaterView();
+        controller.windowFocusChanged(false);
+        assertFalse(view.isFrameScheduled());
+        assertEquals(0, runOneSecond());
+        controller.windowFocusChanged(true);
+        assertTrue(view.isFrameScheduled());
+
+        activity.setContentView(new View(activity));
+        assertFalse(view.isFrameScheduled());
+        assertEquals(0, runOneSecond());
+    }
+
+    @Test
+    public void waterView_hostDestroy_leavesNothingQueued() throws Exception {
+        WaterView view = showWaterView();
+        controller.pause().stop().destroy();
+        assertFalse(view.isFrameScheduled());
+        assertEquals(0, runOneSecond());
+    }
+
+    @Test
+    public void antForestView_hostPause_releasesAnimations() throws Exception {
+        AntForestView view = showForestView();
+        assertTrue(view.isFrameScheduled());
+        assertTrue(runOneSecond() > 0);
+        View first = view.getChildAt(1);
+        DropTouch.tap(view, view.getChildAt(0));
+        assertEquals(DROPS, view.getChildCount());
+
+        controller.pause();
+        assertFalse(view.isFrameScheduled());
+        assertEquals(DROPS - 1, view.getChildCount());
+        assertEquals(0, runOneSecond());
+
+        controller.resume();
+        assertTrue(view.isFrameScheduled());
+        assertTrue(runOneSecond() > 0);
+        assertSame(first, view.getChildAt(0));
+    }
+
+    @Test
+    public void antForestView_customDisAnimate_removesCollectedView() throws Exception {
+        AntForestView view = showForestView();
+        AlphaAnimation animation = new AlphaAnimation(1, 0);
+        animation.setDuration(500);
+        view.setWaterDisAnimate(animation, false);
+        DropTouch.tap(view, view.getChildAt(0));
+        assertEquals(DROPS, view.getChildCount());
+        //自定义动画结束后移除
+        ShadowLooper.idleMainLooper(1000);
+        assertEquals(DROPS - 1, view.getChildCount());
+    }
+
+    @Test
+    public void antForestView_stopAnim_holdsUntilRestart() throws Exception {
+        AntForestView view = showForestView();
+        view.stopAnim();
+        assertFalse(view.isFrameScheduled());
+        //可见性变化不会恢复手动停止的动画
+        view.setVisibility(View.GONE);
+        view.setVisibility(View.VISIBLE);
+        assertFalse(view.isFrameScheduled());
+        assertEquals(0, runOneSecond());
+
+        view.restartAnim();
+        assertTrue(view.isFrameScheduled());
+        assertTrue(runOneSecond() > 0);
+    }
+}
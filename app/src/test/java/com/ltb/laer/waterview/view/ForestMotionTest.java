@@ -0,0 +1,103 @@
+package com.ltb.laer.waterview.view;
+
+import android.view.View;
+
+import com.ltb.laer.waterview.model.Water;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 显示水滴之后替换浮动或Random(Robolectric)
+ * ->view模式和虚拟模式下y坐标全部在translationY中，替换后水滴从原来的基准位置重新开始浮动
+ * ->显示之后设置Random不影响已有水滴的位置和浮动
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class ForestMotionTest {
+
+    private static final int DROPS = 10;
+    private static final long FRAME_NANOS = 16666667L;
+
+    private static AntForestView createForestView(int renderMode) {
+        AntForestView view = new AntForestView(RuntimeEnvironment.application);
+        view.setPrepareExecutor(DirectExecutor.INSTANCE);
+        view.setRenderMode(renderMode);
+        view.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, 1080, 1920);
+        List<Water> waters = new ArrayList<>(DROPS);
+        for (int i = 0; i < DROPS; i++) {
+            waters.add(new Water(i + 1, "item" + i));
+        }
+        view.setWaters(waters);
+        ShadowLooper.runUiThreadTasks();
+        return view;
+    }
+
+    /**
+     * 水滴按id对应的y坐标
+     */
+    private static Map<Long, Float> positions(AntForestView view) {
+        Map<Long, Float> positions = new HashMap<>();
+        for (int i = 0; i < view.getChildCount(); i++) {
+            View child = view.getChildAt(i);
+            if (child.getTag() instanceof Water) {
+                positions.put(((Water) child.getTag()).getId(), child.getY());
+            }
+        }
+        return positions;
+    }
+
+    private static void assertSamePositions(Map<Long, Float> expected, Map<Long, Float> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (Map.Entry<Long, Float> entry : expected.entrySet()) {
+            assertNotNull(actual.get(entry.getKey()));
+            assertEquals(entry.getValue(), actual.get(entry.getKey()), 0.01f);
+        }
+    }
+
+    @Test
+    public void setSpringMotion_afterSetWaters_keepsPositions() throws Exception {
+        for (int renderMode : new int[]{AntForestView.RENDER_MODE_VIEW, AntForestView.RENDER_MODE_VIRTUAL}) {
+            AntForestView view = createForestView(renderMode);
+            Map<Long, Float> before = positions(view);
+            assertTrue(before.size() > 0);
+
+            view.setSpringMotion(true);
+            assertSamePositions(before, positions(view));
+            view.setSpringMotion(false);
+            assertSamePositions(before, positions(view));
+        }
+    }
+
+    @Test
+    public void setSeed_afterSetWaters_keepsFloatingDrops() throws Exception {
+        for (int renderMode : new int[]{AntForestView.RENDER_MODE_VIEW, AntForestView.RENDER_MODE_VIRTUAL}) {
+            AntForestView view = createForestView(renderMode);
+            Map<Long, Float> base = positions(view);
+            //浮动一段时间，水滴离开基准位置
+            view.stepBob(FRAME_NANOS);
+            view.stepBob(FRAME_NANOS * 30);
+            Map<Long, Float> before = positions(view);
+            assertNotEquals(base, before);
+
+            view.setSeed(42);
+            assertSamePositions(before, positions(view));
+        }
+    }
+}
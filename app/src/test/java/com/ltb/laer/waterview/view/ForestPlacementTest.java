@@ -0,0 +1,83 @@
+package com.ltb.laer.waterview.view;
+
+import android.view.View;
+
+import com.ltb.laer.waterview.R;
+import com.ltb.laer.waterview.engine.DropPlacer;
+import com.ltb.laer.waterview.model.Water;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 固定位置(locationXY)的分配(Robolectric)
+ * ->已有水滴占用的固定位置不再分配，没有空闲的固定位置时由DropPlacer选取
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class ForestPlacementTest {
+
+    private static List<Water> createWaters(int from, int count) {
+        List<Water> waters = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            waters.add(new Water(i, "item" + i));
+        }
+        return waters;
+    }
+
+    @Test
+    public void prepare_skipsUsedFixedSlots() throws Exception {
+        Object[][] locations = new Object[][]{{0.1f, 0.1f}, {0.5f, 0.1f}, {0.1f, 0.5f}};
+        boolean[] used = {true, false, true};
+        DropPlacer placer = new DropPlacer(new Random(1));
+        placer.reset(0, 0, 1000, 1000, 100);
+        PreparedWaters prepared = new PreparedWaters(createWaters(1, 3), placer, new Random(1), 50, 0, 50, 1000, 1000)
+                .setFixedLocations(locations, used);
+        assertTrue(prepared.prepare(null));
+
+        assertEquals(1, prepared.slots[0]);
+        assertEquals(500, prepared.x[0], 0.01f);
+        assertEquals(100, prepared.y[0], 0.01f);
+        //没有空闲的固定位置
+        assertEquals(locations.length, prepared.slots[1]);
+        assertEquals(locations.length, prepared.slots[2]);
+        //计算时使用副本
+        assertFalse(used[1]);
+    }
+
+    @Test
+    public void setWatersTwice_doesNotStackDropsOnFixedSlots() throws Exception {
+        AntForestView view = new AntForestView(RuntimeEnvironment.application);
+        view.setPrepareExecutor(DirectExecutor.INSTANCE);
+        view.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, 1080, 1920);
+        view.setWaters(createWaters(1, 5));
+        ShadowLooper.runUiThreadTasks();
+        view.setWaters(createWaters(6, 5));
+        ShadowLooper.runUiThreadTasks();
+
+        assertEquals(10, view.getChildCount());
+        Set<Integer> slots = new HashSet<>();
+        Set<String> positions = new HashSet<>();
+        for (int i = 0; i < view.getChildCount(); i++) {
+            View child = view.getChildAt(i);
+            assertTrue(slots.add((Integer) child.getTag(R.string.location_index)));
+            assertTrue(positions.add(child.getX() + "," + child.getY()));
+        }
+    }
+}
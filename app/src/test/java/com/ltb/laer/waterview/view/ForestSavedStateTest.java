@@ -0,0 +1,222 @@
+package com.ltb.laer.waterview.view;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.v7.app.AppCompatActivity;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.ltb.laer.waterview.engine.WaveMotion;
+import com.ltb.laer.waterview.listener.WaterClickListener;
+import com.ltb.laer.waterview.model.Water;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * onSaveInstanceState/onRestoreInstanceState(Robolectric)
+ * ->状态经过Parcel序列化后恢复到新的控件，水滴位置、收取总数不变，且没有显示动画
+ * ->浮动类型或控件大小不同时只恢复位置(按大小缩放)，虚拟模式不保存浮动状态
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class ForestSavedStateTest {
+
+    private static final int DROPS = 10;
+
+    private AppCompatActivity activity;
+
+    @Before
+    public void setUp() throws Exception {
+        activity = Robolectric.buildActivity(AppCompatActivity.class).setup().windowFocusChanged(true).get();
+    }
+
+    private static List<Water> createWaters() {
+        List<Water> waters = new ArrayList<>(DROPS);
+        for (int i = 0; i < DROPS; i++) {
+            waters.add(new Water(i + 1, "item" + i));
+        }
+        return waters;
+    }
+
+    /**
+     * 模拟系统保存状态：写入Parcel再读出
+     */
+    private static ForestSavedState parcel(Parcelable state) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            state.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return ForestSavedState.CREATOR.createFromParcel(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * 水滴按id对应的x坐标
+     */
+    private static Map<Long, Float> positions(ViewGroup view) {
+        Map<Long, Float> positions = new HashMap<>();
+        for (int i = 0; i < view.getChildCount(); i++) {
+            View child = view.getChildAt(i);
+            if (child.getTag() instanceof Water) {
+                positions.put(((Water) child.getTag()).getId(), child.getX());
+            }
+        }
+        return positions;
+    }
+
+    private WaterView createWaterView() {
+        return createWaterView(ViewGroup.LayoutParams.MATCH_PARENT);
+    }
+
+    private WaterView createWaterView(int width) {
+        WaterView view = new WaterView(activity);
+        view.setPrepareExecutor(DirectExecutor.INSTANCE);
+        view.setCallBack(new WaterClickListener() {
+            @Override
+            public void onWaterClick(Water water) {
+            }
+        });
+        activity.setContentView(view, new ViewGroup.LayoutParams(width, ViewGroup.LayoutParams.MATCH_PARENT));
+        return view;
+    }
+
+    @Test
+    public void waterView_restore_keepsPositionsAndTotal() throws Exception {
+        WaterView view = createWaterView();
+        view.setWaters(createWaters());
+        ShadowLooper.idleMainLooper();
+        View collected = view.getChildAt(0);
+        DropTouch.tap(view, collected);
+        ShadowLooper.idleMainLooper(2000);
+        //被收取的水滴不保存
+        Map<Long, Float> before = positions(view);
+        before.remove(((Water) collected.getTag()).getId());
+        assertEquals(DROPS - 1, before.size());
+        ForestSavedState state = parcel(view.onSaveInstanceState());
+        assertEquals(DROPS - 1, state.size());
+
+        WaterView restored = createWaterView();
+        restored.onRestoreInstanceState(state);
+        restored.setWaters(createWaters());
+        ShadowLooper.idleMainLooper();
+        assertEquals(view.getTotalConsumeWater(), restored.getTotalConsumeWater());
+        //保存时的水滴保持原位置，被收取的水滴作为新水滴加入
+        assertEquals(DROPS, restored.getChildCount());
+        Map<Long, Float> after = positions(restored);
+        for (Map.Entry<Long, Float> entry : before.entrySet()) {
+            assertNotNull(after.get(entry.getKey()));
+            assertEquals(entry.getValue(), after.get(entry.getKey()), 0.01f);
+        }
+    }
+
+    @Test
+    public void antForestView_restore_skipsEntranceAnimation() throws Exception {
+        AntForestView view = new AntForestView(activity);
+        view.setPrepareExecutor(DirectExecutor.INSTANCE);
+        activity.setContentView(view);
+        view.setWaters(createWaters());
+        ShadowLooper.idleMainLooper(1000);
+        Map<Long, Float> before = positions(view);
+        ForestSavedState state = parcel(view.onSaveInstanceState());
+
+        AntForestView restored = new AntForestView(activity);
+        restored.setPrepareExecutor(DirectExecutor.INSTANCE);
+        activity.setContentView(restored);
+        restored.onRestoreInstanceState(state);
+        //没有再次setWaters时也在布局后恢复
+        ShadowLooper.idleMainLooper();
+        assertEquals(DROPS, restored.getChildCount());
+        for (int i = 0; i < restored.getChildCount(); i++) {
+            assertEquals(1, restored.getChildAt(i).getAlpha(), 0);
+        }
+        Map<Long, Float> after = positions(restored);
+        for (Map.Entry<Long, Float> entry : before.entrySet()) {
+            assertEquals(entry.getValue(), after.get(entry.getKey()), 0.01f);
+        }
+    }
+
+    @Test
+    public void waterView_restoreWithOtherMotion_keepsBasePositions() throws Exception {
+        WaterView view = createWaterView();
+        view.setWaters(createWaters());
+        ShadowLooper.idleMainLooper();
+        ForestSavedState state = parcel(view.onSaveInstanceState());
+
+        WaterView restored = createWaterView();
+        //保存的是WaveMotion的状态，不能恢复到SpringMotion，从保存的位置重新开始浮动
+        restored.setSpringMotion(true);
+        restored.onRestoreInstanceState(state);
+        ShadowLooper.idleMainLooper();
+        assertEquals(DROPS, restored.getChildCount());
+        ForestSavedState again = parcel(restored.onSaveInstanceState());
+        assertArrayEquals(state.x, again.x, 0.01f);
+        assertArrayEquals(state.y, again.y, 0.01f);
+    }
+
+    @Test
+    public void waterView_restoreWithOtherSize_scalesPositions() throws Exception {
+        WaterView view = createWaterView();
+        view.setWaters(createWaters());
+        ShadowLooper.idleMainLooper();
+        ForestSavedState state = parcel(view.onSaveInstanceState());
+        int width = view.getWidth();
+
+        WaterView restored = createWaterView(width / 2);
+        restored.onRestoreInstanceState(state);
+        ShadowLooper.idleMainLooper();
+        assertEquals(width / 2, restored.getWidth());
+        ForestSavedState again = parcel(restored.onSaveInstanceState());
+        assertEquals(DROPS, again.size());
+        float scale = (width / 2) / (float) width;
+        for (int i = 0; i < DROPS; i++) {
+            assertEquals(state.x[i] * scale, again.x[i], 0.01f);
+            assertEquals(state.y[i], again.y[i], 0.01f);
+        }
+    }
+
+    @Test
+    public void antForestView_virtualRestore_keepsDropsWithoutMotion() throws Exception {
+        AntForestView view = new AntForestView(activity);
+        view.setPrepareExecutor(DirectExecutor.INSTANCE);
+        view.setRenderMode(AntForestView.RENDER_MODE_VIRTUAL);
+        activity.setContentView(view);
+        view.setWaters(createWaters());
+        ShadowLooper.idleMainLooper();
+        ForestSavedState state = parcel(view.onSaveInstanceState());
+        assertEquals(DROPS, state.size());
+        //只有少数水滴绑定了view，不保存浮动状态
+        assertFalse(state.canRestoreMotion(new WaveMotion(new int[]{1500}, 10, new Random()), state.width, state.height));
+
+        AntForestView restored = new AntForestView(activity);
+        restored.setPrepareExecutor(DirectExecutor.INSTANCE);
+        restored.setRenderMode(AntForestView.RENDER_MODE_VIRTUAL);
+        activity.setContentView(restored);
+        restored.onRestoreInstanceState(state);
+        ShadowLooper.idleMainLooper();
+        ForestSavedState again = parcel(restored.onSaveInstanceState());
+        assertEquals(DROPS, again.size());
+        assertArrayEquals(state.x, again.x, 0.01f);
+        assertArrayEquals(state.y, again.y, 0.01f);
+        assertArrayEquals(state.flags, again.flags);
+        assertEquals(state.scrollY, again.scrollY);
+    }
+}
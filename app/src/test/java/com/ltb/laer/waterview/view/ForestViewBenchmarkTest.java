@@ -0,0 +1,231 @@
+package com.ltb.laer.waterview.view;
+
+import android.graphics.Color;
+import android.view.View;
+
+import com.ltb.laer.waterview.listener.WaterClickListener;
+import com.ltb.laer.waterview.model.Water;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * WaterView、AntForestView与view相关热点路径的本地基准(Robolectric)
+ * 结果见app/build/reports/benchmarks/robolectric.csv，纯逻辑部分的JMH基准见benchmark模块
+ * 耗时较长，只在传入-Pbenchmark时执行，普通的单元测试中跳过
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class ForestViewBenchmarkTest {
+
+    private static final int[] DROP_COUNTS = {10, 100, 1000};
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final long FRAME_NANOS = 16666667L;
+    /**
+     * 固定种子，每次运行的布局和浮动轨迹相同，结果可以比较
+     */
+    private static final long SEED = 42;
+
+    private static final BenchmarkReport REPORT = new BenchmarkReport("robolectric");
+
+    /**
+     * RobolectricTestRunner只在第一个测试中执行@BeforeClass，在那里跳过不会跳过其它测试，所以每个测试前检查
+     */
+    @Before
+    public void checkEnabled() throws Exception {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+    @AfterClass
+    public static void writeReport() throws Exception {
+        REPORT.write();
+    }
+
+    private static List<Water> createWaters(int count) {
+        List<Water> waters = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            waters.add(new Water(i % 5 + 1, "item" + i));
+        }
+        return waters;
+    }
+
+    private static void layout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private static WaterView createWaterView() {
+        WaterView view = new WaterView(RuntimeEnvironment.application);
+        view.setPrepareExecutor(DirectExecutor.INSTANCE);
+        view.setSeed(SEED);
+        layout(view);
+        view.setCallBack(new WaterClickListener() {
+            @Override
+            public void onWaterClick(Water water) {
+            }
+        });
+        return view;
+    }
+
+    private static AntForestView createForestView(int renderMode) {
+        AntForestView view = new AntForestView(RuntimeEnvironment.application);
+        view.setPrepareExecutor(DirectExecutor.INSTANCE);
+        view.setSeed(SEED);
+        view.setRenderMode(renderMode);
+        layout(view);
+        return view;
+    }
+
+    @Test
+    public void waterView_setWaters() throws Exception {
+        for (final int count : DROP_COUNTS) {
+            final WaterView view = createWaterView();
+            final List<Water> waters = createWaters(count);
+            REPORT.measure("WaterView.setWaters", count, 2, 5, new BenchmarkReport.Body() {
+                @Override
+                public void run() throws Exception {
+                    view.setWaters(waters);
+                    ShadowLooper.runUiThreadTasks();
+                }
+            });
+            assertTrue(view.getChildCount() >= count);
+        }
+    }
+
+    @Test
+    public void waterView_frame() throws Exception {
+        for (final int count : DROP_COUNTS) {
+            final WaterView view = createWaterView();
+            view.setWaters(createWaters(count));
+            ShadowLooper.runUiThreadTasks();
+            final long[] frameTime = {FRAME_NANOS};
+            REPORT.measure("WaterView.frame", count, 200, 1000, new BenchmarkReport.Body() {
+                @Override
+                public void run() throws Exception {
+                    frameTime[0] += FRAME_NANOS;
+                    view.doFrame(frameTime[0]);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void waterView_clickToRemoval() throws Exception {
+        for (final int count : DROP_COUNTS) {
+            final WaterView view = createWaterView();
+            view.setWaters(createWaters(count));
+            ShadowLooper.runUiThreadTasks();
+            final int[] index = {0};
+            REPORT.measure("WaterView.click", count, 1, Math.min(count - 1, 50), new BenchmarkReport.Body() {
+                @Override
+                public void run() throws Exception {
+                    DropTouch.tap(view, view.getChildAt(index[0]++));
+                }
+            });
+        }
+    }
+
+    @Test
+    public void antForestView_setWaters() throws Exception {
+        for (final int mode : new int[]{AntForestView.RENDER_MODE_VIEW, AntForestView.RENDER_MODE_CANVAS}) {
+            String name = mode == AntForestView.RENDER_MODE_VIEW ? "AntForestView.setWaters" : "AntForestView.setWaters.canvas";
+            for (final int count : DROP_COUNTS) {
+                final List<Water> waters = createWaters(count);
+                REPORT.measure(name, count, 1, 5, new BenchmarkReport.Body() {
+                    @Override
+                    public void run() throws Exception {
+                        AntForestView view = createForestView(mode);
+                        view.setWaters(waters);
+                        ShadowLooper.runUiThreadTasks();
+                    }
+                });
+            }
+        }
+    }
+
+    @Test
+    public void antForestView_setWatersStyled() throws Exception {
+        //三种类型使用DropStyle，所有水滴共用一个布局
+        final DropStyle[] styles = {
+                new DropStyle().setGradient(Color.YELLOW, Color.RED),
+                new DropStyle().setColor(Color.BLUE).setBold(true),
+                new DropStyle().setColor(Color.MAGENTA).setTextColor(Color.BLACK)};
+        for (final int count : DROP_COUNTS) {
+            final List<Water> waters = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                waters.add(new Water(i % 5 + 1, "item" + i, i % (styles.length + 1)));
+            }
+            REPORT.measure("AntForestView.setWaters.styled", count, 1, 5, new BenchmarkReport.Body() {
+                @Override
+                public void run() throws Exception {
+                    AntForestView view = createForestView(AntForestView.RENDER_MODE_VIEW);
+                    for (int i = 0; i < styles.length; i++) {
+                        view.setDropStyle(i + 1, styles[i]);
+                    }
+                    view.setWaters(waters);
+                    ShadowLooper.runUiThreadTasks();
+                }
+            });
+        }
+    }
+
+    @Test
+    public void antForestView_virtual() throws Exception {
+        int visible = -1;
+        for (final int count : DROP_COUNTS) {
+            final AntForestView view = createForestView(AntForestView.RENDER_MODE_VIRTUAL);
+            view.setWaters(createWaters(count));
+            ShadowLooper.runUiThreadTasks();
+            if (count == DROP_COUNTS[DROP_COUNTS.length - 1]) {
+                visible = view.getChildCount();
+            }
+            final long[] frameTime = {FRAME_NANOS};
+            REPORT.measure("AntForestView.frame.virtual", count, 200, 1000, new BenchmarkReport.Body() {
+                @Override
+                public void run() throws Exception {
+                    frameTime[0] += FRAME_NANOS;
+                    view.stepBob(frameTime[0]);
+                }
+            });
+            REPORT.measure("AntForestView.pan.virtual", count, 20, 100, new BenchmarkReport.Body() {
+                @Override
+                public void run() throws Exception {
+                    view.scrollBy(0, view.getScrollY() == 0 ? HEIGHT : -HEIGHT);
+                }
+            });
+        }
+        //只有可见区域内的水滴创建view
+        assertTrue("visible " + visible, visible > 0 && visible < DROP_COUNTS[DROP_COUNTS.length - 1] / 2);
+    }
+
+    @Test
+    public void antForestView_frame() throws Exception {
+        for (final int count : DROP_COUNTS) {
+            final AntForestView view = createForestView(AntForestView.RENDER_MODE_VIEW);
+            view.setWaters(createWaters(count));
+            ShadowLooper.runUiThreadTasks();
+            final long[] frameTime = {FRAME_NANOS};
+            REPORT.measure("AntForestView.frame", count, 200, 1000, new BenchmarkReport.Body() {
+                @Override
+                public void run() throws Exception {
+                    frameTime[0] += FRAME_NANOS;
+                    view.stepBob(frameTime[0]);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.ltb.laer.waterview.view;
+
+import com.ltb.laer.waterview.model.Water;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * WaterInbox的本地单元测试
+ */
+public class WaterInboxTest {
+
+    private static List<Water> waters(int count) {
+        List<Water> waters = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            waters.add(new Water(i + 1, "item" + i));
+        }
+        return waters;
+    }
+
+    @Test
+    public void offer_mergesBurstIntoLatest() throws Exception {
+        WaterInbox inbox = new WaterInbox();
+        assertTrue(inbox.offer(waters(1)));
+        assertFalse(inbox.offer(waters(2)));
+        assertFalse(inbox.offer(waters(3)));
+        assertEquals(3, inbox.take().size());
+        assertNull(inbox.take());
+        assertTrue(inbox.offer(waters(4)));
+    }
+
+    @Test
+    public void offer_snapshotsInput() throws Exception {
+        WaterInbox inbox = new WaterInbox();
+        List<Water> source = waters(2);
+        inbox.offer(source);
+        source.clear();
+        List<Water> taken = inbox.take();
+        assertEquals(2, taken.size());
+        try {
+            taken.add(new Water(1, "other"));
+            fail("snapshot should be read-only");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    /**
+     * 多个线程同时提交：每次offer返回true都对应一次取到数据的take，最后取到的是最后一次提交
+     */
+    @Test
+    public void offer_fromManyThreads_eachScheduleTakesData() throws Exception {
+        final WaterInbox inbox = new WaterInbox();
+        final ConcurrentLinkedQueue<Integer> scheduled = new ConcurrentLinkedQueue<>();
+        final int producers = 4, offers = 2000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(producers);
+        final List<List<Water>> batches = new ArrayList<>();
+        for (int i = 0; i <= offers; i++) {
+            batches.add(Collections.nCopies(i % 7, new Water(i, "item" + i)));
+        }
+        for (int p = 0; p < producers; p++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < offers; i++) {
+                        if (inbox.offer(batches.get(i))) {
+                            scheduled.add(i);
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        final AtomicInteger applied = new AtomicInteger();
+        final AtomicBoolean emptyTake = new AtomicBoolean();
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (done.getCount() > 0 || !scheduled.isEmpty()) {
+                    if (scheduled.poll() != null) {
+                        if (inbox.take() == null) {
+                            emptyTake.set(true);
+                        }
+                        applied.incrementAndGet();
+                    }
+                }
+            }
+        });
+        consumer.start();
+        start.countDown();
+        done.await();
+        consumer.join(10000);
+
+        assertFalse(emptyTake.get());
+        assertTrue(applied.get() > 0);
+        assertNull(inbox.take());
+        //单线程提交后仍然可以重新安排
+        assertTrue(inbox.offer(batches.get(offers)));
+        assertNotNull(inbox.take());
+    }
+}
@@ -0,0 +1,144 @@
+package com.ltb.laer.waterview.view;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * WaterPreparer的取消与提交(Robolectric)
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class WaterPreparerTest {
+
+    /**
+     * 保存任务，由测试决定何时执行
+     */
+    private static class QueuedExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            for (Runnable task : tasks) {
+                task.run();
+            }
+            tasks.clear();
+        }
+    }
+
+    private static WaterPreparer.Work<String> result(final String value) {
+        return new WaterPreparer.Work<String>() {
+            @Override
+            public String prepare(WaterPreparer.Token token) {
+                return value;
+            }
+        };
+    }
+
+    private static WaterPreparer.Commit<String> into(final List<String> committed) {
+        return new WaterPreparer.Commit<String>() {
+            @Override
+            public void commit(String result) {
+                committed.add(result);
+            }
+        };
+    }
+
+    @Test
+    public void submit_directExecutorCommitsImmediately() throws Exception {
+        WaterPreparer preparer = new WaterPreparer();
+        preparer.setExecutor(DirectExecutor.INSTANCE);
+        List<String> committed = new ArrayList<>();
+        preparer.submit(result("a"), into(committed));
+        assertEquals(1, committed.size());
+    }
+
+    @Test
+    public void submit_cancelsOlderJobs() throws Exception {
+        WaterPreparer preparer = new WaterPreparer();
+        QueuedExecutor executor = new QueuedExecutor();
+        preparer.setExecutor(executor);
+        List<String> committed = new ArrayList<>();
+        preparer.submit(result("old"), into(committed));
+        preparer.submit(result("new"), into(committed));
+        executor.runAll();
+        assertEquals(1, committed.size());
+        assertEquals("new", committed.get(0));
+
+        preparer.submit(result("cancelled"), into(committed));
+        preparer.cancel();
+        executor.runAll();
+        assertEquals(1, committed.size());
+    }
+
+    @Test
+    public void token_seesCancelWhilePreparing() throws Exception {
+        final WaterPreparer preparer = new WaterPreparer();
+        preparer.setExecutor(DirectExecutor.INSTANCE);
+        final boolean[] cancelled = new boolean[1];
+        List<String> committed = new ArrayList<>();
+        preparer.submit(new WaterPreparer.Work<String>() {
+            @Override
+            public String prepare(WaterPreparer.Token token) {
+                assertFalse(token.isCancelled());
+                preparer.cancel();
+                cancelled[0] = token.isCancelled();
+                return "stale";
+            }
+        }, into(committed));
+        assertTrue(cancelled[0]);
+        assertTrue(committed.isEmpty());
+    }
+
+    @Test
+    public void submit_backgroundResultCommittedOnMainThread() throws Exception {
+        ExecutorService background = Executors.newSingleThreadExecutor();
+        try {
+            WaterPreparer preparer = new WaterPreparer();
+            preparer.setExecutor(background);
+            final Thread mainThread = Thread.currentThread();
+            final boolean[] onMain = new boolean[1];
+            final List<String> committed = new ArrayList<>();
+            preparer.submit(result("a"), new WaterPreparer.Commit<String>() {
+                @Override
+                public void commit(String result) {
+                    onMain[0] = Thread.currentThread() == mainThread;
+                    committed.add(result);
+                }
+            });
+            //等待后台任务执行完并post到主线程
+            final CountDownLatch latch = new CountDownLatch(1);
+            background.execute(new Runnable() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            });
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertTrue(committed.isEmpty());
+            ShadowLooper.runUiThreadTasks();
+            assertEquals(1, committed.size());
+            assertTrue(onMain[0]);
+        } finally {
+            background.shutdown();
+        }
+    }
+}
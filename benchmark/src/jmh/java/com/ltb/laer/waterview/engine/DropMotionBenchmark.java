@@ -0,0 +1,63 @@
+package com.ltb.laer.waterview.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * 一帧的水滴运动更新，bounce对应WaterView，wave对应AntForestView，spring为两者可选的弹簧浮动
+ * spring60/spring144分别模拟60Hz、144Hz屏幕的帧间隔，每帧积分的步数不同
+ * 1000个水滴spring60的目标为0.5ms以内
+ */
+@State(Scope.Thread)
+public class DropMotionBenchmark {
+
+    private static final long FRAME_NANOS = 16666667L;
+
+    @Param({"10", "100", "1000"})
+    public int drops;
+
+    private BounceMotion bounce;
+    private WaveMotion wave;
+    private SpringMotion spring;
+
+    @Setup
+    public void setUp() {
+        bounce = new BounceMotion(new float[]{0.5f, 0.3f, 0.2f, 0.1f}, 12, new Random(1));
+        wave = new WaveMotion(new int[]{1500, 1600, 1800, 2000, 2300, 2500}, 10, new Random(1));
+        spring = new SpringMotion(10, new Random(1));
+        for (int i = 0; i < drops; i++) {
+            bounce.add(i * 20, i % 2 == 0);
+            wave.add(i * 20, i % 2 == 0);
+            spring.add(i * 20, i % 2 == 0);
+        }
+    }
+
+    @Benchmark
+    public float bounce() {
+        bounce.step(FRAME_NANOS);
+        return bounce.getY(0);
+    }
+
+    @Benchmark
+    public float wave() {
+        wave.step(FRAME_NANOS);
+        return wave.getY(0);
+    }
+
+    @Benchmark
+    public float spring60() {
+        spring.step(FRAME_NANOS);
+        return spring.getY(0);
+    }
+
+    @Benchmark
+    public float spring144() {
+        spring.step(6944444L);
+        return spring.getY(0);
+    }
+}
@@ -0,0 +1,37 @@
+package com.ltb.laer.waterview.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * 一次setWaters的位置分配，300个水滴的目标为1ms以内
+ */
+@State(Scope.Thread)
+public class DropPlacerBenchmark {
+
+    @Param({"10", "100", "300", "1000"})
+    public int drops;
+
+    private DropPlacer placer;
+
+    @Setup
+    public void setUp() {
+        placer = new DropPlacer(new Random(1));
+        placer.addExclusionRect(440, 900, 640, 1920);
+    }
+
+    @Benchmark
+    public int placeAll() {
+        placer.reset(0, 0, 1080, 1920, 40);
+        int last = -1;
+        for (int i = 0; i < drops; i++) {
+            last = placer.place(20);
+        }
+        return last;
+    }
+}
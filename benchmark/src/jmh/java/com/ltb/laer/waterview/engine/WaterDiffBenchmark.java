@@ -0,0 +1,41 @@
+package com.ltb.laer.waterview.engine;
+
+import com.ltb.laer.waterview.model.Water;
+import com.ltb.laer.waterview.model.WaterDiff;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * updateWaters的差异计算，新数据中有十分之一的水滴变化
+ */
+@State(Scope.Thread)
+public class WaterDiffBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int drops;
+
+    private List<Water> oldWaters;
+    private List<Water> newWaters;
+
+    @Setup
+    public void setUp() {
+        oldWaters = new ArrayList<>();
+        newWaters = new ArrayList<>();
+        for (int i = 0; i < drops; i++) {
+            oldWaters.add(new Water(i, "item" + i));
+            newWaters.add(new Water(i % 10 == 0 ? i + 1 : i, "item" + i));
+        }
+    }
+
+    @Benchmark
+    public WaterDiff calculate() {
+        return WaterDiff.calculate(oldWaters, newWaters);
+    }
+}
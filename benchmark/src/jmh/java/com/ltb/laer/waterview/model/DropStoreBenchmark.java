@@ -0,0 +1,73 @@
+package com.ltb.laer.waterview.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 按容量创建DropStore并加入全部水滴，gc.alloc.rate.norm除以水滴数即每个水滴占用的字节
+ * ->目标为每个水滴72字节以内，fillObjects为每个水滴一个对象时的对照
+ */
+@State(Scope.Thread)
+public class DropStoreBenchmark {
+
+    @Param({"1000", "100000"})
+    public int drops;
+
+    private Water[] waters;
+
+    /**
+     * 每个水滴一个对象时的字段
+     */
+    static final class ObjectDrop {
+        long id;
+        int number;
+        int type;
+        long ripeTime;
+        String name;
+        float x;
+        float y;
+        byte flags;
+        int slot;
+    }
+
+    @Setup
+    public void setUp() {
+        waters = new Water[drops];
+        for (int i = 0; i < drops; i++) {
+            waters[i] = new Water(i, 1, "item", 0, Water.RIPE);
+        }
+    }
+
+    @Benchmark
+    public DropStore fillStore() {
+        DropStore store = new DropStore(drops);
+        for (int i = 0; i < drops; i++) {
+            int index = store.add(waters[i]);
+            store.setPosition(index, i, i);
+            store.setSlot(index, i);
+        }
+        return store;
+    }
+
+    @Benchmark
+    public ObjectDrop[] fillObjects() {
+        ObjectDrop[] objects = new ObjectDrop[drops];
+        for (int i = 0; i < drops; i++) {
+            Water water = waters[i];
+            ObjectDrop drop = new ObjectDrop();
+            drop.id = water.getId();
+            drop.number = water.getNumber();
+            drop.type = water.getType();
+            drop.ripeTime = water.getRipeTime();
+            drop.name = water.getName();
+            drop.x = i;
+            drop.y = i;
+            drop.slot = i;
+            objects[i] = drop;
+        }
+        return objects;
+    }
+}